@@ -0,0 +1,104 @@
+package info.search.bench;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import info.search.Application;
+import info.search.repository.DocContentRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Fetching the fragments of one result page, ten chunks of the imported
+ * corpus: {@code blocks} cuts them out of the compressed body blocks they
+ * span, {@code whole} inflates each chunk's entire book as a reader of the
+ * body would without offsets. Setup prints the stored size of the bodies
+ * and of the chunk text left in the pgvector table.
+ * <p>
+ * Same connection and corpus settings as {@link SearchBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BodyStoreBenchmark {
+    private static final int PAGE = 10;
+
+    @Param({"blocks", "whole"})
+    private String read;
+
+    private ConfigurableApplicationContext context;
+    private DocContentRepository docContentRepo;
+    private List<Chunk> chunks;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        Path corpus = SearchBenchmark.corpus();
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run(SearchBenchmark.arguments(corpus, Map.of()));
+        SearchBenchmark.importCorpus(context, corpus.getFileName().toString());
+        docContentRepo = context.getBean(DocContentRepository.class);
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        chunks = jdbc.query("SELECT vector_id, doc_id, char_offset, char_length FROM doc_chunk "
+                        + "WHERE char_offset IS NOT NULL ORDER BY content_hash, vector_id LIMIT 1000",
+                (rs, rowNum) -> new Chunk(rs.getString(1), rs.getLong(2), rs.getInt(3), rs.getInt(4)));
+        if (chunks.size() < PAGE) {
+            throw new IllegalStateException("Corpus has fewer than " + PAGE + " chunks");
+        }
+        System.out.println(jdbc.queryForObject("SELECT format('bodies: %s chars in %s of blocks (%s), "
+                        + "pgvector chunk text: %s', "
+                        + "sum(char_length), pg_size_pretty(sum(octet_length(data))), "
+                        + "pg_size_pretty(pg_total_relation_size('doc_block')), "
+                        + "(SELECT pg_size_pretty(sum(octet_length(content))) FROM public.vector_store)) "
+                        + "FROM doc_block",
+                String.class));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Map<String, String> fragments() {
+        List<Chunk> page = new ArrayList<>(PAGE);
+        for (int i = 0; i < PAGE; i++) {
+            page.add(chunks.get(next++ % chunks.size()));
+        }
+        if ("blocks".equals(read)) {
+            return docContentRepo.readChunks(page.stream().map(Chunk::vectorId).toList());
+        }
+        Map<String, String> texts = new HashMap<>();
+        for (Chunk chunk : page) {
+            StringWriter body = new StringWriter();
+            docContentRepo.writeTo(chunk.docId(), body);
+            texts.put(chunk.vectorId(), body.getBuffer().substring(chunk.offset(), chunk.offset() + chunk.length()));
+        }
+        return texts;
+    }
+
+    private record Chunk(String vectorId, long docId, int offset, int length) {
+    }
+}
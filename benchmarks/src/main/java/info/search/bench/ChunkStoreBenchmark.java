@@ -0,0 +1,106 @@
+package info.search.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import info.search.Application;
+import info.search.model.Doc;
+import info.search.model.DocChunk;
+import info.search.repository.ChunkRepository;
+import info.search.repository.DocBatchRepository;
+import info.search.repository.DocRepository;
+import info.search.service.DocService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Writing and deleting the {@code doc_chunk} rows of one large book:
+ * {@code jpa} saves {@link DocChunk} entities one by one and deletes them
+ * the same way, as ingestion used to; {@code jdbc} goes through the batched
+ * {@link DocBatchRepository} and {@link DocService#deleteById}. No
+ * embeddings are computed, the vector store only sees the deletes.
+ * <p>
+ * Same connection settings as {@link SearchBenchmark}; the book size is
+ * the {@code chunks} parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ChunkStoreBenchmark {
+
+    @Param({"jpa", "jdbc"})
+    private String path;
+
+    @Param({"5000"})
+    private int chunks;
+
+    private ConfigurableApplicationContext context;
+    private DocRepository docRepo;
+    private ChunkRepository chunkRepo;
+    private DocBatchRepository docBatchRepo;
+    private DocService docService;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run(SearchBenchmark.arguments(SearchBenchmark.corpus(), Map.of()));
+        docRepo = context.getBean(DocRepository.class);
+        chunkRepo = context.getBean(ChunkRepository.class);
+        docBatchRepo = context.getBean(DocBatchRepository.class);
+        docService = context.getBean(DocService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void storeAndDelete() {
+        Doc doc = new Doc();
+        doc.setFileName("chunk-store-benchmark.fb2");
+        doc.setTitle("Chunk store benchmark");
+        doc = docRepo.save(doc);
+        if ("jpa".equals(path)) {
+            List<DocChunk> rows = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                DocChunk row = new DocChunk();
+                row.setVectorId(UUID.randomUUID().toString());
+                row.setDoc(doc);
+                row.setChunkIndex(i);
+                rows.add(row);
+            }
+            chunkRepo.saveAll(rows);
+            chunkRepo.deleteAll(chunkRepo.findByDocId(doc.getId()));
+            docRepo.delete(doc);
+        } else {
+            List<Document> documents = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                documents.add(new Document(UUID.randomUUID().toString(), "chunk " + i,
+                        Map.of("docId", doc.getId(), "chunkIndex", i, "sectionOrdinal", 0)));
+            }
+            docBatchRepo.insertChunks(documents);
+            docService.deleteById(doc.getId());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package info.search.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import info.search.Fb2Parser;
+import info.search.config.IngestionProperties;
+import info.search.model.Doc;
+import info.search.service.SectionChunker;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+/** The {@code test_docs} files bundled with the application, loaded once per trial. */
+final class Corpus {
+
+    private Corpus() {
+    }
+
+    static List<byte[]> files() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver()
+                .getResources("classpath*:test_docs/*.fb2");
+        Arrays.sort(resources, Comparator.comparing(Resource::getFilename));
+        List<byte[]> files = new ArrayList<>(resources.length);
+        for (Resource resource : resources) {
+            try (InputStream in = resource.getInputStream()) {
+                files.add(in.readAllBytes());
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalStateException("No test_docs on the classpath");
+        }
+        return files;
+    }
+
+    static List<Doc> docs() throws Exception {
+        List<Doc> docs = new ArrayList<>();
+        for (byte[] file : files()) {
+            docs.add(Fb2Parser.parse(new ByteArrayInputStream(file)));
+        }
+        return docs;
+    }
+
+    static List<String> chunks() throws Exception {
+        SectionChunker chunker = new SectionChunker(new IngestionProperties.Chunking());
+        return docs().stream()
+                .flatMap(doc -> chunker.split(doc.getParagraphs()).stream())
+                .map(SectionChunker.Chunk::text)
+                .toList();
+    }
+}
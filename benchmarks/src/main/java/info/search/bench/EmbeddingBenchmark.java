@@ -0,0 +1,53 @@
+package info.search.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.transformers.TransformersEmbeddingModel;
+
+/**
+ * Latency of one embedding call of {@code batchSize} corpus chunks on the
+ * local transformers model, without the embedding cache in front of it.
+ * Successive calls walk through the chunks so no batch repeats in a row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EmbeddingBenchmark {
+    @Param({"1", "8", "32", "64"})
+    private int batchSize;
+
+    private TransformersEmbeddingModel model;
+    private List<String> chunks;
+    private int offset;
+
+    @Setup
+    public void setUp() throws Exception {
+        model = new TransformersEmbeddingModel();
+        model.afterPropertiesSet();
+        chunks = Corpus.chunks();
+    }
+
+    @Benchmark
+    public List<float[]> embedBatch() {
+        if (offset + batchSize > chunks.size()) {
+            offset = 0;
+        }
+        List<String> batch = chunks.subList(offset, Math.min(chunks.size(), offset + batchSize));
+        offset += batchSize;
+        return model.embed(batch);
+    }
+}
@@ -0,0 +1,42 @@
+package info.search.bench;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import info.search.Fb2Parser;
+import info.search.model.Doc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** {@link Fb2Parser#parse} over the whole bundled corpus per operation. */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ParseBenchmark {
+    private List<byte[]> files;
+
+    @Setup
+    public void setUp() throws Exception {
+        files = Corpus.files();
+    }
+
+    @Benchmark
+    public void parseCorpus(Blackhole bh) throws Exception {
+        for (byte[] file : files) {
+            Doc doc = Fb2Parser.parse(new ByteArrayInputStream(file));
+            bh.consume(doc);
+        }
+    }
+}
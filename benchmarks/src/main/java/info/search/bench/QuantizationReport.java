@@ -0,0 +1,160 @@
+package info.search.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.pgvector.PGvector;
+import info.search.Application;
+import info.search.model.VectorHit;
+import info.search.repository.DocContentRepository;
+import info.search.repository.VectorSearchRepository;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Recall@k, mean query latency and index size of every pgvector
+ * quantization setting, against exact neighbours from a sequential scan.
+ * Queries are the first words of a fixed sample of chunks, picked by the
+ * hash of their text, so reruns on the same corpus see the same queries.
+ * Not a JMH suite, recall is not a timing:
+ * <pre>
+ * mvn compile exec:java -Dexec.mainClass=info.search.bench.QuantizationReport
+ * </pre>
+ * Same connection and corpus settings as {@link SearchBenchmark}; the
+ * sample size and k: {@code -Dbench.queries}, {@code -Dbench.k}. The table
+ * is also written to {@code target/quantization-report.txt}.
+ */
+public final class QuantizationReport {
+    private static final String TABLE = "public.vector_store";
+    private static final int QUERY_WORDS = 8;
+    // next to jmh-result.json, for diffing between releases
+    private static final Path REPORT = Path.of("target/quantization-report.txt");
+    private static final List<Setting> SETTINGS = List.of(
+            new Setting("none", 0),
+            new Setting("halfvec", 0),
+            new Setting("halfvec", 192),
+            new Setting("binary", 0),
+            new Setting("binary", 192));
+
+    private QuantizationReport() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int sample = Integer.getInteger("bench.queries", 50);
+        int k = Integer.getInteger("bench.k", 10);
+        Path corpus = SearchBenchmark.corpus();
+
+        List<float[]> queries = null;
+        List<Set<String>> exact = null;
+        List<String> rows = new ArrayList<>();
+        for (Setting setting : SETTINGS) {
+            try (ConfigurableApplicationContext context = start(corpus, setting)) {
+                JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+                if (queries == null) {
+                    SearchBenchmark.importCorpus(context, corpus.getFileName().toString());
+                    queries = queries(context, sample);
+                    exact = exactNeighbours(context, queries, k);
+                }
+                VectorSearchRepository repo = context.getBean(VectorSearchRepository.class);
+                double recall = 0;
+                long elapsed = 0;
+                for (int i = 0; i < queries.size(); i++) {
+                    long start = System.nanoTime();
+                    List<VectorHit> hits = repo.findNearest(queries.get(i), null, Double.NEGATIVE_INFINITY,
+                            null, null, k);
+                    elapsed += System.nanoTime() - start;
+                    Set<String> expected = exact.get(i);
+                    recall += hits.stream().filter(h -> expected.contains(h.vectorId())).count()
+                            / (double) expected.size();
+                }
+                rows.add(String.format("%-8s %6s %10.3f %12.3f %14s",
+                        setting.quantization(),
+                        setting.dimensions() == 0 ? "all" : String.valueOf(setting.dimensions()),
+                        recall / queries.size(),
+                        elapsed / 1e6 / queries.size(),
+                        indexSize(jdbc, setting)));
+            }
+        }
+
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%s, %d queries, k = %d", corpus, queries.size(), k));
+        report.add(String.format("%-8s %6s %10s %12s %14s", "mode", "dims", "recall@k", "mean ms", "index size"));
+        report.addAll(rows);
+        report.forEach(System.out::println);
+        Files.write(REPORT, report);
+    }
+
+    private static ConfigurableApplicationContext start(Path corpus, Setting setting) {
+        boolean quantized = !"none".equals(setting.quantization());
+        return new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run(SearchBenchmark.arguments(corpus, Map.of(
+                        "vectorstore.backend", "pgvector",
+                        "vectorstore.pgvector.quantization", setting.quantization(),
+                        "vectorstore.pgvector.index-dimensions", String.valueOf(setting.dimensions()),
+                        "spring.ai.vectorstore.pgvector.index-type", quantized ? "NONE" : "HNSW")));
+    }
+
+    private static List<float[]> queries(ConfigurableApplicationContext context, int sample) {
+        List<String> ids = context.getBean(JdbcTemplate.class)
+                .queryForList("SELECT vector_id FROM doc_chunk WHERE char_offset IS NOT NULL "
+                                + "ORDER BY content_hash, vector_id LIMIT ?",
+                        String.class, sample);
+        Map<String, String> chunks = context.getBean(DocContentRepository.class).readChunks(ids);
+        List<String> texts = ids.stream()
+                .map(chunks::get)
+                .map(content -> String.join(" ", Arrays.stream(content.strip().split("\\s+"))
+                        .limit(QUERY_WORDS)
+                        .toList()))
+                .toList();
+        return context.getBean(EmbeddingModel.class).embed(texts);
+    }
+
+    // index scans off, so the ordering is computed on every full vector
+    private static List<Set<String>> exactNeighbours(ConfigurableApplicationContext context,
+                                                     List<float[]> queries, int k) {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        TransactionTemplate tx = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        return tx.execute(status -> {
+            jdbc.execute("SET LOCAL enable_indexscan = off");
+            jdbc.execute("SET LOCAL enable_bitmapscan = off");
+            List<Set<String>> neighbours = new ArrayList<>(queries.size());
+            for (float[] query : queries) {
+                neighbours.add(new HashSet<>(jdbc.queryForList(
+                        "SELECT id::text FROM " + TABLE + " ORDER BY embedding <=> ? LIMIT ?",
+                        String.class, new PGvector(query), k)));
+            }
+            return neighbours;
+        });
+    }
+
+    private static String indexSize(JdbcTemplate jdbc, Setting setting) {
+        String sql = "SELECT pg_size_pretty(pg_relation_size(format('%I.%I', schemaname, indexname)::regclass)) "
+                + "FROM pg_indexes WHERE schemaname = 'public' AND tablename = 'vector_store' AND ";
+        List<String> sizes;
+        if ("none".equals(setting.quantization())) {
+            sizes = jdbc.queryForList(sql + "indexdef LIKE '%USING hnsw (embedding %'", String.class);
+        } else {
+            // named by VectorSearchRepository after the mode and the kept dimensions
+            int dimensions = setting.dimensions() > 0 ? setting.dimensions() : jdbc.queryForObject(
+                    "SELECT atttypmod FROM pg_attribute WHERE attrelid = ?::regclass AND attname = 'embedding'",
+                    Integer.class, TABLE);
+            sizes = jdbc.queryForList(sql + "indexname = ?", String.class,
+                    "vector_store_" + setting.quantization() + "_" + dimensions + "_idx");
+        }
+        return sizes.isEmpty() ? "-" : sizes.getFirst();
+    }
+
+    private record Setting(String quantization, int dimensions) {
+    }
+}
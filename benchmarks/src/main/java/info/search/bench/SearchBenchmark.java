@@ -0,0 +1,183 @@
+package info.search.bench;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.search.Application;
+import info.search.dto.ImportJobDto;
+import info.search.dto.SearchMode;
+import info.search.dto.SearchResultDto;
+import info.search.repository.DocContentRepository;
+import info.search.service.BulkImportService;
+import info.search.service.DocService;
+import info.search.service.Rerank;
+import info.search.service.ResultShape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * End-to-end {@link DocService#search} against a local Postgres with
+ * pgvector, with the result cache off so every call embeds the query and
+ * hits the index. The corpus is bulk imported on first use; duplicates are
+ * skipped, so reruns against the same database do not grow it.
+ * <p>
+ * {@code hnsw-vector} runs the same queries on the in-process HNSW backend,
+ * filled from the chunks a pgvector target left in the pgvector table.
+ * {@code pgvector-halfvec} and {@code pgvector-binary} search through a
+ * quantized index with an exact rerank; {@link QuantizationReport} measures
+ * their recall and index size.
+ * <p>
+ * Connection settings: {@code -Dbench.datasource.url}, {@code .username},
+ * {@code .password}; the corpus directory: {@code -Dbench.corpus}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SearchBenchmark {
+    private static final String[] QUERIES = {
+            "mother answer small animal",
+            "learn between form letter",
+            "America would first",
+            "follow play because show",
+            "point found come right",
+    };
+
+    @Param({"pgvector-vector", "pgvector-hybrid", "pgvector-halfvec", "pgvector-binary", "hnsw-vector"})
+    private String target;
+
+    private ConfigurableApplicationContext context;
+    private DocService docService;
+    private SearchMode mode;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        boolean hnsw = target.startsWith("hnsw");
+        mode = target.endsWith("hybrid") ? SearchMode.HYBRID : SearchMode.VECTOR;
+        Path corpus = corpus();
+
+        Map<String, String> overrides = new LinkedHashMap<>();
+        overrides.put("vectorstore.backend", hnsw ? "hnsw" : "pgvector");
+        if (target.endsWith("halfvec") || target.endsWith("binary")) {
+            overrides.put("vectorstore.pgvector.quantization", target.substring(target.indexOf('-') + 1));
+            overrides.put("spring.ai.vectorstore.pgvector.index-type", "NONE");
+        }
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments(corpus, overrides));
+        docService = context.getBean(DocService.class);
+
+        if (hnsw) {
+            copyPgvectorChunks();
+        } else {
+            importCorpus(context, corpus.getFileName().toString());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<SearchResultDto> search() {
+        String query = QUERIES[next++ % QUERIES.length];
+        return docService.search(query, null, mode, ResultShape.DEFAULT, Rerank.DEFAULT, PageRequest.of(0, 10));
+    }
+
+    static Path corpus() {
+        return Path.of(System.getProperty("bench.corpus", "../src/main/resources/test_docs"))
+                .toAbsolutePath().normalize();
+    }
+
+    /**
+     * Command line arguments for the application, so they win over
+     * application.properties; {@code overrides} win over the defaults here.
+     */
+    static String[] arguments(Path corpus, Map<String, String> overrides) {
+        Map<String, String> properties = new LinkedHashMap<>(Map.ofEntries(
+                Map.entry("server.port", "0"),
+                Map.entry("server.servlet.context-path", ""),
+                Map.entry("springdoc.swagger-ui.path", "/swagger-ui.html"),
+                Map.entry("spring.datasource.url",
+                        System.getProperty("bench.datasource.url", "jdbc:postgresql://localhost:5432/doc_search")),
+                Map.entry("spring.datasource.username",
+                        System.getProperty("bench.datasource.username", "postgres")),
+                Map.entry("spring.datasource.password",
+                        System.getProperty("bench.datasource.password", "postgres")),
+                Map.entry("spring.ai.vectorstore.pgvector.index-type", "HNSW"),
+                Map.entry("spring.ai.vectorstore.pgvector.distance-type", "COSINE_DISTANCE"),
+                Map.entry("spring.jpa.show-sql", "false"),
+                Map.entry("search.cache.enabled", "false"),
+                Map.entry("ingestion.bulk.root", corpus.getParent().toString())));
+        properties.putAll(overrides);
+        return properties.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+    }
+
+    static void importCorpus(ConfigurableApplicationContext context, String dir) throws InterruptedException {
+        BulkImportService imports = context.getBean(BulkImportService.class);
+        ImportJobDto job = imports.importDirectory(dir);
+        while (job.getFinishedAt() == null) {
+            Thread.sleep(200);
+            job = imports.getImport(job.getId());
+        }
+        if (!"COMPLETED".equals(job.getStatus()) || job.getFilesFailed() > 0) {
+            throw new IllegalStateException("Corpus import failed: " + job.getError());
+        }
+    }
+
+    // re-embedding goes through the embedding cache, so this is mostly index build time
+    private void copyPgvectorChunks() throws Exception {
+        JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+        ObjectMapper mapper = context.getBean(ObjectMapper.class);
+        List<Document> chunks = new ArrayList<>();
+        jdbc.query("SELECT id::text, content, metadata::text FROM public.vector_store", rs -> {
+            try {
+                Map<String, Object> metadata = mapper.readValue(rs.getString(3), new TypeReference<>() {
+                });
+                chunks.add(new Document(rs.getString(1), rs.getString(2), metadata));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        if (chunks.isEmpty()) {
+            throw new IllegalStateException("pgvector table is empty, run a pgvector target first");
+        }
+        // chunks referencing the stored body have no text in the pgvector row
+        Map<String, String> texts = context.getBean(DocContentRepository.class)
+                .readChunks(chunks.stream().map(Document::getId).toList());
+        context.getBean(VectorStore.class).add(chunks.stream()
+                .map(c -> c.getText().isEmpty()
+                        ? new Document(c.getId(), texts.get(c.getId()), c.getMetadata())
+                        : c)
+                .toList());
+    }
+}
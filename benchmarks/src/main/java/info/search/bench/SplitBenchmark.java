@@ -0,0 +1,62 @@
+package info.search.bench;
+
+import java.util.List;
+import info.search.config.IngestionProperties;
+import info.search.model.Doc;
+import info.search.model.Paragraph;
+import info.search.service.SectionChunker;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+/**
+ * Chunking of every parsed corpus document per operation: the flat-text
+ * {@link TokenTextSplitter} against the paragraph packing {@link SectionChunker}
+ * used by ingestion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SplitBenchmark {
+    private final TokenTextSplitter splitter = new TokenTextSplitter();
+    private final SectionChunker chunker = new SectionChunker(new IngestionProperties.Chunking());
+    private List<Document> documents;
+    private List<List<Paragraph>> paragraphs;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Doc> docs = Corpus.docs();
+        documents = docs.stream()
+                .map(doc -> new Document(doc.getContent()))
+                .toList();
+        paragraphs = docs.stream()
+                .map(Doc::getParagraphs)
+                .toList();
+    }
+
+    @Benchmark
+    public List<Document> splitCorpus() {
+        return splitter.apply(documents);
+    }
+
+    @Benchmark
+    public void chunkCorpusBySection(Blackhole blackhole) {
+        for (List<Paragraph> doc : paragraphs) {
+            blackhole.consume(chunker.split(doc));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package info.search.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import info.search.Application;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Load test of {@code POST /docs/search} over HTTP with far more clients
+ * than Tomcat threads, on platform threads and on virtual threads
+ * ({@code spring.threads.virtual.enabled}). The Tomcat pool is kept small
+ * so it saturates the way the default one does under burst load; compare
+ * ops/ms and the sampled p99 of both targets.
+ * <p>
+ * Same connection and corpus settings as {@link SearchBenchmark}; the
+ * Tomcat pool size: {@code -Dbench.tomcat.threads}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Threads(128)
+@Fork(1)
+public class ThreadingBenchmark {
+    private static final String[] QUERIES = {
+            "mother answer small animal",
+            "learn between form letter",
+            "America would first",
+            "follow play because show",
+            "point found come right",
+    };
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private URI search;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws Exception {
+        Path corpus = SearchBenchmark.corpus();
+        context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.SERVLET)
+                .run(SearchBenchmark.arguments(corpus, Map.of(
+                        "spring.threads.virtual.enabled", String.valueOf("virtual".equals(threads)),
+                        "server.tomcat.threads.max", System.getProperty("bench.tomcat.threads", "32"))));
+        SearchBenchmark.importCorpus(context, corpus.getFileName().toString());
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        search = URI.create("http://localhost:" + port + "/docs/search");
+        client = HttpClient.newHttpClient();
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        context.close();
+    }
+
+    @Benchmark
+    public int search() throws Exception {
+        String query = QUERIES[Math.floorMod(next.getAndIncrement(), QUERIES.length)];
+        HttpRequest request = HttpRequest.newBuilder(search)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"query\":\"" + query + "\",\"page\":0,\"size\":10}"))
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Search failed with " + response.statusCode() + ": " + response.body());
+        }
+        return response.body().length();
+    }
+}
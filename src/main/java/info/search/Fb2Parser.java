@@ -1,128 +1,348 @@
 package info.search;
 
 import info.search.model.Doc;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import info.search.model.Paragraph;
+import info.search.parser.DocCollector;
+import info.search.parser.DocumentHandler;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Single-pass streaming FB2 parser.
+ * Reads {@code title-info}, the authors and the body text straight from the
+ * StAX event stream, so the document tree is never held in memory and the
+ * body whitespace is normalized while it is read. The body is handed out
+ * as {@link Paragraph}s carrying their section path, as soon as each one
+ * ends.
+ */
 public class Fb2Parser {
+    private static final String REPORT_CDATA =
+            "http://java.sun.com/xml/stream/properties/report-cdata-event";
+    // text-level markup, everything else in the body closes the current paragraph
+    private static final Set<String> INLINE = Set.of(
+            "emphasis", "strong", "style", "a", "strikethrough", "sub", "sup", "code", "image");
 
+    /** Parses the whole document, body text and paragraphs held in memory. */
     public static Doc parse(InputStream inputStream) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        factory.setNamespaceAware(true);
+        DocCollector collector = new DocCollector();
+        parse(inputStream, collector);
+        return collector.toDoc();
+    }
+
+    public static void parse(InputStream inputStream, DocumentHandler handler) throws Exception {
+        XMLStreamReader reader = createFactory().createXMLStreamReader(inputStream);
+        try {
+            read(reader, handler);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
         // security
-        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl",
-                true);
-        factory.setFeature("http://xml.org/sax/features/external-general-entities",
-                false);
-        factory.setFeature("http://xml.org/sax/features/external-parameter-entities",
-                false);
-        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd",
-                false);
-        factory.setXIncludeAware(false);
-        factory.setExpandEntityReferences(false);
-
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        org.w3c.dom.Document xml = builder.parse(inputStream);
-        xml.getDocumentElement().normalize();
-
-        Element titleInfo = findElement(xml);
-        String author = extractAuthors(titleInfo);
-        String title = textOf(titleInfo, "book-title");
-        String bodyText = extractBody(xml);
-
-        Doc doc = new Doc();
-        doc.setTitle(title);
-        doc.setAuthor(author);
-        doc.setContent(bodyText);
-        return doc;
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        // CDATA sections are not text nodes for the body walk
+        factory.setProperty(REPORT_CDATA, true);
+        return factory;
     }
 
-    private static Element findElement(Document xml) {
-        NodeList list = xml.getElementsByTagNameNS("*",
-                "title-info");
-        if (list.getLength() == 0) {
-            list = xml.getElementsByTagName("title-info");
+    private static void read(XMLStreamReader reader, DocumentHandler handler) throws XMLStreamException {
+        State state = new State(handler);
+        while (reader.hasNext()) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.DTD ->
+                        throw new XMLStreamException("DOCTYPE is disallowed", reader.getLocation());
+                case XMLStreamConstants.START_ELEMENT -> state.start(reader.getLocalName());
+                case XMLStreamConstants.END_ELEMENT -> state.end(reader.getLocalName());
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE -> state.text(
+                        reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength(), true);
+                case XMLStreamConstants.CDATA -> state.text(
+                        reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength(), false);
+                default -> state.boundary();
+            }
         }
-        return list.getLength() > 0 ? (Element) list.item(0) : null;
+        state.sendMetadata();
     }
 
-    private static String textOf(Element element, String tag) {
-        if (element == null) {
-            return "";
+    private static final class State {
+        private final DocumentHandler handler;
+        private final List<String> authors = new ArrayList<>();
+        private final BodyText paragraph = new BodyText();
+        private final Deque<Section> sections = new ArrayDeque<>();
+        private int sectionCount;
+        // depth of the title of the innermost section, 0 when outside of it;
+        // its paragraphs wait there until the section path is known
+        private int titleDepth;
+        private final List<String> titleParts = new ArrayList<>();
+
+        private int depth;
+        // depth of the first title-info, 0 when outside of it
+        private int titleInfoDepth;
+        private boolean titleInfoSeen;
+        private int authorDepth;
+        // depth of the enclosing body, 0 when outside of it
+        private int bodyDepth;
+
+        private String title;
+        private boolean metadataSent;
+        private String first;
+        private String middle;
+        private String last;
+
+        // text content of the element currently being captured
+        private StringBuilder capture;
+        private String captureTag;
+        private int captureDepth;
+
+        State(DocumentHandler handler) {
+            this.handler = handler;
+        }
+
+        void start(String name) {
+            depth++;
+            if (bodyDepth == 0 && "body".equals(name)) {
+                bodyDepth = depth;
+            }
+            if (bodyDepth > 0) {
+                startBlock(name);
+            }
+            if (!titleInfoSeen && "title-info".equals(name)) {
+                titleInfoSeen = true;
+                titleInfoDepth = depth;
+                return;
+            }
+            if (titleInfoDepth == 0 || capture != null) {
+                return;
+            }
+            if (authorDepth == 0 && "author".equals(name)) {
+                authorDepth = depth;
+                first = null;
+                middle = null;
+                last = null;
+            } else if (authorDepth != 0 && isNamePart(name) && partOf(name) == null) {
+                startCapture(name);
+            } else if (authorDepth == 0 && title == null && "book-title".equals(name)) {
+                startCapture(name);
+            }
+        }
+
+        void end(String name) {
+            if (bodyDepth > 0) {
+                endBlock(name);
+            }
+            if (capture != null && depth == captureDepth) {
+                finishCapture();
+            }
+            if (depth == authorDepth) {
+                finishAuthor();
+            }
+            if (depth == titleInfoDepth) {
+                titleInfoDepth = 0;
+            }
+            if (depth == bodyDepth) {
+                bodyDepth = 0;
+            }
+            depth--;
+        }
+
+        void text(char[] chars, int start, int length, boolean textNode) {
+            if (capture != null) {
+                capture.append(chars, start, length);
+            }
+            if (bodyDepth > 0) {
+                if (textNode) {
+                    paragraph.append(chars, start, length);
+                } else {
+                    boundary();
+                }
+            }
         }
-        NodeList list = element.getElementsByTagNameNS("*", tag);
-        if (list.getLength() == 0) {
-            list = element.getElementsByTagName(tag);
+
+        void boundary() {
+            paragraph.boundary();
         }
-        if (list.getLength() > 0) {
-            return list.item(0).getTextContent().trim();
+
+        // the description, and so title-info, precedes every body
+        void sendMetadata() {
+            if (!metadataSent) {
+                metadataSent = true;
+                handler.metadata(title, String.join(", ", authors));
+            }
         }
-        return "";
-    }
 
-    private static String extractAuthors(Element titleInfo) {
-        if (titleInfo == null) {
-            return "";
+        private void startBlock(String name) {
+            if (INLINE.contains(name)) {
+                paragraph.boundary();
+                return;
+            }
+            flushParagraph();
+            Section parent = sections.peek();
+            if ("section".equals(name)) {
+                sections.push(new Section(depth, ++sectionCount, parent == null ? "" : parent.path));
+            } else if ("title".equals(name) && parent != null && parent.depth == depth - 1
+                    && parent.title == null && titleDepth == 0) {
+                titleDepth = depth;
+            }
+        }
+
+        private void endBlock(String name) {
+            if (INLINE.contains(name)) {
+                paragraph.boundary();
+                return;
+            }
+            flushParagraph();
+            if (depth == titleDepth) {
+                finishTitle();
+            }
+            if (!sections.isEmpty() && sections.peek().depth == depth) {
+                sections.pop();
+            }
+        }
+
+        private void flushParagraph() {
+            String text = paragraph.toString();
+            paragraph.reset();
+            if (text.isEmpty()) {
+                return;
+            }
+            if (titleDepth > 0) {
+                titleParts.add(text);
+            } else {
+                addParagraph(text);
+            }
+        }
+
+        private void finishTitle() {
+            Section section = sections.getFirst();
+            section.title = String.join(" ", titleParts);
+            section.path = section.path.isEmpty() ? section.title : section.path + " / " + section.title;
+            titleParts.forEach(this::addParagraph);
+            titleParts.clear();
+            titleDepth = 0;
         }
 
-        // * — ignore namespace
-        NodeList authors = titleInfo
-                .getElementsByTagNameNS("*", "author");
+        private void addParagraph(String text) {
+            sendMetadata();
+            Section section = sections.peek();
+            handler.paragraph(section == null
+                    ? new Paragraph(text, "", null, 0)
+                    : new Paragraph(text, section.path, section.title, section.ordinal));
+        }
 
-        if (authors.getLength() == 0) {
-            authors = titleInfo.getElementsByTagName("author");
+        private void startCapture(String name) {
+            capture = new StringBuilder();
+            captureTag = name;
+            captureDepth = depth;
         }
 
-        List<String> names = new ArrayList<>();
-        for (int i = 0; i < authors.getLength(); i++) {
-            Node author = authors.item(i);
-            if (author.getNodeType() != Node.ELEMENT_NODE) {
-                continue;
+        private void finishCapture() {
+            String text = capture.toString().trim();
+            switch (captureTag) {
+                case "first-name" -> first = text;
+                case "middle-name" -> middle = text;
+                case "last-name" -> last = text;
+                default -> title = text;
             }
-            Element element = (Element) author;
-            String first = textOf(element, "first-name");
-            String middle = textOf(element, "middle-name");
-            String last = textOf(element, "last-name");
-            String full = (first + " " + middle + " " + last).trim()
+            capture = null;
+            captureTag = null;
+        }
+
+        private void finishAuthor() {
+            String full = (orEmpty(first) + " " + orEmpty(middle) + " " + orEmpty(last)).trim()
                     .replaceAll("\\s+", " ");
             if (!full.isBlank()) {
-                names.add(full);
+                authors.add(full);
             }
+            authorDepth = 0;
+        }
+
+        private String partOf(String name) {
+            return switch (name) {
+                case "first-name" -> first;
+                case "middle-name" -> middle;
+                default -> last;
+            };
         }
-        return String.join(", ", names);
-    }
 
-    private static String extractBody(org.w3c.dom.Document xml) {
-        NodeList bodies = xml.getElementsByTagNameNS("*", "body");
-        if (bodies.getLength() == 0) {
-            bodies = xml.getElementsByTagName("body");
+        private static boolean isNamePart(String name) {
+            return "first-name".equals(name) || "middle-name".equals(name)
+                    || "last-name".equals(name);
         }
-        if (bodies.getLength() == 0) {
-            return "";
+
+        private static String orEmpty(String value) {
+            return value == null ? "" : value;
         }
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < bodies.getLength(); i++) {
-            collect(bodies.item(i), sb);
+    }
+
+    private static final class Section {
+        private final int depth;
+        private final int ordinal;
+        // titles of the enclosing sections and, once read, this one's
+        private String path;
+        private String title;
+
+        Section(int depth, int ordinal, String path) {
+            this.depth = depth;
+            this.ordinal = ordinal;
+            this.path = path;
         }
-        return sb.toString().replaceAll("\\s+", " ").trim();
     }
 
-    // recursive
-    private static void collect(Node node, StringBuilder sb) {
-        if (node.getNodeType() == Node.TEXT_NODE) {
-            String text = node.getTextContent().trim();
-            if (!text.isEmpty()) sb.append(text).append(" ");
+    /**
+     * Accumulates paragraph text the way the old DOM walk produced it: text
+     * nodes are separated by a single space and every whitespace run
+     * collapses to one space, without a second pass over the whole string.
+     */
+    private static final class BodyText {
+        private final StringBuilder sb = new StringBuilder();
+        private boolean pendingSpace;
+
+        void append(char[] chars, int start, int length) {
+            for (int i = start; i < start + length; i++) {
+                char c = chars[i];
+                if (isWhitespace(c)) {
+                    pendingSpace = true;
+                    continue;
+                }
+                if (pendingSpace && !sb.isEmpty()) {
+                    sb.append(' ');
+                }
+                pendingSpace = false;
+                sb.append(c);
+            }
+        }
+
+        void boundary() {
+            pendingSpace = true;
+        }
+
+        void reset() {
+            sb.setLength(0);
+            pendingSpace = false;
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
         }
-        NodeList children = node.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            collect(children.item(i), sb);
+
+        // same set as the \s regex class
+        private static boolean isWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+                    || c == '\f' || c == '\r';
         }
     }
-}
\ No newline at end of file
+}
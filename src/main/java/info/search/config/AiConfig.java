@@ -1,14 +1,48 @@
 package info.search.config;
 
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import info.search.repository.EmbeddingCacheRepository;
+import info.search.service.CachingEmbeddingModel;
+import info.search.service.SectionChunker;
+import info.search.service.ThrottledEmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.transformers.TransformersEmbeddingModel;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 
 @Configuration
 public class AiConfig {
 
     @Bean
-    public TokenTextSplitter tokenTextSplitter() {
-        return new TokenTextSplitter();
+    public SectionChunker sectionChunker(IngestionProperties props) {
+        return new SectionChunker(props.getChunking());
     }
-}
\ No newline at end of file
+
+    /**
+     * Puts the embedding cache in front of the local transformers model,
+     * so both the vector store writes and the query embeddings go through it.
+     * On virtual threads the model calls that miss the cache are also capped
+     * by {@code concurrency.embedding-permits}.
+     */
+    @Bean
+    @Primary
+    public EmbeddingModel decoratedEmbeddingModel(TransformersEmbeddingModel transformersEmbeddingModel,
+                                                  EmbeddingCacheRepository cacheRepository,
+                                                  EmbeddingProperties props,
+                                                  ConcurrencyProperties concurrencyProps,
+                                                  Environment environment,
+                                                  MeterRegistry registry) {
+        EmbeddingModel model = transformersEmbeddingModel;
+        if (Threading.VIRTUAL.isActive(environment)) {
+            model = new ThrottledEmbeddingModel(model, concurrencyProps.getEmbeddingPermits(),
+                    concurrencyProps.getEmbeddingPermitTimeout());
+        }
+        if (props.getCache().isEnabled()) {
+            model = new CachingEmbeddingModel(model, cacheRepository, props.getCache(), registry);
+        }
+        return model;
+    }
+}
@@ -0,0 +1,38 @@
+package info.search.config;
+
+import javax.sql.DataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ConcurrencyProperties.class)
+public class ConcurrencyConfig {
+
+    /**
+     * With virtual threads every blocked request is cheap, so nothing in
+     * front of the pool limits how many of them reach Postgres at once.
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public static BeanPostProcessor permitDataSourcePostProcessor(ObjectProvider<ConcurrencyProperties> props) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof PermitDataSource)) {
+                    // the pool's own wait for a connection also bounds the wait for a permit
+                    long timeoutMillis = dataSource instanceof HikariDataSource hikari
+                            ? hikari.getConnectionTimeout()
+                            : props.getObject().getJdbcPermitTimeout().toMillis();
+                    return new PermitDataSource(dataSource, props.getObject().getJdbcPermits(), timeoutMillis);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package info.search.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Caps on blocking resources, applied when {@code spring.threads.virtual.enabled}
+ * is set. Platform thread pools are bounded on their own, virtual threads
+ * are not, so these permits take over that role.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "concurrency")
+public class ConcurrencyProperties {
+    /** Connections checked out at once, keep at or below the Hikari pool size. */
+    private int jdbcPermits = 10;
+    /** Wait for a connection permit when the data source is not Hikari, whose connection timeout applies otherwise. */
+    private Duration jdbcPermitTimeout = Duration.ofSeconds(30);
+    /** Concurrent calls into the embedding model. */
+    private int embeddingPermits = Math.max(1, Runtime.getRuntime().availableProcessors());
+    /** Wait for an embedding permit before the call fails with 503. */
+    private Duration embeddingPermitTimeout = Duration.ofSeconds(30);
+}
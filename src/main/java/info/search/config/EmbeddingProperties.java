@@ -0,0 +1,35 @@
+package info.search.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "embedding")
+public class EmbeddingProperties {
+    /** Embedding worker threads, tune together with the ONNX runtime threads. */
+    private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    /** Micro-batches that may wait for a worker before the submitter blocks. */
+    private int queueCapacity = 32;
+    /** Chunks embedded and stored per vector store call. */
+    private int batchSize = 32;
+    /** Attempts per batch, including the first one. */
+    private int maxAttempts = 3;
+    /** Pause before the first retry, doubled on every further attempt. */
+    private Duration retryBackoff = Duration.ofMillis(500);
+    private Cache cache = new Cache();
+
+    @Getter
+    @Setter
+    public static class Cache {
+        private boolean enabled = true;
+        /** Part of every cache key, change it when the embedding model changes. */
+        private String modelId = "all-MiniLM-L6-v2";
+        /** Embeddings kept in the in-memory LRU tier. */
+        private int maxEntries = 20_000;
+        /** Whether misses of the memory tier fall back to the embedding_cache table. */
+        private boolean persistent = true;
+    }
+}
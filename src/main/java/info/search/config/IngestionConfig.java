@@ -0,0 +1,136 @@
+package info.search.config;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import info.search.repository.DocBatchRepository;
+import info.search.repository.DocContentRepository;
+import info.search.service.ContentHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties({IngestionProperties.class, EmbeddingProperties.class})
+public class IngestionConfig {
+
+    /**
+     * Parse stage. A full queue rejects the upload, so the HTTP layer
+     * answers 503 instead of buffering files without limit.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor parseExecutor(IngestionProperties props) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(props.getParseWorkers());
+        executor.setMaxPoolSize(props.getParseWorkers());
+        executor.setQueueCapacity(props.getQueueCapacity());
+        executor.setThreadNamePrefix("ingest-parse-");
+        executor.initialize();
+        return executor;
+    }
+
+    /** Runs bulk imports; with every slot taken a new import is rejected. */
+    @Bean
+    public ThreadPoolTaskExecutor importCoordinator(IngestionProperties props) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(props.getBulk().getConcurrentImports());
+        executor.setMaxPoolSize(props.getBulk().getConcurrentImports());
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("import-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Parse workers of the bulk imports. A coordinator only keeps one
+     * batch of files in flight, so the queue never grows past that.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor importParseExecutor(IngestionProperties props) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(props.getBulk().getWorkers());
+        executor.setMaxPoolSize(props.getBulk().getWorkers());
+        executor.setThreadNamePrefix("import-parse-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Embedding workers. A full queue blocks the submitting thread until a
+     * worker frees a slot, which is the backpressure between stages.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor embedExecutor(EmbeddingProperties props) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(props.getWorkers());
+        executor.setMaxPoolSize(props.getWorkers());
+        executor.setQueueCapacity(props.getQueueCapacity());
+        executor.setThreadNamePrefix("embed-");
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("Embedding executor is shut down");
+            }
+            try {
+                pool.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException(e);
+            }
+        });
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Moves bodies stored whole in {@code doc_content} into compressed
+     * blocks, one document per transaction, so an interrupted run resumes.
+     */
+    @Bean
+    public ApplicationRunner legacyBodyMigration(DocContentRepository docContentRepo, IngestionProperties props) {
+        return args -> {
+            int batchSize = Math.max(1, props.getBody().getMigrationBatchSize());
+            int moved = 0;
+            List<Long> ids;
+            while (!(ids = docContentRepo.findLegacyIds(batchSize)).isEmpty()) {
+                ids.forEach(docContentRepo::migrate);
+                moved += ids.size();
+            }
+            if (moved > 0) {
+                log.info("Moved {} document bodies into compressed blocks", moved);
+            }
+        };
+    }
+
+    /**
+     * Hashes the bodies of documents stored before the hash was taken over
+     * normalized text, so re-imports of them are found as duplicates. A
+     * document whose text another one has already is left without a hash.
+     */
+    @Bean
+    public ApplicationRunner contentRehash(DocContentRepository docContentRepo, DocBatchRepository docBatchRepo,
+                                           IngestionProperties props) {
+        return args -> {
+            int batchSize = Math.max(1, props.getBody().getMigrationBatchSize());
+            int hashed = 0;
+            int duplicates = 0;
+            List<Long> ids;
+            while (!(ids = docBatchRepo.findStaleHashIds(batchSize)).isEmpty()) {
+                for (Long id : ids) {
+                    ContentHash.Body hash = ContentHash.body();
+                    docContentRepo.writeTo(id, hash);
+                    if (!docBatchRepo.claimContentHash(id, hash.hex())) {
+                        duplicates++;
+                    }
+                }
+                hashed += ids.size();
+            }
+            if (hashed > 0) {
+                log.info("Hashed the content of {} documents again, {} of them duplicate another one",
+                        hashed, duplicates);
+            }
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package info.search.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "ingestion")
+public class IngestionProperties {
+    /** Threads parsing and splitting uploaded files. */
+    private int parseWorkers = 2;
+    /** Uploads that may wait for a parse worker before new ones are rejected. */
+    private int queueCapacity = 16;
+    /** How long finished jobs stay visible through the job endpoint. */
+    private Duration jobRetention = Duration.ofHours(1);
+    private Bulk bulk = new Bulk();
+    private Chunking chunking = new Chunking();
+    private Body body = new Body();
+
+    @Getter
+    @Setter
+    public static class Bulk {
+        /** Server directory that import paths are resolved against; blank disables directory import. */
+        private String root = "";
+        /** Threads parsing files of a bulk import. */
+        private int workers = 4;
+        /** Files parsed, deduplicated and inserted together. */
+        private int batchSize = 50;
+        /** Imports that may run at once before new ones are rejected. */
+        private int concurrentImports = 1;
+    }
+
+    @Getter
+    @Setter
+    public static class Chunking {
+        /** Token budget of one chunk; paragraphs are packed up to it. */
+        private int maxTokens = 800;
+        /** Trailing paragraphs of a chunk repeated at the start of the next, up to this many tokens. */
+        private int overlapTokens = 0;
+        /** A chunk shorter than this keeps packing across a section boundary instead of ending there. */
+        private int minTokens = 200;
+    }
+
+    @Getter
+    @Setter
+    public static class Body {
+        /** Characters per compressed body block; smaller blocks make chunk reads cheaper and compress worse. */
+        private int blockChars = 16_384;
+        /** Legacy bodies moved into blocks per batch at startup. */
+        private int migrationBatchSize = 100;
+    }
+}
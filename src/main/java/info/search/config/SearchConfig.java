@@ -0,0 +1,74 @@
+package info.search.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import info.search.repository.VectorSearchRepository;
+import info.search.service.SearchWarmup;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableConfigurationProperties(SearchProperties.class)
+public class SearchConfig {
+
+    /**
+     * Runs the retrievers of one search in parallel, so a hybrid search
+     * costs about the slower leg rather than the sum of both. With the
+     * queue full a leg runs on the request thread, which slows that search
+     * down instead of queueing legs without limit.
+     */
+    @Bean
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor searchExecutor(SearchProperties props) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(props.getWorkers());
+        executor.setMaxPoolSize(props.getWorkers());
+        executor.setQueueCapacity(props.getQueueCapacity());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("search-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * A virtual thread per retriever leg; the connection and embedding
+     * permits bound what the legs can load onto Postgres and the model.
+     */
+    @Bean(name = "searchExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public SimpleAsyncTaskExecutor virtualSearchExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("search-");
+        executor.setVirtualThreads(true);
+        return executor;
+    }
+
+    /**
+     * The pgvector table only exists once the vector store has initialized
+     * its schema, so older chunks get their tsvector from it after that.
+     */
+    @Bean
+    public ApplicationRunner lexicalIndexInitializer(VectorStore vectorStore,
+                                                     VectorSearchRepository vectorSearchRepo) {
+        return args -> vectorSearchRepo.backfillLexicalIndex();
+    }
+
+    /**
+     * Runs after the schema runners; the readiness state only turns to
+     * accepting traffic once the ready event's listeners have returned,
+     * so the probe stays down while the model and the indexes warm up.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "search.warmup", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public ApplicationListener<ApplicationReadyEvent> searchWarmupListener(SearchWarmup warmup) {
+        return event -> warmup.run();
+    }
+}
@@ -0,0 +1,106 @@
+package info.search.config;
+
+import java.time.Duration;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "search")
+public class SearchProperties {
+    /**
+     * Minimum similarity of a returned fragment: cosine similarity, the inner
+     * product, or {@code 1 / (1 + distance)} for Euclidean distance, by the
+     * pgvector distance type.
+     */
+    private double similarityThreshold = 0.002;
+    private Cache cache = new Cache();
+    private Cursor cursor = new Cursor();
+    private Hybrid hybrid = new Hybrid();
+    private Batch batch = new Batch();
+    private Rerank rerank = new Rerank();
+    private Warmup warmup = new Warmup();
+    /** Threads running the legs of a search concurrently. */
+    private int workers = 8;
+    /** Legs waiting for a worker; past that a leg runs on the request thread. */
+    private int queueCapacity = 100;
+
+    @Getter
+    @Setter
+    public static class Cache {
+        private boolean enabled = true;
+        /** Distinct (query, docId, threshold) rankings kept. */
+        private int maxEntries = 1000;
+        /** Results ranked and cached per query, later pages are slices of them. */
+        private int depth = 200;
+    }
+
+    @Getter
+    @Setter
+    public static class Cursor {
+        /**
+         * Value of pgvector's hnsw.iterative_scan for keyset queries
+         * (strict_order, relaxed_order or off); blank leaves it unset.
+         */
+        private String iterativeScan = "strict_order";
+    }
+
+    @Getter
+    @Setter
+    public static class Hybrid {
+        /** Candidates fetched from each retriever before fusion. */
+        private int candidates = 100;
+        /** Rank offset k of reciprocal-rank fusion, 1 / (k + rank). */
+        private int rrfK = 60;
+        /** Postgres text search configuration of the full-text index. */
+        private String textSearchConfig = "simple";
+    }
+
+    @Getter
+    @Setter
+    public static class Rerank {
+        /** Loads the cross-encoder at startup; requests may then ask for reranking. */
+        private boolean enabled = false;
+        /** ONNX cross-encoder scoring a (query, chunk) pair, cached locally after the first download. */
+        private String model =
+                "https://huggingface.co/cross-encoder/ms-marco-MiniLM-L-6-v2/resolve/main/onnx/model.onnx";
+        private String tokenizer =
+                "https://huggingface.co/cross-encoder/ms-marco-MiniLM-L-6-v2/resolve/main/tokenizer.json";
+        /** Where the model and tokenizer are cached, the system temp directory when unset. */
+        private String cacheDirectory;
+        /** Tokens per pair, longer chunks are truncated. */
+        private int maxLength = 512;
+        /** Pairs scored per model call; the budget is checked between calls. */
+        private int batchSize = 16;
+        /** Searches scoring at once; the others wait for a permit within their budget. */
+        private int permits = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        /** Candidates reranked when a request does not say. */
+        private int candidates = 50;
+        /** Upper bound of the candidates a request may ask for. */
+        private int maxCandidates = 200;
+        /** Rerank time budget when a request does not say. */
+        private Duration budget = Duration.ofMillis(200);
+        /** Upper bound of the budget a request may ask for. */
+        private Duration maxBudget = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Warmup {
+        /** Runs embeddings and searches at startup, before the readiness probe reports ready. */
+        private boolean enabled = true;
+        /** Query texts embedded and searched during warm-up. */
+        private List<String> queries = List.of("the meaning of life", "a letter from an old friend");
+        /** Times the whole set of queries is run. */
+        private int rounds = 3;
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+        /** Queries accepted by one batch search request. */
+        private int maxQueries = 50;
+    }
+}
@@ -0,0 +1,105 @@
+package info.search.config;
+
+import java.util.List;
+import java.util.Map;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.search.repository.DocBatchRepository;
+import info.search.repository.DocContentRepository;
+import info.search.repository.VectorSearchRepository;
+import info.search.vectorstore.HnswVectorStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(VectorStoreProperties.class)
+public class VectorStoreConfig {
+
+    /**
+     * Replaces pgvector for chunk storage and search; the pgvector store
+     * is still created by the auto-configuration but stays unused.
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "vectorstore", name = "backend", havingValue = "hnsw")
+    public HnswVectorStore hnswVectorStore(EmbeddingModel embeddingModel,
+                                           VectorStoreProperties props,
+                                           ObjectMapper objectMapper) {
+        return new HnswVectorStore(embeddingModel, props.getHnsw(), objectMapper);
+    }
+
+    /**
+     * The snapshot only holds what the index had when it was written, the
+     * database holds every chunk: after a start without a snapshot, or a
+     * crash since the last one, the chunks the index lacks are read back
+     * from their bodies and embedded again, through the embedding cache
+     * that still has their vectors, and chunks deleted meanwhile are dropped.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "vectorstore", name = "backend", havingValue = "hnsw")
+    public ApplicationRunner hnswRecovery(HnswVectorStore store,
+                                          DocBatchRepository docBatchRepo,
+                                          DocContentRepository docContentRepo,
+                                          EmbeddingProperties embeddingProps) {
+        return args -> {
+            Map<String, Map<String, Object>> stored = docBatchRepo.findChunkMetadata();
+            List<String> missing = List.copyOf(store.reconcile(stored));
+            int batchSize = Math.max(1, embeddingProps.getBatchSize());
+            int added = 0;
+            for (int from = 0; from < missing.size(); from += batchSize) {
+                List<String> ids = missing.subList(from, Math.min(missing.size(), from + batchSize));
+                Map<String, String> texts = docContentRepo.readChunks(ids);
+                List<Document> chunks = ids.stream()
+                        .filter(texts::containsKey)
+                        .map(id -> new Document(id, texts.get(id), stored.get(id)))
+                        .toList();
+                store.add(chunks);
+                added += chunks.size();
+            }
+            if (added > 0) {
+                log.info("Added {} stored chunks to the HNSW index", added);
+                store.snapshot();
+            }
+            if (added < missing.size()) {
+                // chunks stored before body offsets have their text nowhere but in a snapshot
+                log.warn("{} chunks without body offsets are missing from the HNSW index, "
+                        + "re-upload their documents to search them", missing.size() - added);
+            }
+        };
+    }
+
+    /**
+     * Like the full-text index, the quantized index is an expression over
+     * the pgvector table, so it is created once the store has initialized.
+     * Quantized modes stay experimental until QuantizationReport has
+     * measured their recall on the corpus they serve.
+     */
+    @Bean
+    public ApplicationRunner quantizedIndexInitializer(VectorStore vectorStore,
+                                                      VectorSearchRepository vectorSearchRepo,
+                                                      VectorStoreProperties props) {
+        return args -> {
+            VectorStoreProperties.Quantization quantization = props.getPgvector().getQuantization();
+            if (quantization != VectorStoreProperties.Quantization.NONE) {
+                log.warn("vectorstore.pgvector.quantization={} is experimental, its recall is unmeasured; "
+                        + "run QuantizationReport on this corpus before relying on it", quantization);
+            }
+            vectorSearchRepo.createQuantizedIndex();
+        };
+    }
+
+    /** The {@code doc_id} column is added to the pgvector table for the same reason. */
+    @Bean
+    public ApplicationRunner docIdColumnInitializer(VectorStore vectorStore,
+                                                    VectorSearchRepository vectorSearchRepo) {
+        return args -> vectorSearchRepo.createDocIdColumn();
+    }
+}
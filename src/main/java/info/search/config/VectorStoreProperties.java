@@ -0,0 +1,64 @@
+package info.search.config;
+
+import java.time.Duration;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "vectorstore")
+public class VectorStoreProperties {
+    /** Where chunk embeddings are indexed and searched. */
+    private Backend backend = Backend.PGVECTOR;
+    private Hnsw hnsw = new Hnsw();
+    private Pgvector pgvector = new Pgvector();
+
+    public enum Backend {
+        PGVECTOR,
+        HNSW
+    }
+
+    public enum Quantization {
+        NONE,
+        HALFVEC,
+        BINARY
+    }
+
+    @Getter
+    @Setter
+    public static class Hnsw {
+        /** Neighbours per node on the upper layers, twice as many on layer 0. */
+        private int m = 16;
+        private int efConstruction = 64;
+        /** Candidate list size while searching, raised to topK when smaller. */
+        private int efSearch = 100;
+        /** FLOAT32 or INT8 vector storage. */
+        private String quantization = "FLOAT32";
+        /** Document filters matching at most this many chunks are answered by an exact scan. */
+        private int exactScanThreshold = 20_000;
+        /** Share of tombstoned nodes above which the graph is rebuilt from its live nodes. */
+        private double compactionRatio = 0.2;
+        /** Memory-mapped snapshot restored at startup and written on shutdown; blank disables it. */
+        private String snapshotPath = "";
+        /** Period of background snapshots, zero disables them. */
+        private Duration snapshotInterval = Duration.ZERO;
+    }
+
+    @Getter
+    @Setter
+    public static class Pgvector {
+        /**
+         * Form of the embeddings in the HNSW index: NONE keeps the index of the
+         * vector store, HALFVEC and BINARY index a quantized expression and
+         * rerank its candidates against the stored full vectors. Quantized
+         * modes need {@code spring.ai.vectorstore.pgvector.index-type=NONE}
+         * and are experimental: no recall measurement backs them yet.
+         */
+        private Quantization quantization = Quantization.NONE;
+        /** Leading dimensions kept in the quantized index, Matryoshka style; 0 keeps all. */
+        private int indexDimensions = 0;
+        /** Index candidates fetched per requested result before the exact rerank, quantized or not. */
+        private int rerankFactor = 4;
+    }
+}
@@ -1,28 +1,51 @@
 package info.search.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.search.dto.BatchSearchDto;
 import info.search.dto.DocDto;
 import info.search.dto.DocShortDto;
+import info.search.dto.ImportJobDto;
+import info.search.dto.ImportRequestDto;
+import info.search.dto.IngestionJobDto;
 import info.search.dto.SearchDto;
 import info.search.dto.SearchResultDto;
+import info.search.dto.SearchSliceDto;
+import info.search.service.BulkImportService;
 import info.search.service.DocService;
+import info.search.service.IngestionService;
+import info.search.service.Rerank;
+import info.search.service.ResultShape;
+import info.search.service.SearchQuery;
+import info.search.service.SearchStream;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.CacheControl;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 @Tag(name = "Documents management",
         description = "Endpoints for managing documents")
@@ -31,6 +54,9 @@ import org.springframework.web.multipart.MultipartFile;
 @RequestMapping(value = "/docs")
 public class DocController {
     private final DocService service;
+    private final IngestionService ingestionService;
+    private final BulkImportService bulkImportService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping()
     @Operation(summary = "Get all docs",
@@ -48,6 +74,14 @@ public class DocController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/{id}/content")
+    @Operation(summary = "Get doc content",
+            description = "Stream the full text of a document as plain text")
+    public void getContent(@PathVariable long id, HttpServletResponse response) throws IOException {
+        response.setContentType("text/plain;charset=UTF-8");
+        service.writeContent(id, response.getWriter());
+    }
+
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete doc by its id",
             description = "Delete doc from database by its id")
@@ -58,10 +92,51 @@ public class DocController {
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @Operation(summary = "Upload fb2 document",
-            description = "Upload fb2 document into the database")
-    public ResponseEntity<DocDto> uploadDocument(@RequestParam("file") MultipartFile file) {
-        DocDto saved = service.uploadDocument(file);
-        return ResponseEntity.status(HttpStatus.CREATED).body(saved);
+            description = "Queue fb2 document for ingestion, returns the ingestion job")
+    public ResponseEntity<IngestionJobDto> uploadDocument(@RequestParam("file") MultipartFile file) {
+        IngestionJobDto job = ingestionService.submit(file);
+        return ResponseEntity.accepted()
+                .location(location("/docs/jobs/{id}", job.getId()))
+                .body(job);
+    }
+
+    @PutMapping(value = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Replace fb2 document",
+            description = "Queue a new version of a document, only changed chunks are re-embedded")
+    public ResponseEntity<IngestionJobDto> updateDocument(@PathVariable long id,
+                                                          @RequestParam("file") MultipartFile file) {
+        IngestionJobDto job = ingestionService.update(id, file);
+        return ResponseEntity.accepted()
+                .location(location("/docs/jobs/{id}", job.getId()))
+                .body(job);
+    }
+
+    @GetMapping("/jobs/{id}")
+    @Operation(summary = "Get ingestion job",
+            description = "Get progress and outcome of an uploaded document's ingestion")
+    public IngestionJobDto getJob(@PathVariable UUID id) {
+        return ingestionService.getJob(id);
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Import fb2 directory",
+            description = "Import every fb2 file under a directory on the server, relative to the import root")
+    public ResponseEntity<ImportJobDto> importDirectory(@RequestBody ImportRequestDto dto) {
+        return importAccepted(bulkImportService.importDirectory(dto.getPath()));
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Import fb2 archive",
+            description = "Import every fb2 file of an uploaded ZIP archive")
+    public ResponseEntity<ImportJobDto> importArchive(@RequestParam("file") MultipartFile file) {
+        return importAccepted(bulkImportService.importArchive(file));
+    }
+
+    @GetMapping("/imports/{id}")
+    @Operation(summary = "Get import job",
+            description = "Get progress and per-file outcomes of a bulk import")
+    public ImportJobDto getImport(@PathVariable UUID id) {
+        return bulkImportService.getImport(id);
     }
 
     @PostMapping("/search")
@@ -71,8 +146,116 @@ public class DocController {
         return service.search(
                 dto.getQuery(),
                 dto.getDocId(),
+                dto.getMode(),
+                new ResultShape(dto.getSnippetLength(), dto.getFields()),
+                new Rerank(dto.getRerankCandidates(), dto.getRerankBudgetMs()),
+                PageRequest.of(dto.getPage(),
+                        dto.getSize())
+        );
+    }
+
+    @PostMapping(value = "/search/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Streaming semantic search",
+            description = "Same search as /docs/search, sent as server-sent events: a result event per hit "
+                    + "as soon as it is final, then an end event with totalElements and last, "
+                    + "or an error event with a message when the search fails")
+    public ResponseEntity<StreamingResponseBody> searchStream(@RequestBody SearchDto dto) {
+        // checked before the response starts, so a bad request still gets a JSON error
+        SearchStream stream = service.searchStream(
+                dto.getQuery(),
+                dto.getDocId(),
+                dto.getMode(),
+                new ResultShape(dto.getSnippetLength(), dto.getFields()),
+                new Rerank(dto.getRerankCandidates(), dto.getRerankBudgetMs()),
                 PageRequest.of(dto.getPage(),
                         dto.getSize())
         );
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .cacheControl(CacheControl.noCache())
+                // keeps a buffering reverse proxy from holding the events back
+                .header("X-Accel-Buffering", "no")
+                .body(out -> stream.writeTo(new EventSink(out, objectMapper)));
+    }
+
+    @PostMapping("/search/batch")
+    @Operation(summary = "Batch semantic search",
+            description = "Run several searches at once, queries are embedded together "
+                    + "and pages are returned in request order")
+    public List<Page<SearchResultDto>> searchBatch(@RequestBody BatchSearchDto dto) {
+        List<SearchQuery> queries = dto.getQueries() == null ? List.of() : dto.getQueries().stream()
+                .map(q -> new SearchQuery(
+                        q.getQuery(),
+                        q.getDocId(),
+                        q.getMode(),
+                        new ResultShape(q.getSnippetLength(), q.getFields()),
+                        new Rerank(q.getRerankCandidates(), q.getRerankBudgetMs()),
+                        PageRequest.of(q.getPage(),
+                                q.getSize())))
+                .toList();
+        return service.searchBatch(queries);
+    }
+
+    @PostMapping(value = "/search", params = "cursor")
+    @Operation(summary = "Semantic search with cursor",
+            description = "Keyset-paginated search: send an empty cursor for the first slice, "
+                    + "then the returned nextCursor while hasMore is true")
+    public SearchSliceDto searchAfter(@RequestBody SearchDto dto,
+                                      @RequestParam String cursor) {
+        return service.searchAfter(
+                dto.getQuery(),
+                dto.getDocId(),
+                cursor,
+                dto.getSize(),
+                new ResultShape(dto.getSnippetLength(), dto.getFields())
+        );
+    }
+
+    /**
+     * Writes a streamed search as {@code text/event-stream}, flushing every
+     * event; a client that has disconnected fails the flush.
+     */
+    private record EventSink(OutputStream out, ObjectMapper objectMapper) implements SearchStream.Sink {
+
+        @Override
+        public void keepAlive() throws IOException {
+            write(":\n\n");
+        }
+
+        @Override
+        public void result(SearchResultDto result) throws IOException {
+            event("result", result);
+        }
+
+        @Override
+        public void end(long totalElements, boolean hasNext) throws IOException {
+            event("end", Map.of("totalElements", totalElements, "last", !hasNext));
+        }
+
+        @Override
+        public void error(String message) throws IOException {
+            event("error", Map.of("message", message));
+        }
+
+        // compact JSON escapes line breaks, so the payload fits one data line
+        private void event(String name, Object data) throws IOException {
+            write("event: " + name + "\ndata: " + objectMapper.writeValueAsString(data) + "\n\n");
+        }
+
+        private void write(String text) throws IOException {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    // absolute, and under the servlet context path the request came in on
+    private static URI location(String path, Object id) {
+        return ServletUriComponentsBuilder.fromCurrentContextPath().path(path).buildAndExpand(id).toUri();
+    }
+
+    private static ResponseEntity<ImportJobDto> importAccepted(ImportJobDto job) {
+        return ResponseEntity.accepted()
+                .location(location("/docs/imports/{id}", job.getId()))
+                .body(job);
     }
 }
@@ -0,0 +1,12 @@
+package info.search.dto;
+
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class BatchSearchDto {
+    /** Searches answered together, pages are returned in the same order. */
+    private List<SearchDto> queries;
+}
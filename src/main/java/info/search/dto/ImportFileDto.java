@@ -0,0 +1,13 @@
+package info.search.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class ImportFileDto {
+    private String fileName;
+    private String result;
+    private Long docId;
+    private String error;
+}
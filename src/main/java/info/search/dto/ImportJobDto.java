@@ -0,0 +1,23 @@
+package info.search.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class ImportJobDto {
+    private UUID id;
+    private String source;
+    private String status;
+    private int filesFound;
+    private int filesImported;
+    private int filesDuplicate;
+    private int filesFailed;
+    private String error;
+    private Instant createdAt;
+    private Instant finishedAt;
+    private List<ImportFileDto> files;
+}
@@ -0,0 +1,11 @@
+package info.search.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class ImportRequestDto {
+    /** Directory relative to the configured import root. */
+    private String path;
+}
@@ -0,0 +1,21 @@
+package info.search.dto;
+
+import java.time.Instant;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class IngestionJobDto {
+    private UUID id;
+    private String fileName;
+    private String status;
+    private Long docId;
+    private int chunksEmbedded;
+    private int chunksTotal;
+    private int chunksReused;
+    private String error;
+    private Instant createdAt;
+    private Instant finishedAt;
+}
@@ -0,0 +1,12 @@
+package info.search.dto;
+
+public enum ResultField {
+    DOC_ID,
+    TITLE,
+    AUTHOR,
+    FRAGMENT,
+    SCORE,
+    VECTOR_ID,
+    CHUNK_INDEX,
+    RERANK_SCORE
+}
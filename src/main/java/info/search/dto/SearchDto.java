@@ -1,5 +1,6 @@
 package info.search.dto;
 
+import java.util.Set;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -10,4 +11,13 @@ public class SearchDto {
     private int page;
     private int size;
     private Long docId;
+    private SearchMode mode;
+    /** Returns a snippet of about this many characters instead of the whole chunk. */
+    private Integer snippetLength;
+    /** Fields to return; docId, title, author and fragment when empty. */
+    private Set<ResultField> fields;
+    /** Top vector candidates reranked by the cross-encoder; 0 skips reranking. */
+    private Integer rerankCandidates;
+    /** Time the rerank may take; candidates not scored by then keep their vector order. */
+    private Long rerankBudgetMs;
 }
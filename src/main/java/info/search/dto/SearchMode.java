@@ -0,0 +1,8 @@
+package info.search.dto;
+
+public enum SearchMode {
+    /** Cosine similarity over chunk embeddings only. */
+    VECTOR,
+    /** Full-text and vector retrieval merged with reciprocal-rank fusion. */
+    HYBRID
+}
@@ -1,15 +1,27 @@
 package info.search.dto;
 
+import java.util.List;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Getter
 @Setter
+@NoArgsConstructor
 @AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class SearchResultDto {
     private Long docId;
     private String title;
     private String author;
     private String fragment;
+    private String vectorId;
+    private Double score;
+    private Integer chunkIndex;
+    /** [start, end) offsets of query terms in a snippet {@code fragment}. */
+    private List<int[]> highlights;
+    /** Cross-encoder relevance of the chunk to the query, set on reranked hits. */
+    private Double rerankScore;
 }
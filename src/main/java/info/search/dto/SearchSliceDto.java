@@ -0,0 +1,15 @@
+package info.search.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class SearchSliceDto {
+    private List<SearchResultDto> content;
+    private String nextCursor;
+    private boolean hasMore;
+}
@@ -0,0 +1,7 @@
+package info.search.exception;
+
+public class DocumentBusyException extends RuntimeException {
+    public DocumentBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package info.search.exception;
+
+public class IngestionRejectedException extends RuntimeException {
+    public IngestionRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,7 @@
+package info.search.exception;
+
+public class InvalidImportSourceException extends RuntimeException {
+    public InvalidImportSourceException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package info.search.exception;
+
+public class ServerBusyException extends RuntimeException {
+    public ServerBusyException(String message) {
+        super(message);
+    }
+}
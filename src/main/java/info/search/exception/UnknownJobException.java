@@ -0,0 +1,7 @@
+package info.search.exception;
+
+public class UnknownJobException extends RuntimeException {
+    public UnknownJobException(String message) {
+        super(message);
+    }
+}
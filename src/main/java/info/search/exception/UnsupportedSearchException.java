@@ -0,0 +1,7 @@
+package info.search.exception;
+
+public class UnsupportedSearchException extends RuntimeException {
+    public UnsupportedSearchException(String message) {
+        super(message);
+    }
+}
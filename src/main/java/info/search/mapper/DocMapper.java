@@ -4,7 +4,9 @@ import info.search.config.MapperConfig;
 import info.search.dto.DocDto;
 import info.search.dto.DocShortDto;
 import info.search.model.Doc;
+import info.search.model.DocSummary;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 @Mapper(config = MapperConfig.class)
 public interface DocMapper {
@@ -12,5 +14,10 @@ public interface DocMapper {
 
     DocShortDto toShortDto(Doc doc);
 
+    DocShortDto toShortDto(DocSummary summary);
+
+    @Mapping(target = "content", ignore = true)
+    DocDto toDto(DocSummary summary);
+
     Doc toEntity(DocDto dto);
 }
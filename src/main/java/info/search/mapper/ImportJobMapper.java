@@ -0,0 +1,14 @@
+package info.search.mapper;
+
+import info.search.config.MapperConfig;
+import info.search.dto.ImportFileDto;
+import info.search.dto.ImportJobDto;
+import info.search.model.ImportJob;
+import org.mapstruct.Mapper;
+
+@Mapper(config = MapperConfig.class)
+public interface ImportJobMapper {
+    ImportJobDto toDto(ImportJob job);
+
+    ImportFileDto toDto(ImportJob.FileOutcome outcome);
+}
@@ -0,0 +1,11 @@
+package info.search.mapper;
+
+import info.search.config.MapperConfig;
+import info.search.dto.IngestionJobDto;
+import info.search.model.IngestionJob;
+import org.mapstruct.Mapper;
+
+@Mapper(config = MapperConfig.class)
+public interface IngestionJobMapper {
+    IngestionJobDto toDto(IngestionJob job);
+}
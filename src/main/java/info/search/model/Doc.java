@@ -1,6 +1,7 @@
 package info.search.model;
 
 import jakarta.persistence.*;
+import java.util.List;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
@@ -17,6 +18,13 @@ public class Doc {
     private String fileName;
     private String title;
     private String author;
-    @Column(columnDefinition = "TEXT")
+    /** Parsed body, stored in {@code doc_content} and never loaded with the entity. */
+    @Transient
     private String content;
+    /** Parsed body split along its sections and paragraphs, only set right after parsing. */
+    @Transient
+    private List<Paragraph> paragraphs = List.of();
+    /** SHA-256 of the parsed content with whitespace collapsed, used to skip duplicates on bulk import. */
+    @Column(length = 64)
+    private String contentHash;
 }
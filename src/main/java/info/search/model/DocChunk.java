@@ -1,5 +1,6 @@
 package info.search.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
@@ -19,4 +20,20 @@ public class DocChunk {
     @ManyToOne
     private Doc doc;
 
+    /** SHA-256 of the chunk text, null on chunks stored before it was recorded. */
+    @Column(length = 64)
+    private String contentHash;
+
+    private Integer chunkIndex;
+
+    private Integer sectionOrdinal;
+
+    @Column(columnDefinition = "text")
+    private String sectionTitle;
+
+    /** Start of the chunk text in the stored body, null when the vector row holds the text itself. */
+    private Integer charOffset;
+
+    private Integer charLength;
+
 }
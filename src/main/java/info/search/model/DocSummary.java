@@ -0,0 +1,12 @@
+package info.search.model;
+
+/** Listing projection of {@link Doc}, selects the metadata columns only. */
+public interface DocSummary {
+    Long getId();
+
+    String getFileName();
+
+    String getTitle();
+
+    String getAuthor();
+}
@@ -0,0 +1,96 @@
+package info.search.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * In-memory state of one bulk import, with an outcome per file.
+ * Updated by the import coordinator and read by the import status endpoint.
+ */
+@Getter
+@Setter
+public class ImportJob {
+    private final UUID id = UUID.randomUUID();
+    private final String source;
+    private final Instant createdAt = Instant.now();
+    private volatile Status status = Status.RUNNING;
+    private volatile String error;
+    private volatile Instant finishedAt;
+    private final AtomicInteger found = new AtomicInteger();
+    private final AtomicInteger imported = new AtomicInteger();
+    private final AtomicInteger duplicates = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final List<FileOutcome> outcomes = new ArrayList<>();
+
+    public ImportJob(String source) {
+        this.source = source;
+    }
+
+    public int getFilesFound() {
+        return found.get();
+    }
+
+    public int getFilesImported() {
+        return imported.get();
+    }
+
+    public int getFilesDuplicate() {
+        return duplicates.get();
+    }
+
+    public int getFilesFailed() {
+        return failed.get();
+    }
+
+    public List<FileOutcome> getFiles() {
+        synchronized (outcomes) {
+            return List.copyOf(outcomes);
+        }
+    }
+
+    public void record(FileOutcome outcome) {
+        switch (outcome.result()) {
+            case IMPORTED -> imported.incrementAndGet();
+            case DUPLICATE -> duplicates.incrementAndGet();
+            case FAILED -> failed.incrementAndGet();
+        }
+        synchronized (outcomes) {
+            outcomes.add(outcome);
+        }
+    }
+
+    public boolean isFinished() {
+        return status != Status.RUNNING;
+    }
+
+    public void complete() {
+        status = Status.COMPLETED;
+        finishedAt = Instant.now();
+    }
+
+    public void fail(String message) {
+        error = message;
+        status = Status.FAILED;
+        finishedAt = Instant.now();
+    }
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+
+    public record FileOutcome(String fileName, Result result, Long docId, String error) {
+    }
+
+    public enum Result {
+        IMPORTED,
+        DUPLICATE,
+        FAILED
+    }
+}
@@ -0,0 +1,58 @@
+package info.search.model;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * In-memory state of one asynchronous document upload.
+ * Updated by the ingestion workers and read by the job status endpoint.
+ */
+@Getter
+@Setter
+public class IngestionJob {
+    private final UUID id = UUID.randomUUID();
+    private final String fileName;
+    private final Instant createdAt = Instant.now();
+    private volatile Status status = Status.QUEUED;
+    private volatile Long docId;
+    private volatile int chunksTotal;
+    /** Chunks of a re-uploaded document whose stored embedding was kept. */
+    private volatile int chunksReused;
+    private volatile String error;
+    private volatile Instant finishedAt;
+    private final AtomicInteger embedded = new AtomicInteger();
+
+    public IngestionJob(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public int getChunksEmbedded() {
+        return embedded.get();
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    public void complete() {
+        status = Status.COMPLETED;
+        finishedAt = Instant.now();
+    }
+
+    public void fail(String message) {
+        error = message;
+        status = Status.FAILED;
+        finishedAt = Instant.now();
+    }
+
+    public enum Status {
+        QUEUED,
+        PARSING,
+        EMBEDDING,
+        COMPLETED,
+        FAILED
+    }
+}
@@ -0,0 +1,9 @@
+package info.search.model;
+
+/**
+ * One block of FB2 body text, such as a paragraph, verse line or subtitle,
+ * with the titles of its enclosing sections. {@code sectionOrdinal} counts
+ * sections in document order from 1; text outside any section has 0.
+ */
+public record Paragraph(String text, String path, String sectionTitle, int sectionOrdinal) {
+}
@@ -0,0 +1,16 @@
+package info.search.model;
+
+/**
+ * One row of the pgvector table as returned by a nearest-neighbour query,
+ * with its distance and the similarity it stands for under the configured
+ * distance type.
+ */
+public record VectorHit(String vectorId,
+                        Long docId,
+                        String title,
+                        String author,
+                        String content,
+                        Integer chunkIndex,
+                        double distance,
+                        double score) {
+}
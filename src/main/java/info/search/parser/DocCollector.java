@@ -0,0 +1,43 @@
+package info.search.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import info.search.model.Doc;
+import info.search.model.Paragraph;
+import info.search.service.SectionChunker;
+
+/**
+ * Collects a parsed document into a {@link Doc} whose content is the
+ * paragraphs joined by {@link SectionChunker#PARAGRAPH_SEPARATOR}, for
+ * callers that need it whole.
+ */
+public class DocCollector implements DocumentHandler {
+    private final List<Paragraph> paragraphs = new ArrayList<>();
+    private final StringBuilder content = new StringBuilder();
+    private String title;
+    private String author;
+
+    @Override
+    public void metadata(String title, String author) {
+        this.title = title;
+        this.author = author;
+    }
+
+    @Override
+    public void paragraph(Paragraph paragraph) {
+        if (!content.isEmpty()) {
+            content.append(SectionChunker.PARAGRAPH_SEPARATOR);
+        }
+        content.append(paragraph.text());
+        paragraphs.add(paragraph);
+    }
+
+    public Doc toDoc() {
+        Doc doc = new Doc();
+        doc.setTitle(title == null ? "" : title);
+        doc.setAuthor(author == null ? "" : author);
+        doc.setContent(content.toString());
+        doc.setParagraphs(paragraphs);
+        return doc;
+    }
+}
@@ -0,0 +1,16 @@
+package info.search.parser;
+
+import info.search.model.Paragraph;
+
+/**
+ * Receives a document from a {@link DocumentParser} while it is read:
+ * {@link #metadata} once, before the first paragraph, then the body text
+ * paragraph by paragraph in reading order.
+ */
+public interface DocumentHandler {
+
+    /** Title and author as found in the file, null when it has none. */
+    void metadata(String title, String author);
+
+    void paragraph(Paragraph paragraph);
+}
@@ -0,0 +1,31 @@
+package info.search.parser;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One supported upload format. Implementations stream the body to a
+ * {@link DocumentHandler} instead of returning it, so the caller decides
+ * what stays in memory.
+ */
+public interface DocumentParser {
+
+    /** Short lower-case name, also the file extension it claims. */
+    String format();
+
+    /**
+     * Whether the file looks like this format, from the declared content
+     * type (may be null), the file name (may be null) and its first bytes.
+     */
+    boolean matches(String contentType, String fileName, byte[] head);
+
+    void parse(InputStream in, DocumentHandler handler) throws Exception;
+
+    /** Parses a file on disk; formats that need random access read it in place. */
+    default void parse(Path file, DocumentHandler handler) throws Exception {
+        try (InputStream in = Files.newInputStream(file)) {
+            parse(in, handler);
+        }
+    }
+}
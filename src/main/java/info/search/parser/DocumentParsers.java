@@ -0,0 +1,114 @@
+package info.search.parser;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import info.search.exception.UnsupportedFormatException;
+import info.search.model.Doc;
+import org.springframework.stereotype.Component;
+
+/**
+ * The registered {@link DocumentParser}s in order: the first one matching
+ * the content type, file name or leading bytes of an upload reads it.
+ * Formats with magic bytes are ordered before those recognized by name only.
+ */
+@Component
+public class DocumentParsers {
+    /** Leading bytes read to detect a format, enough for the EPUB mimetype entry. */
+    public static final int HEAD_SIZE = 1024;
+
+    private final List<DocumentParser> parsers;
+
+    public DocumentParsers(List<DocumentParser> parsers) {
+        this.parsers = parsers;
+    }
+
+    /**
+     * Picks the parser for a file.
+     *
+     * @throws UnsupportedFormatException when no parser claims it
+     */
+    public DocumentParser detect(String contentType, String fileName, byte[] head) {
+        String type = contentType == null ? null : contentType.toLowerCase(Locale.ROOT);
+        return parsers.stream()
+                .filter(p -> p.matches(type, fileName, head))
+                .findFirst()
+                .orElseThrow(() -> new UnsupportedFormatException("Unsupported document format: " + fileName
+                        + ", expected one of " + formats()));
+    }
+
+    /** Picks the parser from the start of {@code in}, which must support mark and reset. */
+    public DocumentParser detect(String contentType, String fileName, BufferedInputStream in) throws IOException {
+        in.mark(HEAD_SIZE);
+        byte[] head = in.readNBytes(HEAD_SIZE);
+        in.reset();
+        return detect(contentType, fileName, head);
+    }
+
+    /** Whether a file of this name would be picked up by a bulk import. */
+    public boolean isSupportedName(String fileName) {
+        return parsers.stream().anyMatch(p -> hasExtension(fileName, p.format()));
+    }
+
+    /** Parses {@code in} whole, for callers that keep the body in memory. */
+    public static Doc collect(DocumentParser parser, InputStream in) throws Exception {
+        DocCollector collector = new DocCollector();
+        parser.parse(in, collector);
+        return collector.toDoc();
+    }
+
+    /** Parses {@code file} whole, for callers that keep the body in memory. */
+    public static Doc collect(DocumentParser parser, Path file) throws Exception {
+        DocCollector collector = new DocCollector();
+        parser.parse(file, collector);
+        return collector.toDoc();
+    }
+
+    /** The document title, or the file name without its extension when there is none. */
+    public static String titleOf(String title, String fileName) {
+        if (title != null && !title.isBlank()) {
+            return title;
+        }
+        if (fileName == null) {
+            return "";
+        }
+        String name = fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    public List<String> formats() {
+        return parsers.stream().map(DocumentParser::format).toList();
+    }
+
+    static boolean hasExtension(String fileName, String extension) {
+        return fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith("." + extension);
+    }
+
+    static boolean startsWith(byte[] head, byte[] magic) {
+        return head.length >= magic.length && Arrays.equals(head, 0, magic.length, magic, 0, magic.length);
+    }
+
+    /** Trims the text and collapses every whitespace run to one space. */
+    static String collapse(CharSequence text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                space = true;
+            } else {
+                if (space && !sb.isEmpty()) {
+                    sb.append(' ');
+                }
+                space = false;
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
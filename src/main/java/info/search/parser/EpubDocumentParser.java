@@ -0,0 +1,289 @@
+package info.search.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import info.search.model.Paragraph;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * EPUB 2 and 3: the package document gives the title, the creators and the
+ * spine, and the spine's XHTML files are read in order with StAX, one at a
+ * time. Every spine file starts a section, and so does every
+ * {@code h1}-{@code h3} heading inside it, titled with the heading text.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class EpubDocumentParser implements DocumentParser {
+    private static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+    private static final String MIMETYPE = "mimetypeapplication/epub+zip";
+    private static final Set<String> BLOCK = Set.of(
+            "p", "div", "li", "blockquote", "pre", "td", "th", "dt", "dd", "tr", "figcaption",
+            "section", "article", "aside", "header", "footer", "h4", "h5", "h6", "hr", "br");
+    private static final Set<String> HEADING = Set.of("h1", "h2", "h3");
+    private static final Set<String> SKIPPED = Set.of("head", "script", "style");
+
+    @Override
+    public String format() {
+        return "epub";
+    }
+
+    @Override
+    public boolean matches(String contentType, String fileName, byte[] head) {
+        // the first entry of an EPUB is the stored mimetype file, its name at offset 30
+        return DocumentParsers.startsWith(head, ZIP_MAGIC)
+                && head.length >= 30 + MIMETYPE.length()
+                && new String(head, 30, MIMETYPE.length(), StandardCharsets.ISO_8859_1).equals(MIMETYPE)
+                || DocumentParsers.hasExtension(fileName, "epub")
+                || "application/epub+zip".equals(contentType);
+    }
+
+    // a zip needs random access, a stream is copied to a temp file first
+    @Override
+    public void parse(InputStream in, DocumentHandler handler) throws Exception {
+        Path copy = Files.createTempFile("parse-", ".epub");
+        try {
+            Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+            parse(copy, handler);
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Override
+    public void parse(Path file, DocumentHandler handler) throws Exception {
+        try (ZipFile zip = new ZipFile(file.toFile())) {
+            String opfPath = rootFile(zip);
+            Package opf = readPackage(zip, opfPath);
+            handler.metadata(opf.title(), opf.creators().isEmpty() ? null : String.join(", ", opf.creators()));
+            String base = opfPath.contains("/") ? opfPath.substring(0, opfPath.lastIndexOf('/') + 1) : "";
+            Body body = new Body(handler);
+            for (String href : opf.spine()) {
+                ZipEntry entry = zip.getEntry(resolve(base, href));
+                if (entry != null) {
+                    try (InputStream xhtml = zip.getInputStream(entry)) {
+                        body.read(xhtml);
+                    }
+                }
+            }
+        }
+    }
+
+    private static String rootFile(ZipFile zip) throws IOException, XMLStreamException {
+        ZipEntry container = zip.getEntry("META-INF/container.xml");
+        if (container == null) {
+            throw new IOException("Not an EPUB: META-INF/container.xml is missing");
+        }
+        try (InputStream in = zip.getInputStream(container)) {
+            XMLStreamReader reader = factory().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "rootfile".equals(reader.getLocalName())) {
+                        return reader.getAttributeValue(null, "full-path");
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        throw new IOException("Not an EPUB: no rootfile in META-INF/container.xml");
+    }
+
+    private static Package readPackage(ZipFile zip, String path) throws IOException, XMLStreamException {
+        ZipEntry entry = zip.getEntry(path);
+        if (entry == null) {
+            throw new IOException("EPUB package document " + path + " is missing");
+        }
+        String title = null;
+        List<String> creators = new ArrayList<>();
+        Map<String, String> manifest = new HashMap<>();
+        List<String> spine = new ArrayList<>();
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLStreamReader reader = factory().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    switch (reader.getLocalName()) {
+                        case "title" -> {
+                            String text = reader.getElementText().strip();
+                            if (title == null && !text.isEmpty()) {
+                                title = text;
+                            }
+                        }
+                        case "creator" -> {
+                            String text = reader.getElementText().strip();
+                            if (!text.isEmpty()) {
+                                creators.add(text);
+                            }
+                        }
+                        case "item" -> manifest.put(reader.getAttributeValue(null, "id"),
+                                reader.getAttributeValue(null, "href"));
+                        case "itemref" -> spine.add(reader.getAttributeValue(null, "idref"));
+                        default -> {
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return new Package(title, creators, spine.stream()
+                .map(manifest::get)
+                .filter(href -> href != null)
+                .toList());
+    }
+
+    private static String resolve(String base, String href) {
+        String decoded = URLDecoder.decode(href.replace("+", "%2B"), StandardCharsets.UTF_8);
+        int fragment = decoded.indexOf('#');
+        if (fragment >= 0) {
+            decoded = decoded.substring(0, fragment);
+        }
+        List<String> parts = new ArrayList<>();
+        for (String part : (base + decoded).split("/")) {
+            if ("..".equals(part)) {
+                if (!parts.isEmpty()) {
+                    parts.removeLast();
+                }
+            } else if (!part.isEmpty() && !".".equals(part)) {
+                parts.add(part);
+            }
+        }
+        return String.join("/", parts);
+    }
+
+    private static XMLInputFactory factory() {
+        XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+        // XHTML files declare a DTD, it is neither fetched nor expanded
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+
+    private record Package(String title, List<String> creators, List<String> spine) {
+    }
+
+    /** Paragraph and section state carried across the spine files. */
+    private static final class Body {
+        private final DocumentHandler handler;
+        private final StringBuilder text = new StringBuilder();
+        private int sectionOrdinal;
+        private String sectionTitle;
+        // set at the start of a spine file, taken by its first heading or paragraph
+        private boolean newFile;
+        private int headingDepth;
+        private int skippedDepth;
+        private int depth;
+
+        Body(DocumentHandler handler) {
+            this.handler = handler;
+        }
+
+        void read(InputStream in) throws XMLStreamException {
+            newFile = true;
+            depth = 0;
+            headingDepth = 0;
+            skippedDepth = 0;
+            XMLStreamReader reader = factory().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT -> start(reader.getLocalName());
+                        case XMLStreamConstants.END_ELEMENT -> end(reader.getLocalName());
+                        case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                            if (skippedDepth == 0) {
+                                text.append(reader.getTextCharacters(), reader.getTextStart(),
+                                        reader.getTextLength());
+                            }
+                        }
+                        // undeclared without the DTD, &nbsp; and the like read as a space
+                        case XMLStreamConstants.ENTITY_REFERENCE -> text.append(' ');
+                        default -> {
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            flush();
+        }
+
+        private void start(String name) {
+            depth++;
+            if (skippedDepth > 0) {
+                return;
+            }
+            if (SKIPPED.contains(name)) {
+                skippedDepth = depth;
+            } else if (HEADING.contains(name) && headingDepth == 0) {
+                flush();
+                headingDepth = depth;
+            } else if (BLOCK.contains(name)) {
+                flush();
+            }
+        }
+
+        private void end(String name) {
+            if (skippedDepth == depth) {
+                skippedDepth = 0;
+            } else if (skippedDepth == 0) {
+                if (headingDepth == depth) {
+                    String heading = DocumentParsers.collapse(text);
+                    text.setLength(0);
+                    headingDepth = 0;
+                    if (!heading.isEmpty()) {
+                        sectionOrdinal++;
+                        sectionTitle = heading;
+                        newFile = false;
+                        emit(heading);
+                    }
+                } else if (BLOCK.contains(name) && headingDepth == 0) {
+                    flush();
+                }
+            }
+            depth--;
+        }
+
+        private void flush() {
+            if (headingDepth > 0) {
+                return;
+            }
+            String paragraph = DocumentParsers.collapse(text);
+            text.setLength(0);
+            if (!paragraph.isEmpty()) {
+                if (newFile) {
+                    sectionOrdinal++;
+                    sectionTitle = null;
+                    newFile = false;
+                }
+                emit(paragraph);
+            }
+        }
+
+        private void emit(String paragraph) {
+            handler.paragraph(new Paragraph(paragraph, sectionTitle == null ? "" : sectionTitle,
+                    sectionTitle, sectionOrdinal));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package info.search.parser;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import info.search.Fb2Parser;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/** FictionBook 2 through the streaming {@link Fb2Parser}, one paragraph per body block. */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 20)
+public class Fb2DocumentParser implements DocumentParser {
+
+    @Override
+    public String format() {
+        return "fb2";
+    }
+
+    @Override
+    public boolean matches(String contentType, String fileName, byte[] head) {
+        return DocumentParsers.hasExtension(fileName, "fb2")
+                || "application/x-fictionbook+xml".equals(contentType)
+                || new String(head, StandardCharsets.ISO_8859_1).contains("<FictionBook");
+    }
+
+    @Override
+    public void parse(InputStream in, DocumentHandler handler) throws Exception {
+        Fb2Parser.parse(in, handler);
+    }
+}
@@ -0,0 +1,70 @@
+package info.search.parser;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import info.search.model.Paragraph;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * PDF through PDFBox, the library behind Spring AI's PDF reader. The file
+ * is read in place through a buffered random-access view rather than
+ * loaded into memory, and text is extracted one page at a time; blank
+ * lines split a page into paragraphs.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class PdfDocumentParser implements DocumentParser {
+    private static final byte[] MAGIC = {'%', 'P', 'D', 'F', '-'};
+
+    @Override
+    public String format() {
+        return "pdf";
+    }
+
+    @Override
+    public boolean matches(String contentType, String fileName, byte[] head) {
+        return DocumentParsers.startsWith(head, MAGIC)
+                || DocumentParsers.hasExtension(fileName, "pdf")
+                || "application/pdf".equals(contentType);
+    }
+
+    // PDFBox needs random access, a stream is copied to a temp file first
+    @Override
+    public void parse(InputStream in, DocumentHandler handler) throws Exception {
+        Path copy = Files.createTempFile("parse-", ".pdf");
+        try {
+            Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+            parse(copy, handler);
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+    }
+
+    @Override
+    public void parse(Path file, DocumentHandler handler) throws Exception {
+        try (PDDocument pdf = Loader.loadPDF(new RandomAccessReadBufferedFile(file.toFile()))) {
+            PDDocumentInformation info = pdf.getDocumentInformation();
+            handler.metadata(info.getTitle(), info.getAuthor());
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (int page = 1; page <= pdf.getNumberOfPages(); page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                for (String block : stripper.getText(pdf).split("\\R\\s*\\R")) {
+                    String text = DocumentParsers.collapse(block);
+                    if (!text.isEmpty()) {
+                        handler.paragraph(new Paragraph(text, "", null, 0));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package info.search.parser;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import info.search.model.Paragraph;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * UTF-8 plain text, read line by line. Blank lines end a paragraph; a
+ * paragraph running past {@link #MAX_PARAGRAPH} characters is cut at the
+ * next line end, so a file without blank lines is still read in pieces.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class TextDocumentParser implements DocumentParser {
+    static final int MAX_PARAGRAPH = 16 * 1024;
+
+    @Override
+    public String format() {
+        return "txt";
+    }
+
+    @Override
+    public boolean matches(String contentType, String fileName, byte[] head) {
+        return DocumentParsers.hasExtension(fileName, "txt")
+                || contentType != null && contentType.startsWith("text/plain");
+    }
+
+    @Override
+    public void parse(InputStream in, DocumentHandler handler) throws Exception {
+        handler.metadata(null, null);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        StringBuilder paragraph = new StringBuilder();
+        String line;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            if (first && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            first = false;
+            if (line.isBlank()) {
+                flush(paragraph, handler);
+            } else {
+                paragraph.append(line).append(' ');
+                if (paragraph.length() > MAX_PARAGRAPH) {
+                    flush(paragraph, handler);
+                }
+            }
+        }
+        flush(paragraph, handler);
+    }
+
+    private static void flush(StringBuilder paragraph, DocumentHandler handler) {
+        String text = DocumentParsers.collapse(paragraph);
+        paragraph.setLength(0);
+        if (!text.isEmpty()) {
+            handler.paragraph(new Paragraph(text, "", null, 0));
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package info.search.repository;
 
-import info.search.model.Doc;
 import info.search.model.DocChunk;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface ChunkRepository extends JpaRepository<DocChunk, Long> {
-    List<DocChunk> findByDoc(Doc doc);
+public interface ChunkRepository extends JpaRepository<DocChunk, String> {
+    List<DocChunk> findByDocId(Long docId);
+
+    @Query("SELECT c.vectorId FROM DocChunk c WHERE c.doc.id = :docId")
+    List<String> findVectorIdsByDocId(@Param("docId") Long docId);
+
+    @Modifying
+    @Query("DELETE FROM DocChunk c WHERE c.doc.id = :docId")
+    int deleteByDocId(@Param("docId") Long docId);
 }
@@ -0,0 +1,191 @@
+package info.search.repository;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import info.search.config.SearchProperties;
+import info.search.model.Doc;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.document.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Batched JDBC writes for bulk imports and chunk rows, one statement batch
+ * per table instead of a JPA select and insert per row. With
+ * {@code reWriteBatchedInserts} the driver sends each batch as multi-row
+ * inserts.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DocBatchRepository {
+    private final JdbcTemplate jdbc;
+    private final DocContentRepository docContentRepo;
+    private final SearchProperties searchProps;
+
+    public Set<String> findExistingHashes(Collection<String> hashes) {
+        Set<String> found = new HashSet<>();
+        if (hashes.isEmpty()) {
+            return found;
+        }
+        jdbc.query("SELECT content_hash FROM doc WHERE content_hash = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", hashes.toArray())),
+                rs -> {
+                    found.add(rs.getString(1));
+                });
+        return found;
+    }
+
+    /**
+     * Inserts the documents and sets their ids, drawn from the identity
+     * sequence up front. A document whose content hash another one already
+     * has, stored by a concurrent import since it was checked, is left out.
+     *
+     * @return the documents inserted
+     */
+    @Transactional
+    public List<Doc> insertAll(List<Doc> docs) {
+        if (docs.isEmpty()) {
+            return docs;
+        }
+        List<Long> ids = jdbc.queryForList(
+                "SELECT nextval(pg_get_serial_sequence('doc', 'id')) FROM generate_series(1, ?)",
+                Long.class, docs.size());
+        List<Object[]> rows = new ArrayList<>(docs.size());
+        for (int i = 0; i < docs.size(); i++) {
+            Doc doc = docs.get(i);
+            doc.setId(ids.get(i));
+            rows.add(new Object[]{doc.getId(), doc.getFileName(), doc.getTitle(), doc.getAuthor(),
+                    doc.getContentHash()});
+        }
+        jdbc.batchUpdate("INSERT INTO doc (id, file_name, title, author, content_hash) VALUES (?, ?, ?, ?, ?) "
+                + "ON CONFLICT (content_hash) WHERE content_hash IS NOT NULL DO NOTHING", rows);
+        // rewritten batches report no row counts, the ids tell which rows went in
+        Set<Long> inserted = new HashSet<>(jdbc.query("SELECT id FROM doc WHERE id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())),
+                (rs, rowNum) -> rs.getLong(1)));
+        List<Doc> stored = docs.stream()
+                .filter(doc -> inserted.contains(doc.getId()))
+                .toList();
+        docContentRepo.saveAll(stored);
+        return stored;
+    }
+
+    /**
+     * Records the content hash of a document unless another document has
+     * it already, in which case the hash is cleared.
+     *
+     * @return whether the hash was recorded
+     */
+    public boolean claimContentHash(Long docId, String hash) {
+        try {
+            jdbc.update("UPDATE doc SET content_hash = ?, content_hash_current = true WHERE id = ?", hash, docId);
+            return true;
+        } catch (DuplicateKeyException e) {
+            jdbc.update("UPDATE doc SET content_hash = NULL, content_hash_current = true WHERE id = ?", docId);
+            return false;
+        }
+    }
+
+    /** Documents whose content hash has to be computed again, see schema.sql. */
+    public List<Long> findStaleHashIds(int limit) {
+        return jdbc.queryForList("SELECT id FROM doc WHERE NOT content_hash_current ORDER BY id LIMIT ?",
+                Long.class, limit);
+    }
+
+    /**
+     * Links stored chunks to their document through the {@code docId}
+     * metadata, with their body offsets and the tsvector of their text for
+     * the lexical search.
+     */
+    public void insertChunks(List<Document> chunks) {
+        String config = searchProps.getHybrid().getTextSearchConfig();
+        List<Object[]> rows = chunks.stream()
+                .map(c -> {
+                    Map<String, Object> metadata = c.getMetadata();
+                    return new Object[]{c.getId(), ((Number) metadata.get("docId")).longValue(),
+                            metadata.get("contentHash"), metadata.get("chunkIndex"),
+                            metadata.get("sectionOrdinal"), metadata.get("sectionTitle"),
+                            metadata.get("charOffset"), metadata.get("charLength"), config, c.getText()};
+                })
+                .toList();
+        jdbc.batchUpdate("INSERT INTO doc_chunk (vector_id, doc_id, content_hash, chunk_index, "
+                        + "section_ordinal, section_title, char_offset, char_length, tsv) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, to_tsvector(?::regconfig, ?))", rows,
+                new int[]{Types.VARCHAR, Types.BIGINT, Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.VARCHAR,
+                        Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.VARCHAR});
+    }
+
+    /** Rewrites the position of chunk rows kept across a document update. */
+    public void updateChunks(List<Document> chunks) {
+        List<Object[]> rows = chunks.stream()
+                .map(c -> {
+                    Map<String, Object> metadata = c.getMetadata();
+                    return new Object[]{metadata.get("chunkIndex"), metadata.get("sectionOrdinal"),
+                            metadata.get("sectionTitle"), metadata.get("charOffset"), metadata.get("charLength"),
+                            c.getId()};
+                })
+                .toList();
+        jdbc.batchUpdate("UPDATE doc_chunk SET chunk_index = ?, section_ordinal = ?, section_title = ?, "
+                        + "char_offset = ?, char_length = ? WHERE vector_id = ?", rows,
+                new int[]{Types.INTEGER, Types.INTEGER, Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.VARCHAR});
+    }
+
+    /**
+     * The vector store metadata of every stored chunk by vector id, as
+     * ingestion builds it, read back from {@code doc_chunk} and {@code doc}.
+     */
+    public Map<String, Map<String, Object>> findChunkMetadata() {
+        Map<String, Map<String, Object>> chunks = new HashMap<>();
+        jdbc.query("SELECT c.vector_id, c.doc_id, d.title, d.author, c.chunk_index, c.section_ordinal, "
+                + "c.section_title, c.content_hash, c.char_offset, c.char_length "
+                + "FROM doc_chunk c JOIN doc d ON d.id = c.doc_id", rs -> {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("docId", rs.getLong("doc_id"));
+            metadata.put("title", rs.getString("title"));
+            metadata.put("author", rs.getString("author"));
+            metadata.put("chunkIndex", rs.getObject("chunk_index", Integer.class));
+            metadata.put("sectionOrdinal", rs.getObject("section_ordinal", Integer.class));
+            metadata.put("contentHash", rs.getString("content_hash"));
+            if (rs.getString("section_title") != null) {
+                metadata.put("sectionTitle", rs.getString("section_title"));
+            }
+            if (rs.getObject("char_offset") != null) {
+                metadata.put("charOffset", rs.getInt("char_offset"));
+                metadata.put("charLength", rs.getInt("char_length"));
+            }
+            // rows written before chunk positions were recorded lack some of the values
+            metadata.values().removeIf(Objects::isNull);
+            chunks.put(rs.getString("vector_id"), metadata);
+        });
+        return chunks;
+    }
+
+    public void deleteChunks(Collection<String> vectorIds) {
+        if (vectorIds.isEmpty()) {
+            return;
+        }
+        String[] ids = vectorIds.toArray(String[]::new);
+        jdbc.update("DELETE FROM doc_chunk WHERE vector_id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", ids)));
+    }
+
+    public void deleteAll(Collection<Long> docIds) {
+        if (docIds.isEmpty()) {
+            return;
+        }
+        Long[] ids = docIds.toArray(Long[]::new);
+        jdbc.update("DELETE FROM doc_chunk WHERE doc_id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+        jdbc.update("DELETE FROM doc WHERE id = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids)));
+    }
+}
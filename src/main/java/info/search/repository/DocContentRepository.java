@@ -0,0 +1,266 @@
+package info.search.repository;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import info.search.config.IngestionProperties;
+import info.search.model.Doc;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Book bodies, kept out of the {@link Doc} entity. A body is stored once, as
+ * deflate-compressed blocks of {@code ingestion.body.block-chars} characters
+ * in {@code doc_block}; chunks reference it by offset, so the text of one
+ * search hit inflates the one or two blocks it spans, never the whole book.
+ * Bodies written before blocks existed are read from {@code doc_content}
+ * until {@link #migrate} has moved them.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DocContentRepository {
+    private static final String INSERT_BLOCK =
+            "INSERT INTO doc_block (doc_id, block_no, char_offset, char_length, data) VALUES (?, ?, ?, ?, ?)";
+    // blocks sent per JDBC batch, bounds what a streamed body holds at once
+    private static final int BLOCKS_PER_BATCH = 64;
+
+    private final JdbcTemplate jdbc;
+    private final IngestionProperties props;
+
+    public void save(Long docId, String content) {
+        save(docId, new StringReader(content));
+    }
+
+    /** Streams the body in from {@code content}, which the caller closes. */
+    public void save(Long docId, Reader content) {
+        try (BodyWriter body = writer(docId)) {
+            content.transferTo(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Stores a body while it is produced. Blocks are inserted as they fill,
+     * and {@link BodyWriter#flush} also stores the block being filled, so
+     * everything written before it can be read back.
+     */
+    public BodyWriter writer(Long docId) {
+        return new BodyWriter(docId);
+    }
+
+    /** Replaces the body as a whole, a failed write keeps the previous one. */
+    @Transactional
+    public void update(Long docId, String content) {
+        delete(docId);
+        save(docId, content);
+    }
+
+    @Transactional
+    public void saveAll(List<Doc> docs) {
+        docs.forEach(doc -> save(doc.getId(), doc.getContent()));
+    }
+
+    /**
+     * Copies the body of a document to {@code out} a block at a time,
+     * without building a String of it.
+     *
+     * @return false when the document does not exist
+     */
+    public boolean writeTo(Long docId, Writer out) {
+        boolean[] found = {false};
+        jdbc.query("SELECT data FROM doc_block WHERE doc_id = ? ORDER BY block_no", rs -> {
+            found[0] = true;
+            try {
+                out.write(inflate(rs.getBytes(1)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, docId);
+        if (found[0] || writeLegacyTo(docId, out)) {
+            return true;
+        }
+        // an empty body has no blocks
+        return Boolean.TRUE.equals(jdbc.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM doc WHERE id = ?)", Boolean.class, docId));
+    }
+
+    /**
+     * Text of the given chunks cut out of their documents' blocks, each
+     * block inflated once. Chunks stored with their text in the vector row
+     * are left out.
+     */
+    public Map<String, String> readChunks(Collection<String> vectorIds) {
+        Map<String, String> texts = new HashMap<>();
+        if (vectorIds.isEmpty()) {
+            return texts;
+        }
+        String[] ids = vectorIds.toArray(String[]::new);
+        Map<String, String> blocks = new HashMap<>();
+        jdbc.query("SELECT c.vector_id, c.char_offset, c.char_length, b.doc_id, b.block_no, "
+                        + "b.char_offset AS block_offset, b.data "
+                        + "FROM doc_chunk c JOIN doc_block b ON b.doc_id = c.doc_id "
+                        + "AND b.char_offset < c.char_offset + c.char_length "
+                        + "AND b.char_offset + b.char_length > c.char_offset "
+                        + "WHERE c.vector_id = ANY (?) ORDER BY c.vector_id, b.block_no",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", ids)),
+                rs -> {
+                    String key = rs.getLong("doc_id") + ":" + rs.getInt("block_no");
+                    String block = blocks.get(key);
+                    if (block == null) {
+                        block = inflate(rs.getBytes("data"));
+                        blocks.put(key, block);
+                    }
+                    int from = rs.getInt("char_offset") - rs.getInt("block_offset");
+                    int to = from + rs.getInt("char_length");
+                    texts.merge(rs.getString("vector_id"),
+                            block.substring(Math.max(0, from), Math.min(block.length(), to)), String::concat);
+                });
+        return texts;
+    }
+
+    public List<Long> findLegacyIds(int limit) {
+        return jdbc.queryForList("SELECT doc_id FROM doc_content ORDER BY doc_id LIMIT ?", Long.class, limit);
+    }
+
+    /** Moves one body from {@code doc_content} into blocks. */
+    @Transactional
+    public void migrate(Long docId) {
+        jdbc.update("DELETE FROM doc_block WHERE doc_id = ?", docId);
+        jdbc.query("SELECT content FROM doc_content WHERE doc_id = ?", rs -> {
+            try (Reader reader = rs.getCharacterStream(1)) {
+                save(docId, reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, docId);
+        jdbc.update("DELETE FROM doc_content WHERE doc_id = ?", docId);
+    }
+
+    private void delete(Long docId) {
+        jdbc.update("DELETE FROM doc_block WHERE doc_id = ?", docId);
+        jdbc.update("DELETE FROM doc_content WHERE doc_id = ?", docId);
+    }
+
+    private boolean writeLegacyTo(Long docId, Writer out) {
+        return Boolean.TRUE.equals(jdbc.query("SELECT content FROM doc_content WHERE doc_id = ?", rs -> {
+            if (!rs.next()) {
+                return false;
+            }
+            try (Reader reader = rs.getCharacterStream(1)) {
+                reader.transferTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return true;
+        }, docId));
+    }
+
+    /** Writes the blocks of one body; not thread-safe. */
+    public final class BodyWriter extends Writer {
+        private final Long docId;
+        private final char[] buffer = new char[Math.max(1024, props.getBody().getBlockChars())];
+        private final List<Object[]> rows = new ArrayList<>();
+        private int filled;
+        private int blockNo;
+        private int offset;
+
+        private BodyWriter(Long docId) {
+            this.docId = docId;
+        }
+
+        @Override
+        public void write(char[] chars, int from, int length) {
+            while (length > 0) {
+                int copied = Math.min(length, buffer.length - filled);
+                System.arraycopy(chars, from, buffer, filled, copied);
+                filled += copied;
+                from += copied;
+                length -= copied;
+                if (filled == buffer.length) {
+                    block(false);
+                }
+            }
+        }
+
+        /** Stores every block written so far, the last one however short. */
+        @Override
+        public void flush() {
+            block(false);
+            insert();
+        }
+
+        @Override
+        public void close() {
+            block(true);
+            insert();
+        }
+
+        private void block(boolean last) {
+            int length = filled;
+            if (!last && length > 0 && Character.isHighSurrogate(buffer[length - 1])) {
+                // a surrogate pair is never split across blocks
+                length--;
+            }
+            if (length == 0) {
+                return;
+            }
+            rows.add(new Object[]{docId, blockNo++, offset, length, deflate(buffer, length)});
+            offset += length;
+            filled -= length;
+            if (filled > 0) {
+                buffer[0] = buffer[length];
+            }
+            if (rows.size() == BLOCKS_PER_BATCH) {
+                insert();
+            }
+        }
+
+        private void insert() {
+            if (!rows.isEmpty()) {
+                jdbc.batchUpdate(INSERT_BLOCK, rows);
+                rows.clear();
+            }
+        }
+    }
+
+    private static byte[] deflate(char[] chars, int length) {
+        ByteBuffer utf8 = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chars, 0, length));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.remaining() / 2);
+        Deflater deflater = new Deflater();
+        try (DeflaterOutputStream deflating = new DeflaterOutputStream(out, deflater)) {
+            deflating.write(utf8.array(), utf8.arrayOffset(), utf8.remaining());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static String inflate(byte[] data) {
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(data))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
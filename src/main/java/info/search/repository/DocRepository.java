@@ -1,9 +1,32 @@
 package info.search.repository;
 
+import java.util.Optional;
 import info.search.model.Doc;
+import info.search.model.DocSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface DocRepository extends JpaRepository<Doc, Long> {
+
+    Page<DocSummary> findAllProjectedBy(Pageable pageable);
+
+    Optional<DocSummary> findProjectedById(Long id);
+
+    /**
+     * Updates a re-uploaded document in place, returns 0 when it no longer
+     * exists. The content hash is unique and is set apart, see
+     * {@link DocBatchRepository#claimContentHash}.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Doc d SET d.fileName = :#{#doc.fileName}, d.title = :#{#doc.title}, "
+            + "d.author = :#{#doc.author} WHERE d.id = :#{#doc.id}")
+    int updateMetadata(@Param("doc") Doc doc);
 }
@@ -0,0 +1,58 @@
+package info.search.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Persistent tier of the embedding cache, vectors are stored as
+ * little-endian float32 bytes.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EmbeddingCacheRepository {
+    private final JdbcTemplate jdbc;
+
+    public Map<String, float[]> findByKeys(Collection<String> keys) {
+        Map<String, float[]> found = new HashMap<>();
+        if (keys.isEmpty()) {
+            return found;
+        }
+        jdbc.query("SELECT cache_key, embedding FROM embedding_cache WHERE cache_key = ANY (?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", keys.toArray())),
+                rs -> {
+                    found.put(rs.getString(1), decode(rs.getBytes(2)));
+                });
+        return found;
+    }
+
+    public void saveAll(String modelId, Map<String, float[]> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(entries.size());
+        entries.forEach((key, vector) -> rows.add(new Object[]{key, modelId, encode(vector)}));
+        jdbc.batchUpdate("INSERT INTO embedding_cache (cache_key, model_id, embedding) VALUES (?, ?, ?) "
+                + "ON CONFLICT (cache_key) DO NOTHING", rows);
+    }
+
+    private static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    private static float[] decode(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
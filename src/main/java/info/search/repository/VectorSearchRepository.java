@@ -0,0 +1,338 @@
+package info.search.repository;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import info.search.config.SearchProperties;
+import info.search.config.VectorStoreProperties;
+import info.search.model.VectorHit;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+/**
+ * Nearest-neighbour queries issued straight against the pgvector table,
+ * for the search modes {@code VectorStore.similaritySearch} cannot express.
+ * With a quantized index configured, neighbours are found through the
+ * halfvec or binary index expression and reranked by the full vectors.
+ * Rows of chunks that reference the stored body have an empty
+ * {@code content}; their text comes from {@link DocContentRepository}.
+ */
+@Repository
+public class VectorSearchRepository {
+    private final JdbcTemplate jdbc;
+    private final ObjectMapper objectMapper;
+    private final String table;
+    private final String operator;
+    private final String iterativeScan;
+    private final String regconfig;
+    private final VectorStoreProperties.Pgvector quantizedProps;
+    private volatile Optional<QuantizedIndex> quantizedIndex;
+    private final RowMapper<VectorHit> hitMapper = (rs, rowNum) -> {
+        double distance = rs.getDouble("distance");
+        return new VectorHit(rs.getString("vector_id"), rs.getLong("doc_id"), rs.getString("title"),
+                rs.getString("author"), rs.getString("content"), rs.getObject("chunk_index", Integer.class),
+                distance, similarity(distance));
+    };
+
+    public VectorSearchRepository(JdbcTemplate jdbc,
+                                  ObjectMapper objectMapper,
+                                  @Value("${spring.ai.vectorstore.pgvector.schema-name:public}") String schema,
+                                  @Value("${spring.ai.vectorstore.pgvector.table-name:vector_store}") String table,
+                                  @Value("${spring.ai.vectorstore.pgvector.distance-type:COSINE_DISTANCE}")
+                                  String distanceType,
+                                  @Value("${spring.ai.vectorstore.pgvector.index-type:HNSW}") String indexType,
+                                  SearchProperties searchProps,
+                                  VectorStoreProperties vectorStoreProps) {
+        this.jdbc = jdbc;
+        this.objectMapper = objectMapper;
+        this.table = schema + "." + table;
+        this.operator = switch (distanceType) {
+            case "EUCLIDEAN_DISTANCE" -> "<->";
+            case "NEGATIVE_INNER_PRODUCT" -> "<#>";
+            default -> "<=>";
+        };
+        this.iterativeScan = searchProps.getCursor().getIterativeScan();
+        String config = searchProps.getHybrid().getTextSearchConfig();
+        if (!config.matches("[A-Za-z_][A-Za-z0-9_.]*")) {
+            throw new IllegalArgumentException("Invalid text search configuration: " + config);
+        }
+        // must match the index expression literally for the planner to use it
+        this.regconfig = "'" + config + "'::regconfig";
+        this.quantizedProps = vectorStoreProps.getPgvector();
+        if (vectorStoreProps.getBackend() == VectorStoreProperties.Backend.PGVECTOR
+                && quantizedProps.getQuantization() != VectorStoreProperties.Quantization.NONE
+                && !"NONE".equalsIgnoreCase(indexType)) {
+            // the full-precision index would be built and kept next to the quantized one
+            throw new IllegalStateException("vectorstore.pgvector.quantization=" + quantizedProps.getQuantization()
+                    + " needs spring.ai.vectorstore.pgvector.index-type=NONE, not " + indexType);
+        }
+    }
+
+    /**
+     * Builds the HNSW index over the quantized embeddings, unless it exists.
+     * Indexes of other quantization settings are left for the operator to drop.
+     */
+    public void createQuantizedIndex() {
+        quantizedIndex().ifPresent(index -> jdbc.execute("CREATE INDEX IF NOT EXISTS " + index.name()
+                + " ON " + table + " USING hnsw ((" + index.column() + ") " + index.opclass() + ")"));
+    }
+
+    /**
+     * Fills {@code doc_chunk.tsv} of chunks stored before it existed from
+     * the text of their vector row, then drops the expression index over
+     * that text which the column replaces.
+     */
+    public void backfillLexicalIndex() {
+        jdbc.update("UPDATE doc_chunk c SET tsv = to_tsvector(" + regconfig + ", v.content) FROM " + table
+                + " v WHERE c.tsv IS NULL AND v.id = c.vector_id::uuid");
+        jdbc.execute("DROP INDEX IF EXISTS " + table + "_content_fts_idx");
+    }
+
+    /**
+     * Full-text leg of hybrid search: chunks matching the query in the
+     * GIN-indexed {@code doc_chunk.tsv}, best {@code ts_rank_cd} first.
+     * Lexical hits carry no vector distance.
+     */
+    public List<VectorHit> findLexical(String query, Long docId, int limit) {
+        StringBuilder sql = new StringBuilder()
+                .append("SELECT c.vector_id, v.content, c.doc_id, d.title, d.author, c.chunk_index, ")
+                .append("'NaN'::float8 AS distance ")
+                .append("FROM doc_chunk c JOIN doc d ON d.id = c.doc_id ")
+                .append("JOIN ").append(table).append(" v ON v.id = c.vector_id::uuid, ")
+                .append("websearch_to_tsquery(").append(regconfig)
+                .append(", ?) AS q WHERE c.tsv @@ q");
+        List<Object> args = new ArrayList<>(List.of(query));
+        if (docId != null) {
+            sql.append(" AND c.doc_id = ?");
+            args.add(docId);
+        }
+        sql.append(" ORDER BY ts_rank_cd(c.tsv, q) DESC, v.id LIMIT ?");
+        args.add(limit);
+        return jdbc.query(sql.toString(), hitMapper, args.toArray());
+    }
+
+    /**
+     * Promotes the {@code docId} metadata key to an indexed {@code doc_id}
+     * column of the pgvector table, filling it for rows stored before.
+     */
+    public void createDocIdColumn() {
+        String index = table.substring(table.indexOf('.') + 1) + "_doc_id_idx";
+        jdbc.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS doc_id BIGINT");
+        jdbc.update("UPDATE " + table + " SET doc_id = (metadata ->> 'docId')::bigint "
+                + "WHERE doc_id IS NULL AND metadata ->> 'docId' IS NOT NULL");
+        jdbc.execute("CREATE INDEX IF NOT EXISTS " + index + " ON " + table + " (doc_id)");
+    }
+
+    /**
+     * Returns up to {@code limit} neighbours at least {@code threshold} similar,
+     * ordered by (distance, id) and strictly after the given keyset position
+     * when {@code afterId} is set. Across the corpus, {@code rerank-factor}
+     * times {@code limit} candidates are read from the HNSW index and sorted
+     * exactly. Within one document the distances are exact: its rows are
+     * read through the {@code doc_id} index and sorted, rather than
+     * post-filtered out of an approximate scan of the corpus.
+     */
+    @Transactional(readOnly = true)
+    public List<VectorHit> findNearest(float[] embedding, Long docId, double threshold,
+                                       Double afterDistance, String afterId, int limit) {
+        QuantizedIndex index = docId == null ? quantizedIndex().orElse(null) : null;
+        if (docId == null && StringUtils.hasText(iterativeScan)) {
+            // lets the HNSW scan keep going past ef_search when the keyset filter drops rows
+            jdbc.execute("SET LOCAL hnsw.iterative_scan = " + iterativeScan);
+        }
+        int candidates = limit * Math.max(1, quantizedProps.getRerankFactor());
+        if (docId == null) {
+            jdbc.execute("SET LOCAL hnsw.ef_search = " + Math.clamp(candidates, 40, 1000));
+        }
+        PGvector vector = new PGvector(embedding);
+        String distance = "embedding " + operator + " ?";
+        StringBuilder sql = new StringBuilder()
+                .append("SELECT id::text AS vector_id, content, doc_id, ")
+                .append("metadata ->> 'title' AS title, metadata ->> 'author' AS author, ")
+                .append("(metadata ->> 'chunkIndex')::int AS chunk_index, ")
+                .append(distance).append(" AS distance ");
+        List<Object> args = new ArrayList<>();
+        args.add(vector);
+        if (docId == null) {
+            sql.append("FROM ").append(table);
+        } else {
+            // OFFSET 0 keeps the subquery from being flattened, so no vector index can serve the ORDER BY
+            sql.append("FROM (SELECT * FROM ").append(table).append(" WHERE doc_id = ? OFFSET 0) doc_rows");
+            args.add(docId);
+        }
+        sql.append(" WHERE ").append(distance).append(" < ?");
+        args.add(vector);
+        args.add(maxDistance(threshold));
+        if (afterId != null) {
+            sql.append(" AND (").append(distance).append(", id) > (?, ?::uuid)");
+            args.add(vector);
+            args.add(afterDistance);
+            args.add(afterId);
+        }
+        if (docId != null) {
+            sql.append(" ORDER BY distance, id LIMIT ?");
+            args.add(limit);
+        } else {
+            // an HNSW index only serves an ORDER BY on its own expression alone: candidates come
+            // in index order, then the exact (distance, id) order among them
+            sql.append(" ORDER BY ");
+            if (index == null) {
+                sql.append(distance);
+            } else {
+                sql.append(index.column()).append(' ').append(index.operator()).append(' ').append(index.query());
+            }
+            sql.append(" LIMIT ?");
+            args.add(vector);
+            args.add(candidates);
+            sql.insert(0, "SELECT * FROM (").append(") c ORDER BY distance, vector_id::uuid LIMIT ?");
+            args.add(limit);
+        }
+        return jdbc.query(sql.toString(), hitMapper, args.toArray());
+    }
+
+    /**
+     * Writes embedded chunks like {@code PgVectorStore.add} does, upserting
+     * by id, except that a chunk carrying body offsets keeps no copy of its
+     * text: its {@code content} is empty and the offsets stay in
+     * {@code doc_chunk}, where an edit before the chunk can move them.
+     */
+    public void upsert(List<Document> chunks, List<float[]> embeddings) {
+        List<Object[]> rows = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Document chunk = chunks.get(i);
+            Map<String, Object> metadata = new HashMap<>(chunk.getMetadata());
+            boolean referenced = metadata.remove("charOffset") != null;
+            metadata.remove("charLength");
+            rows.add(new Object[]{UUID.fromString(chunk.getId()), referenced ? "" : chunk.getText(),
+                    toJson(metadata), new PGvector(embeddings.get(i)), ((Number) metadata.get("docId")).longValue()});
+        }
+        jdbc.batchUpdate("INSERT INTO " + table + " (id, content, metadata, embedding, doc_id) "
+                + "VALUES (?, ?, ?::json, ?, ?) ON CONFLICT (id) DO UPDATE SET content = EXCLUDED.content, "
+                + "metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding, doc_id = EXCLUDED.doc_id", rows);
+    }
+
+    /**
+     * Rewrites the title, author and position keys of stored chunks'
+     * metadata in place, for chunks whose text, and so whose embedding,
+     * did not change.
+     */
+    public void updateMetadata(List<Document> chunks) {
+        jdbc.batchUpdate("UPDATE " + table + " SET metadata = ((metadata::jsonb - 'sectionTitle') "
+                        + "|| jsonb_strip_nulls(jsonb_build_object('title', ?::text, 'author', ?::text, "
+                        + "'chunkIndex', ?, 'sectionOrdinal', ?, 'sectionTitle', ?::text)))::json "
+                        + "WHERE id = ?::uuid",
+                chunks.stream()
+                        .map(c -> {
+                            Map<String, Object> metadata = c.getMetadata();
+                            return new Object[]{metadata.get("title"), metadata.get("author"),
+                                    metadata.get("chunkIndex"), metadata.get("sectionOrdinal"),
+                                    metadata.get("sectionTitle"), c.getId()};
+                        })
+                        .toList(),
+                new int[]{Types.VARCHAR, Types.VARCHAR, Types.INTEGER, Types.INTEGER, Types.VARCHAR,
+                        Types.VARCHAR});
+    }
+
+    /** Deletes chunks by id in one statement, where {@code PgVectorStore} issues one per id. */
+    public void deleteAll(Collection<String> vectorIds) {
+        if (vectorIds.isEmpty()) {
+            return;
+        }
+        String[] ids = vectorIds.toArray(String[]::new);
+        jdbc.update("DELETE FROM " + table + " WHERE id = ANY (?::uuid[])",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("text", ids)));
+    }
+
+    /**
+     * Similarity of a neighbour at {@code distance}, on the scale of the
+     * search threshold: cosine similarity for {@code <=>}, the inner product
+     * for {@code <#>}, which returns it negated, and {@code 1 / (1 + d)} for
+     * the Euclidean {@code <->}, which has no similarity of its own.
+     */
+    double similarity(double distance) {
+        return switch (operator) {
+            case "<#>" -> -distance;
+            case "<->" -> 1 / (1 + distance);
+            default -> 1 - distance;
+        };
+    }
+
+    // the inverse of similarity, so the bound can be checked against the index distance
+    double maxDistance(double threshold) {
+        return switch (operator) {
+            case "<#>" -> -threshold;
+            case "<->" -> threshold > 0 ? 1 / threshold - 1 : Double.POSITIVE_INFINITY;
+            default -> 1 - threshold;
+        };
+    }
+
+    private String toJson(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Chunk metadata is not serializable", e);
+        }
+    }
+
+    private Optional<QuantizedIndex> quantizedIndex() {
+        Optional<QuantizedIndex> index = quantizedIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = quantizedIndex;
+                if (index == null) {
+                    index = Optional.ofNullable(describeQuantizedIndex());
+                    quantizedIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    // the index expression is typed with the column's dimensions, read once from the catalog
+    private QuantizedIndex describeQuantizedIndex() {
+        VectorStoreProperties.Quantization quantization = quantizedProps.getQuantization();
+        if (quantization == VectorStoreProperties.Quantization.NONE) {
+            return null;
+        }
+        int dimensions = jdbc.queryForObject("SELECT atttypmod FROM pg_attribute "
+                + "WHERE attrelid = ?::regclass AND attname = 'embedding'", Integer.class, table);
+        int kept = quantizedProps.getIndexDimensions() > 0
+                ? Math.min(quantizedProps.getIndexDimensions(), dimensions) : dimensions;
+        String column = kept < dimensions ? "subvector(embedding, 1, " + kept + ")" : "embedding";
+        String query = kept < dimensions ? "subvector(?::vector, 1, " + kept + ")" : "?::vector";
+        String prefix = table.substring(table.indexOf('.') + 1) + "_";
+        return switch (quantization) {
+            case HALFVEC -> new QuantizedIndex(prefix + "halfvec_" + kept + "_idx",
+                    "(" + column + ")::halfvec(" + kept + ")",
+                    "(" + query + ")::halfvec(" + kept + ")",
+                    operator,
+                    switch (operator) {
+                        case "<->" -> "halfvec_l2_ops";
+                        case "<#>" -> "halfvec_ip_ops";
+                        default -> "halfvec_cosine_ops";
+                    });
+            case BINARY -> new QuantizedIndex(prefix + "binary_" + kept + "_idx",
+                    "binary_quantize(" + column + ")::bit(" + kept + ")",
+                    "binary_quantize(" + query + ")::bit(" + kept + ")",
+                    "<~>",
+                    "bit_hamming_ops");
+            case NONE -> null;
+        };
+    }
+
+    private record QuantizedIndex(String name, String column, String query, String operator, String opclass) {
+    }
+}
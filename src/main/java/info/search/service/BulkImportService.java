@@ -0,0 +1,14 @@
+package info.search.service;
+
+import java.util.UUID;
+import info.search.dto.ImportJobDto;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface BulkImportService {
+
+    ImportJobDto importDirectory(String path);
+
+    ImportJobDto importArchive(MultipartFile archive);
+
+    ImportJobDto getImport(UUID id);
+}
@@ -0,0 +1,340 @@
+package info.search.service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+import info.search.config.IngestionProperties;
+import info.search.dto.ImportJobDto;
+import info.search.exception.IngestionRejectedException;
+import info.search.exception.InvalidImportSourceException;
+import info.search.exception.UnknownJobException;
+import info.search.exception.UploadingDocumentException;
+import info.search.mapper.ImportJobMapper;
+import info.search.model.Doc;
+import info.search.model.ImportJob;
+import info.search.parser.DocumentParser;
+import info.search.parser.DocumentParsers;
+import info.search.repository.DocBatchRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Imports whole libraries of FB2 files from a server directory or a ZIP
+ * archive. Files are parsed on the import pool a batch at a time; each
+ * batch is deduplicated by content hash, inserted with batched JDBC and
+ * embedded through {@link EmbeddingExecutor} as one chunk list, so the
+ * embedding micro-batches span files. A file that fails only fails itself.
+ */
+@Slf4j
+@Service
+public class BulkImportServiceImpl implements BulkImportService {
+    private final Map<UUID, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    private final DocBatchRepository docBatchRepo;
+    private final SectionChunker chunker;
+    private final VectorStore vectorStore;
+    private final EmbeddingExecutor embeddingExecutor;
+    private final SearchResultCache searchCache;
+    private final StageTimers stages;
+    private final ImportJobMapper jobMapper;
+    private final IngestionProperties props;
+    private final ThreadPoolTaskExecutor coordinator;
+    private final ThreadPoolTaskExecutor parseExecutor;
+    private final DocumentParsers parsers;
+
+    public BulkImportServiceImpl(DocBatchRepository docBatchRepo,
+                                 SectionChunker chunker,
+                                 VectorStore vectorStore,
+                                 EmbeddingExecutor embeddingExecutor,
+                                 SearchResultCache searchCache,
+                                 StageTimers stages,
+                                 MeterRegistry registry,
+                                 ImportJobMapper jobMapper,
+                                 IngestionProperties props,
+                                 @Qualifier("importCoordinator") ThreadPoolTaskExecutor coordinator,
+                                 @Qualifier("importParseExecutor") ThreadPoolTaskExecutor parseExecutor,
+                                 DocumentParsers parsers) {
+        this.docBatchRepo = docBatchRepo;
+        this.chunker = chunker;
+        this.vectorStore = vectorStore;
+        this.embeddingExecutor = embeddingExecutor;
+        this.searchCache = searchCache;
+        this.stages = stages;
+        this.jobMapper = jobMapper;
+        this.props = props;
+        this.coordinator = coordinator;
+        this.parseExecutor = parseExecutor;
+        this.parsers = parsers;
+        Gauge.builder("imports.jobs.active", jobs, js -> js.values().stream().filter(j -> !j.isFinished()).count())
+                .description("Bulk imports queued or running")
+                .register(registry);
+    }
+
+    @Override
+    public ImportJobDto importDirectory(String path) {
+        Path dir = resolveDirectory(path);
+        ImportJob job = new ImportJob(path);
+        start(job, () -> {
+            try (Stream<Path> files = Files.walk(dir)) {
+                run(job, files.filter(Files::isRegularFile)
+                        .filter(p -> parsers.isSupportedName(p.getFileName().toString()))
+                        .map(p -> new SourceFile(dir.relativize(p).toString(),
+                                () -> Files.newInputStream(p))));
+            }
+        }, null);
+        return jobMapper.toDto(job);
+    }
+
+    @Override
+    public ImportJobDto importArchive(MultipartFile archive) {
+        Path spooled;
+        try {
+            spooled = Files.createTempFile("import-", ".zip");
+            archive.transferTo(spooled);
+        } catch (IOException e) {
+            throw new UploadingDocumentException(
+                    "Error while uploading archive: " + archive.getOriginalFilename(), e);
+        }
+        ImportJob job = new ImportJob(archive.getOriginalFilename());
+        // entries are inflated straight from the archive by the parse workers
+        start(job, () -> {
+            try (ZipFile zip = new ZipFile(spooled.toFile())) {
+                run(job, zip.stream()
+                        .filter(e -> !e.isDirectory() && parsers.isSupportedName(e.getName()))
+                        .map(e -> new SourceFile(e.getName(), () -> zip.getInputStream(e))));
+            }
+        }, spooled);
+        return jobMapper.toDto(job);
+    }
+
+    @Override
+    public ImportJobDto getImport(UUID id) {
+        ImportJob job = jobs.get(id);
+        if (job == null) {
+            throw new UnknownJobException("Import job with id " + id + " not found");
+        }
+        return jobMapper.toDto(job);
+    }
+
+    private void start(ImportJob job, ImportTask task, Path spooled) {
+        pruneFinishedJobs();
+        jobs.put(job.getId(), job);
+        try {
+            coordinator.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.warn("Import {} failed", job.getSource(), e);
+                    job.fail("Error while reading import source: " + e.getMessage());
+                } finally {
+                    if (spooled != null) {
+                        deleteQuietly(spooled);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            if (spooled != null) {
+                deleteQuietly(spooled);
+            }
+            throw new IngestionRejectedException("An import is already running, retry later", e);
+        }
+    }
+
+    private void run(ImportJob job, Stream<SourceFile> files) {
+        int batchSize = Math.max(1, props.getBulk().getBatchSize());
+        Set<String> seen = new HashSet<>();
+        List<CompletableFuture<Void>> embeddings = new ArrayList<>();
+        List<CompletableFuture<Parsed>> window = new ArrayList<>(batchSize);
+
+        Iterator<SourceFile> it = files.iterator();
+        while (it.hasNext()) {
+            SourceFile file = it.next();
+            job.getFound().incrementAndGet();
+            window.add(CompletableFuture.supplyAsync(() -> parse(file), parseExecutor));
+            if (window.size() == batchSize) {
+                embeddings.add(write(job, window, seen));
+                window = new ArrayList<>(batchSize);
+            }
+        }
+        if (!window.isEmpty()) {
+            embeddings.add(write(job, window, seen));
+        }
+        CompletableFuture.allOf(embeddings.toArray(CompletableFuture[]::new)).join();
+        searchCache.invalidate();
+        job.complete();
+    }
+
+    private Parsed parse(SourceFile file) {
+        try (BufferedInputStream in = new BufferedInputStream(file.opener().open())) {
+            DocumentParser parser = parsers.detect(null, file.name(), in);
+            Doc doc = stages.ingestion("parse").recordCallable(() -> DocumentParsers.collect(parser, in));
+            doc.setFileName(file.name());
+            doc.setTitle(DocumentParsers.titleOf(doc.getTitle(), file.name()));
+            doc.setContentHash(ContentHash.ofBody(doc.getContent()));
+            List<SectionChunker.Chunk> chunks = stages.ingestion("split").record(() -> Chunks.split(chunker, doc));
+            // the batch holds its docs until inserted, keep only the flat content
+            doc.setParagraphs(List.of());
+            return new Parsed(file.name(), doc, chunks, null);
+        } catch (Exception e) {
+            return new Parsed(file.name(), null, List.of(), e.getMessage());
+        }
+    }
+
+    // dedupes and inserts one parsed batch, then hands its chunks to the embedding pool
+    private CompletableFuture<Void> write(ImportJob job, List<CompletableFuture<Parsed>> window,
+                                          Set<String> seen) {
+        List<Parsed> parsed = window.stream().map(CompletableFuture::join).toList();
+        List<Parsed> fresh = new ArrayList<>();
+        Set<String> existing = docBatchRepo.findExistingHashes(parsed.stream()
+                .filter(p -> p.doc() != null)
+                .map(p -> p.doc().getContentHash())
+                .toList());
+        for (Parsed p : parsed) {
+            if (p.doc() == null) {
+                job.record(new ImportJob.FileOutcome(p.name(), ImportJob.Result.FAILED, null,
+                        "Error while parsing document: " + p.error()));
+            } else if (existing.contains(p.doc().getContentHash()) || !seen.add(p.doc().getContentHash())) {
+                job.record(new ImportJob.FileOutcome(p.name(), ImportJob.Result.DUPLICATE, null, null));
+            } else {
+                fresh.add(p);
+            }
+        }
+        if (fresh.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // content hashes are unique within fresh, they tell which of its docs went in
+        Set<String> insertedHashes;
+        try {
+            insertedHashes = stages.ingestion("persist").record(() ->
+                            docBatchRepo.insertAll(fresh.stream().map(Parsed::doc).toList())).stream()
+                    .map(Doc::getContentHash)
+                    .collect(Collectors.toSet());
+        } catch (RuntimeException e) {
+            log.warn("Inserting a batch of {} failed", job.getSource(), e);
+            fresh.forEach(p -> job.record(new ImportJob.FileOutcome(p.name(), ImportJob.Result.FAILED, null,
+                    "Error while saving document: " + e.getMessage())));
+            return CompletableFuture.completedFuture(null);
+        }
+        List<Parsed> inserted = new ArrayList<>(insertedHashes.size());
+        for (Parsed p : fresh) {
+            if (insertedHashes.contains(p.doc().getContentHash())) {
+                inserted.add(p);
+            } else {
+                // stored by a concurrent import after the hashes were checked
+                job.record(new ImportJob.FileOutcome(p.name(), ImportJob.Result.DUPLICATE, null, null));
+            }
+        }
+        if (inserted.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        List<Document> chunks = new ArrayList<>();
+        for (Parsed p : inserted) {
+            chunks.addAll(Chunks.of(p.doc(), p.chunks()));
+        }
+        CompletableFuture<Void> embedded;
+        try {
+            embedded = chunks.isEmpty()
+                    ? CompletableFuture.completedFuture(null)
+                    : embeddingExecutor.embed(chunks,
+                            batch -> stages.ingestion("persist").record(() -> docBatchRepo.insertChunks(batch)));
+        } catch (RuntimeException e) {
+            embedded = CompletableFuture.failedFuture(e);
+        }
+        return embedded.handle((ignored, ex) -> {
+            finish(job, inserted, chunks, ex);
+            return null;
+        });
+    }
+
+    private void finish(ImportJob job, List<Parsed> batch, List<Document> chunks, Throwable ex) {
+        if (ex == null) {
+            batch.forEach(p -> job.record(new ImportJob.FileOutcome(
+                    p.name(), ImportJob.Result.IMPORTED, p.doc().getId(), null)));
+            return;
+        }
+        log.warn("Embedding a batch of {} failed", job.getSource(), ex);
+        batch.forEach(p -> job.record(new ImportJob.FileOutcome(p.name(), ImportJob.Result.FAILED, null,
+                "Vector store failed: " + ex.getMessage())));
+        try {
+            vectorStore.delete(chunks.stream().map(Document::getId).toList());
+            docBatchRepo.deleteAll(batch.stream().map(p -> p.doc().getId()).toList());
+        } catch (Exception e) {
+            log.warn("Cleanup of a failed batch of {} failed", job.getSource(), e);
+        }
+    }
+
+    private Path resolveDirectory(String path) {
+        if (!StringUtils.hasText(props.getBulk().getRoot())) {
+            throw new InvalidImportSourceException("Directory import is disabled");
+        }
+        if (!StringUtils.hasText(path)) {
+            throw new InvalidImportSourceException("Import path is empty");
+        }
+        try {
+            Path root = Path.of(props.getBulk().getRoot()).toRealPath();
+            Path dir = root.resolve(path).normalize().toRealPath();
+            if (!dir.startsWith(root) || !Files.isDirectory(dir)) {
+                throw new InvalidImportSourceException("Not a directory under the import root: " + path);
+            }
+            return dir;
+        } catch (IOException e) {
+            throw new InvalidImportSourceException("Directory not found: " + path);
+        }
+    }
+
+    private void pruneFinishedJobs() {
+        Instant cutoff = Instant.now().minus(props.getJobRetention());
+        jobs.values().removeIf(job -> job.isFinished()
+                && job.getFinishedAt() != null
+                && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // temp dir cleanup will take it
+        }
+    }
+
+    private interface ImportTask {
+        void run() throws IOException;
+    }
+
+    private interface Opener {
+        InputStream open() throws IOException;
+    }
+
+    private record SourceFile(String name, Opener opener) {
+    }
+
+    private record Parsed(String name, Doc doc, List<SectionChunker.Chunk> chunks, String error) {
+    }
+}
@@ -0,0 +1,173 @@
+package info.search.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import info.search.config.EmbeddingProperties;
+import info.search.repository.EmbeddingCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.dao.DataAccessException;
+
+/**
+ * Content-addressed cache in front of the embedding model.
+ * Keys are the SHA-256 of the model id and the whitespace-normalized text.
+ * Lookups go to a bounded in-memory LRU first, then to the
+ * {@code embedding_cache} table; only the remaining texts reach the model.
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+    private final EmbeddingModel delegate;
+    private final EmbeddingCacheRepository repo;
+    private final EmbeddingProperties.Cache props;
+    private final Map<String, float[]> memory;
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter misses;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate,
+                                 EmbeddingCacheRepository repo,
+                                 EmbeddingProperties.Cache props,
+                                 MeterRegistry registry) {
+        this.delegate = delegate;
+        this.repo = repo;
+        this.props = props;
+        int maxEntries = props.getMaxEntries();
+        this.memory = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        this.memoryHits = counter(registry, "memory", "hit");
+        this.databaseHits = counter(registry, "database", "hit");
+        this.misses = counter(registry, "model", "miss");
+        Gauge.builder("embedding.cache.size", memory, Map::size)
+                .description("Embeddings held in the in-memory tier")
+                .register(registry);
+        Gauge.builder("embedding.cache.hit.ratio", this, CachingEmbeddingModel::hitRatio)
+                .description("Share of texts served without calling the model")
+                .register(registry);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        List<String> keys = texts.stream().map(this::key).toList();
+        Map<String, float[]> resolved = new LinkedHashMap<>();
+
+        for (String key : keys) {
+            float[] cached = memory.get(key);
+            if (cached != null) {
+                resolved.put(key, cached);
+            }
+        }
+        memoryHits.increment(countIn(keys, resolved));
+
+        if (props.isPersistent() && resolved.size() < keys.size()) {
+            Map<String, float[]> stored = findStored(keys, resolved);
+            memory.putAll(stored);
+            resolved.putAll(stored);
+            databaseHits.increment(countIn(keys, stored));
+        }
+
+        // texts repeated inside one request are embedded once
+        Map<String, String> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            if (!resolved.containsKey(keys.get(i))) {
+                missing.putIfAbsent(keys.get(i), texts.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            misses.increment(keys.size() - countIn(keys, resolved));
+            EmbeddingResponse response = delegate.call(
+                    new EmbeddingRequest(new ArrayList<>(missing.values()), request.getOptions()));
+            Map<String, float[]> computed = new LinkedHashMap<>();
+            List<String> missingKeys = new ArrayList<>(missing.keySet());
+            for (Embedding embedding : response.getResults()) {
+                computed.put(missingKeys.get(embedding.getIndex()), embedding.getOutput());
+            }
+            memory.putAll(computed);
+            resolved.putAll(computed);
+            if (props.isPersistent()) {
+                store(computed);
+            }
+        }
+
+        List<Embedding> results = new ArrayList<>(texts.size());
+        for (int i = 0; i < keys.size(); i++) {
+            results.add(new Embedding(resolved.get(keys.get(i)), i));
+        }
+        return new EmbeddingResponse(results);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    private Map<String, float[]> findStored(List<String> keys, Map<String, float[]> resolved) {
+        try {
+            return repo.findByKeys(keys.stream().filter(k -> !resolved.containsKey(k)).distinct().toList());
+        } catch (DataAccessException e) {
+            log.warn("Embedding cache lookup failed, falling back to the model", e);
+            return Map.of();
+        }
+    }
+
+    private void store(Map<String, float[]> computed) {
+        try {
+            repo.saveAll(props.getModelId(), computed);
+        } catch (DataAccessException e) {
+            log.warn("Embedding cache write failed", e);
+        }
+    }
+
+    private String key(String text) {
+        String normalized = text == null ? "" : text.strip().replaceAll("\\s+", " ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(props.getModelId().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double hitRatio() {
+        double hits = memoryHits.count() + databaseHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private static long countIn(List<String> keys, Map<String, float[]> found) {
+        return keys.stream().filter(found::containsKey).count();
+    }
+
+    private static Counter counter(MeterRegistry registry, String tier, String result) {
+        return Counter.builder("embedding.cache.requests")
+                .description("Embedding cache lookups by the tier that answered them")
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+}
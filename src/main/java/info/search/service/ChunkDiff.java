@@ -0,0 +1,77 @@
+package info.search.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import info.search.model.DocChunk;
+import org.springframework.ai.document.Document;
+
+/**
+ * Chunks of a re-parsed document matched to its stored chunks by content
+ * hash. A matched chunk keeps its vector id and embedding: it is either
+ * unchanged, or moved to another position or section, or relabelled with a
+ * new title or author, or only shifted in the body by an edit before it.
+ * Unmatched new chunks have to be embedded, unmatched stored chunks are
+ * orphaned.
+ *
+ * @param added    new chunks to embed, with fresh vector ids
+ * @param moved    matched chunks under their stored vector id, with their new metadata
+ * @param shifted  matched chunks whose body offset alone changed, under their stored vector id
+ * @param orphaned vector ids of stored chunks the new version no longer has
+ */
+record ChunkDiff(List<Document> added, List<Document> moved, List<Document> shifted, List<String> orphaned,
+                 int unchanged) {
+
+    static ChunkDiff of(List<DocChunk> stored, List<Document> chunks, boolean retitled) {
+        // a text repeated in the book is matched to its stored copies in order
+        Map<String, Deque<DocChunk>> byHash = new HashMap<>();
+        for (DocChunk row : stored) {
+            if (row.getContentHash() != null) {
+                byHash.computeIfAbsent(row.getContentHash(), k -> new ArrayDeque<>()).add(row);
+            }
+        }
+        List<Document> added = new ArrayList<>();
+        List<Document> moved = new ArrayList<>();
+        List<Document> shifted = new ArrayList<>();
+        int unchanged = 0;
+        for (Document chunk : chunks) {
+            Deque<DocChunk> matches = byHash.get((String) chunk.getMetadata().get("contentHash"));
+            DocChunk match = matches == null ? null : matches.pollFirst();
+            if (match == null) {
+                added.add(chunk);
+            } else if (!retitled && samePosition(match, chunk)) {
+                if (sameOffset(match, chunk)) {
+                    unchanged++;
+                } else {
+                    shifted.add(new Document(match.getVectorId(), chunk.getText(), chunk.getMetadata()));
+                }
+            } else {
+                moved.add(new Document(match.getVectorId(), chunk.getText(), chunk.getMetadata()));
+            }
+        }
+        List<String> orphaned = new ArrayList<>();
+        for (DocChunk row : stored) {
+            Deque<DocChunk> left = row.getContentHash() == null ? null : byHash.get(row.getContentHash());
+            if (left == null || left.contains(row)) {
+                orphaned.add(row.getVectorId());
+            }
+        }
+        return new ChunkDiff(added, moved, shifted, orphaned, unchanged);
+    }
+
+    private static boolean samePosition(DocChunk row, Document chunk) {
+        Map<String, Object> metadata = chunk.getMetadata();
+        return Objects.equals(row.getChunkIndex(), metadata.get("chunkIndex"))
+                && Objects.equals(row.getSectionOrdinal(), metadata.get("sectionOrdinal"))
+                && Objects.equals(row.getSectionTitle(), metadata.get("sectionTitle"));
+    }
+
+    private static boolean sameOffset(DocChunk row, Document chunk) {
+        return Objects.equals(row.getCharOffset(), chunk.getMetadata().get("charOffset"))
+                && Objects.equals(row.getCharLength(), chunk.getMetadata().get("charLength"));
+    }
+}
@@ -0,0 +1,52 @@
+package info.search.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import info.search.model.Doc;
+import info.search.model.Paragraph;
+import org.springframework.ai.document.Document;
+
+/** Builds the vector store documents of a saved doc, one per split chunk. */
+final class Chunks {
+
+    private Chunks() {
+    }
+
+    // a body without paragraph markup is chunked as one paragraph
+    static List<SectionChunker.Chunk> split(SectionChunker chunker, Doc doc) {
+        List<Paragraph> paragraphs = doc.getParagraphs();
+        if (paragraphs.isEmpty() && !doc.getContent().isBlank()) {
+            paragraphs = List.of(new Paragraph(doc.getContent(), "", null, 0));
+        }
+        return chunker.split(paragraphs);
+    }
+
+    static List<Document> of(Doc doc, List<SectionChunker.Chunk> chunks) {
+        List<Document> documents = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            documents.add(of(doc, chunks.get(i), i));
+        }
+        return documents;
+    }
+
+    static Document of(Doc doc, SectionChunker.Chunk chunk, int index) {
+        Map<String, Object> metadata = new HashMap<>(Map.of(
+                "docId", doc.getId(),
+                "title", doc.getTitle(),
+                "author", doc.getAuthor(),
+                "chunkIndex", index,
+                "sectionOrdinal", chunk.sectionOrdinal(),
+                "contentHash", ContentHash.of(chunk.text())));
+        if (chunk.sectionTitle() != null) {
+            metadata.put("sectionTitle", chunk.sectionTitle());
+        }
+        // where the text sits in the stored body; the pgvector row then keeps no copy of it
+        if (chunk.offset() >= 0) {
+            metadata.put("charOffset", chunk.offset());
+            metadata.put("charLength", chunk.text().length());
+        }
+        return new Document(chunk.text(), metadata);
+    }
+}
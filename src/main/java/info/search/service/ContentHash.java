@@ -0,0 +1,106 @@
+package info.search.service;
+
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Hex SHA-256 of text. Chunk text is hashed as it is; a document body is
+ * hashed with runs of whitespace collapsed to one space and the ends
+ * trimmed, so the same text joined with another paragraph separator, by an
+ * older parser, still has the same hash.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    public static String of(String content) {
+        return HexFormat.of().formatHex(digest().digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Hash of a whole document body. */
+    public static String ofBody(String content) {
+        Body body = new Body();
+        body.write(content, 0, content.length());
+        return body.hex();
+    }
+
+    /** A body hash to feed the content as it is written. */
+    public static Body body() {
+        return new Body();
+    }
+
+    static MessageDigest digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Normalizes whitespace on the way into the digest; {@link #hex()} is read once, at the end. */
+    public static final class Body extends Writer {
+        private static final int FLUSH_CHARS = 8192;
+
+        private final MessageDigest digest = digest();
+        private final StringBuilder pending = new StringBuilder();
+        private boolean text;
+        private boolean space;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                add(cbuf[i]);
+            }
+            flushFull();
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                add(str.charAt(i));
+            }
+            flushFull();
+        }
+
+        private void add(char c) {
+            // the whitespace class of \s, which the parsers collapse with
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+                space = text;
+                return;
+            }
+            if (space) {
+                pending.append(' ');
+                space = false;
+            }
+            pending.append(c);
+            text = true;
+        }
+
+        private void flushFull() {
+            // a high surrogate waits for its pair, alone it would encode as '?'
+            if (pending.length() >= FLUSH_CHARS
+                    && !Character.isHighSurrogate(pending.charAt(pending.length() - 1))) {
+                flush();
+            }
+        }
+
+        @Override
+        public void flush() {
+            digest.update(pending.toString().getBytes(StandardCharsets.UTF_8));
+            pending.setLength(0);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        public String hex() {
+            flush();
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+}
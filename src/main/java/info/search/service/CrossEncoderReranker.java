@@ -0,0 +1,139 @@
+package info.search.service;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.djl.util.PairList;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import info.search.config.SearchProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.transformers.ResourceCacheService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Second-stage scoring of (query, chunk) pairs with a local ONNX
+ * cross-encoder, on the same onnxruntime and tokenizer library as the
+ * transformers embedding model. Pairs are scored in batches in rank order,
+ * and no batch is started once the time budget has passed. At most
+ * {@code search.rerank.permits} searches score at once; the wait for a
+ * permit is part of the budget.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "search.rerank", name = "enabled", havingValue = "true")
+public class CrossEncoderReranker implements DisposableBean {
+    private final SearchProperties.Rerank props;
+    private final OrtEnvironment environment;
+    private final OrtSession session;
+    private final HuggingFaceTokenizer tokenizer;
+    private final boolean typeIds;
+    private final Semaphore permits;
+
+    public CrossEncoderReranker(SearchProperties props) throws Exception {
+        this.props = props.getRerank();
+        ResourceCacheService cache = StringUtils.hasText(this.props.getCacheDirectory())
+                ? new ResourceCacheService(this.props.getCacheDirectory())
+                : new ResourceCacheService();
+        Resource model = cache.getCachedResource(this.props.getModel());
+        try (InputStream in = cache.getCachedResource(this.props.getTokenizer()).getInputStream()) {
+            this.tokenizer = HuggingFaceTokenizer.newInstance(in, Map.of(
+                    "padding", "true",
+                    "truncation", "true",
+                    "maxLength", String.valueOf(this.props.getMaxLength())));
+        }
+        this.environment = OrtEnvironment.getEnvironment();
+        this.session = environment.createSession(model.getContentAsByteArray(), new OrtSession.SessionOptions());
+        this.typeIds = session.getInputNames().contains("token_type_ids");
+        this.permits = new Semaphore(Math.max(1, this.props.getPermits()), true);
+        log.info("Cross-encoder reranker loaded from {}", this.props.getModel());
+    }
+
+    /**
+     * Scores {@code texts} against {@code query}. The result covers a prefix
+     * of {@code texts}, shorter than it when the budget ran out.
+     */
+    public float[] score(String query, List<String> texts, Duration budget) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        try {
+            if (!permits.tryAcquire(budget.toNanos(), TimeUnit.NANOSECONDS)) {
+                log.debug("Rerank budget of {} spent waiting for the cross-encoder", budget);
+                return new float[0];
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new float[0];
+        }
+        int batchSize = Math.max(1, props.getBatchSize());
+        float[] scores = new float[texts.size()];
+        int scored = 0;
+        try {
+            while (scored < texts.size() && System.nanoTime() < deadline) {
+                List<String> batch = texts.subList(scored, Math.min(texts.size(), scored + batchSize));
+                float[] batchScores = scoreBatch(query, batch);
+                System.arraycopy(batchScores, 0, scores, scored, batchScores.length);
+                scored += batchScores.length;
+            }
+        } finally {
+            permits.release();
+        }
+        if (scored < texts.size()) {
+            log.debug("Rerank budget of {} spent after {} of {} candidates", budget, scored, texts.size());
+        }
+        return Arrays.copyOf(scores, scored);
+    }
+
+    private float[] scoreBatch(String query, List<String> texts) {
+        Encoding[] encodings = tokenizer.batchEncode(new PairList<>(
+                texts.stream().map(t -> query).toList(),
+                texts));
+        long[][] ids = new long[encodings.length][];
+        long[][] mask = new long[encodings.length][];
+        long[][] types = new long[encodings.length][];
+        for (int i = 0; i < encodings.length; i++) {
+            ids[i] = encodings[i].getIds();
+            mask[i] = encodings[i].getAttentionMask();
+            types[i] = encodings[i].getTypeIds();
+        }
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put("input_ids", OnnxTensor.createTensor(environment, ids));
+            inputs.put("attention_mask", OnnxTensor.createTensor(environment, mask));
+            if (typeIds) {
+                inputs.put("token_type_ids", OnnxTensor.createTensor(environment, types));
+            }
+            try (OrtSession.Result result = session.run(inputs)) {
+                float[][] logits = (float[][]) result.get(0).getValue();
+                float[] scores = new float[logits.length];
+                for (int i = 0; i < logits.length; i++) {
+                    // single relevance logit, or the positive class of a two-class head
+                    scores[i] = logits[i][logits[i].length - 1];
+                }
+                return scores;
+            }
+        } catch (OrtException e) {
+            throw new IllegalStateException("Cross-encoder inference failed", e);
+        } finally {
+            inputs.values().forEach(OnnxTensor::close);
+        }
+    }
+
+    @Override
+    public void destroy() throws OrtException {
+        session.close();
+        tokenizer.close();
+    }
+}
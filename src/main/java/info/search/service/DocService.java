@@ -1,25 +1,54 @@
 package info.search.service;
 
+import java.io.Writer;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import info.search.dto.DocDto;
 import info.search.dto.DocShortDto;
+import info.search.dto.SearchMode;
 import info.search.dto.SearchResultDto;
+import info.search.dto.SearchSliceDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.web.multipart.MultipartFile;
 
 public interface DocService {
 
     Page<DocShortDto> getAll(Pageable pageable);
 
-    DocDto uploadDocument(MultipartFile file);
-
     Optional<DocDto> getById(Long id);
 
+    void writeContent(Long id, Writer out);
+
     Page<SearchResultDto> search(String query,
                                  Long docId,
+                                 SearchMode mode,
+                                 ResultShape shape,
+                                 Rerank rerank,
                                  Pageable pageable);
 
+    /**
+     * Checks the search as {@link #search} does and returns it unstarted;
+     * written, it sends each result of the page as soon as it is final.
+     */
+    SearchStream searchStream(String query,
+                              Long docId,
+                              SearchMode mode,
+                              ResultShape shape,
+                              Rerank rerank,
+                              Pageable pageable);
+
+    List<Page<SearchResultDto>> searchBatch(List<SearchQuery> queries);
+
+    SearchSliceDto searchAfter(String query,
+                               Long docId,
+                               String cursor,
+                               int size,
+                               ResultShape shape);
+
     void deleteById(Long id);
+
+    /** Removes single chunks of a document from the vector store and {@code doc_chunk}. */
+    void deleteChunks(Collection<String> vectorIds);
 }
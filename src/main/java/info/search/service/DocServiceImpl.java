@@ -1,45 +1,83 @@
 package info.search.service;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import info.search.Fb2Parser;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import info.search.config.SearchProperties;
+import info.search.config.VectorStoreProperties;
 import info.search.dto.DocDto;
 import info.search.dto.DocShortDto;
+import info.search.dto.ResultField;
+import info.search.dto.SearchMode;
 import info.search.dto.SearchResultDto;
+import info.search.dto.SearchSliceDto;
 import info.search.exception.EmptyQueryException;
+import info.search.exception.InvalidBatchException;
 import info.search.exception.UnknownDocumentException;
-import info.search.exception.UploadingDocumentException;
+import info.search.exception.UnsupportedSearchException;
 import info.search.mapper.DocMapper;
 import info.search.model.Doc;
-import info.search.model.DocChunk;
+import info.search.model.DocSummary;
+import info.search.model.VectorHit;
 import info.search.repository.ChunkRepository;
+import info.search.repository.DocBatchRepository;
+import info.search.repository.DocContentRepository;
 import info.search.repository.DocRepository;
+import info.search.repository.VectorSearchRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.StringUtils;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class DocServiceImpl implements DocService {
     private final DocRepository repo;
     private final DocMapper docMapper;
     private final ChunkRepository chunkRepo;
-    private final TokenTextSplitter splitter;
+    private final DocBatchRepository docBatchRepo;
+    private final DocContentRepository docContentRepo;
     private final VectorStore vectorStore;
+    private final SearchResultCache searchCache;
+    private final SearchProperties searchProps;
+    private final VectorStoreProperties vectorStoreProps;
+    private final VectorSearchRepository vectorSearchRepo;
+    private final EmbeddingModel embeddingModel;
+    private final ObjectProvider<CrossEncoderReranker> reranker;
+    private final StageTimers stages;
+    @Qualifier("searchExecutor")
+    private final AsyncTaskExecutor searchExecutor;
 
     @Override
     public Page<DocShortDto> getAll(Pageable pageable) {
-        return repo.findAll(pageable)
+        return repo.findAllProjectedBy(pageable)
                 .map(docMapper::toShortDto);
     }
 
@@ -48,94 +86,437 @@ public class DocServiceImpl implements DocService {
         if (Objects.isNull(docId)) {
             return Optional.empty();
         }
-        if (!repo.existsById(docId)) {
-            throw new UnknownDocumentException(
-                    "Document with id " + docId + " not found");
+        DocSummary summary = repo.findProjectedById(docId).orElseThrow(() -> new UnknownDocumentException(
+                "Document with id " + docId + " not found"));
+        DocDto dto = docMapper.toDto(summary);
+        StringWriter content = new StringWriter();
+        docContentRepo.writeTo(docId, content);
+        dto.setContent(content.toString());
+        return Optional.of(dto);
+    }
+
+    @Override
+    public void writeContent(Long docId, Writer out) {
+        if (!docContentRepo.writeTo(docId, out)) {
+            throw new UnknownDocumentException("Document with id " + docId + " not found");
         }
-        return repo.findById(docId)
-                .map(docMapper::toDto);
     }
 
-    @Transactional(rollbackFor = Exception.class)
     @Override
-    public DocDto uploadDocument(MultipartFile file) {
-        try {
-            Doc doc = Fb2Parser.parse(file.getInputStream());
-            doc.setFileName(file.getOriginalFilename());
-            DocDto saved = docMapper.toDto(repo.save(doc));
-
-            Document document = new Document(
-                    doc.getContent(),
-                    Map.of("docId", saved.getId(),
-                            "title", doc.getTitle(),
-                            "author", doc.getAuthor())
-            );
-            List<Document> chunks = splitter.apply(List.of(document));
-            List<DocChunk> docChunks = chunks.stream()
-                    .map(c -> {
-                        DocChunk dc = new DocChunk();
-                        dc.setVectorId(c.getId());
-                        dc.setDoc(docMapper.toEntity(saved));
-                        return dc;
-                    }).toList();
-            chunkRepo.saveAll(docChunks);
+    public Page<SearchResultDto> search(String query, Long docId, SearchMode mode, ResultShape shape,
+                                        Rerank rerank, Pageable pageable) {
+        SearchMode searchMode = checkSearch(query, docId, mode);
+        Rerank resolved = resolveRerank(rerank);
+        return rankedPage(query, docId, searchMode, shape, resolved, pageable, null, searchExecutor);
+    }
+
+    @Override
+    public SearchStream searchStream(String query, Long docId, SearchMode mode, ResultShape shape,
+                                     Rerank rerank, Pageable pageable) {
+        SearchMode searchMode = checkSearch(query, docId, mode);
+        Rerank resolved = resolveRerank(rerank);
+        return sink -> {
             try {
-                vectorStore.add(chunks);
-            } catch (Exception e) {
-                throw new UploadingDocumentException("Vector store failed: " + file, e);
+                writeStream(sink, query, docId, searchMode, shape, resolved, pageable);
+            } catch (RuntimeException e) {
+                // the response has started, so the failure can only be reported as an event
+                log.warn("Streamed search for '{}' failed", query, e);
+                sink.error(e.getMessage() == null ? "Search failed" : e.getMessage());
             }
-            return saved;
-        } catch (UploadingDocumentException e) {
-            throw e;
-        } catch (Exception e) {
-            throw new UploadingDocumentException(
-                    "Error while uploading document: " + file.getOriginalFilename(), e);
+        };
+    }
+
+    private void writeStream(SearchStream.Sink sink, String query, Long docId, SearchMode searchMode,
+                             ResultShape shape, Rerank resolved, Pageable pageable) throws IOException {
+        int offset = (int) pageable.getOffset();
+        boolean[] sent = {false};
+        // without a rerank a fresh ranking is final as the leg returns it, so the first hit of the
+        // page is sent from there, before the ranking is cached
+        Consumer<List<SearchResultDto>> fresh = resolved.candidates() > 0 || pageable.getPageSize() == 0
+                ? null
+                : results -> {
+                    if (results.size() > offset) {
+                        try {
+                            emit(sink, results.subList(offset, offset + 1), query, shape);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        sent[0] = true;
+                    }
+                };
+        SearchResultCache.Ranking ranking;
+        try {
+            ranking = ranking(query, docId, searchMode, resolved, pageable, null, searchExecutor, fresh);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        List<SearchResultDto> list = ranking.results();
+        if (resolved.candidates() > 0 && !list.isEmpty()) {
+            sink.keepAlive();
+            list = reranked(query, list, resolved);
+        }
+        RankedPage ranked = slice(ranking, list, pageable);
+        // the first hit is cut out of its body alone, the rest of the page follows in one read
+        List<SearchResultDto> results = ranked.results();
+        int first = Math.min(1, results.size());
+        if (!sent[0]) {
+            emit(sink, results.subList(0, first), query, shape);
+        }
+        emit(sink, results.subList(first, results.size()), query, shape);
+        sink.end(ranked.total(), ranked.hasNext());
+    }
+
+    private void emit(SearchStream.Sink sink, List<SearchResultDto> hits, String query, ResultShape shape)
+            throws IOException {
+        if (hits.isEmpty()) {
+            return;
+        }
+        List<SearchResultDto> shown = shape.fields().contains(ResultField.FRAGMENT) ? withFragments(hits) : hits;
+        for (SearchResultDto result : stages.search("mapping").record(() -> shape.apply(shown, query))) {
+            sink.result(result);
         }
     }
 
     @Override
-    public Page<SearchResultDto> search(String query, Long docId, Pageable pageable) {
+    public List<Page<SearchResultDto>> searchBatch(List<SearchQuery> queries) {
+        if (queries == null || queries.isEmpty()) {
+            throw new InvalidBatchException("Batch contains no queries");
+        }
+        int maxQueries = searchProps.getBatch().getMaxQueries();
+        if (queries.size() > maxQueries) {
+            throw new InvalidBatchException(
+                    "Batch of " + queries.size() + " queries exceeds the limit of " + maxQueries);
+        }
+        List<SearchMode> modes = queries.stream()
+                .map(q -> checkQuery(q.query(), q.mode()))
+                .toList();
+        List<Rerank> reranks = queries.stream()
+                .map(q -> resolveRerank(q.rerank()))
+                .toList();
+        queries.stream()
+                .map(SearchQuery::docId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .forEach(this::checkDocument);
+
+        // queries without a cached ranking share one model call
+        double threshold = searchProps.getSimilarityThreshold();
+        List<String> toEmbed = IntStream.range(0, queries.size())
+                .filter(i -> {
+                    SearchQuery q = queries.get(i);
+                    int needed = depth(q.pageable(), reranks.get(i));
+                    return !searchCache.covers(q.query(), q.docId(), modes.get(i), threshold, needed);
+                })
+                .mapToObj(i -> queries.get(i).query())
+                .distinct()
+                .toList();
+        Map<String, float[]> embeddings = new HashMap<>();
+        if (!toEmbed.isEmpty()) {
+            List<float[]> vectors = stages.search("embed").record(() -> embeddingModel.embed(toEmbed));
+            for (int i = 0; i < toEmbed.size(); i++) {
+                embeddings.put(toEmbed.get(i), vectors.get(i));
+            }
+        }
+
+        // the batch already fills the search pool, so hybrid legs run inline
+        Executor inline = Runnable::run;
+        List<CompletableFuture<Page<SearchResultDto>>> pages = IntStream.range(0, queries.size())
+                .mapToObj(i -> {
+                    SearchQuery q = queries.get(i);
+                    return CompletableFuture.supplyAsync(() -> rankedPage(q.query(), q.docId(), modes.get(i),
+                            q.shape(), reranks.get(i), q.pageable(), embeddings.get(q.query()), inline),
+                            searchExecutor);
+                })
+                .toList();
+        return pages.stream()
+                .map(DocServiceImpl::join)
+                .toList();
+    }
+
+    private SearchMode checkSearch(String query, Long docId, SearchMode mode) {
+        SearchMode searchMode = checkQuery(query, mode);
+        if (docId != null) {
+            checkDocument(docId);
+        }
+        return searchMode;
+    }
+
+    private SearchMode checkQuery(String query, SearchMode mode) {
         if (query == null || query.isBlank()) {
             throw new EmptyQueryException("Query string is empty");
         }
-        if (docId != null && !repo.existsById(docId)) {
+        SearchMode searchMode = mode == null ? SearchMode.VECTOR : mode;
+        if (searchMode == SearchMode.HYBRID) {
+            requirePgvector("Hybrid search");
+        }
+        return searchMode;
+    }
+
+    private void checkDocument(Long docId) {
+        if (!repo.existsById(docId)) {
             throw new UnknownDocumentException("Document with id " + docId + " not found");
         }
+    }
+
+    // a resolved rerank has both values set, candidates 0 when it is skipped
+    private Rerank resolveRerank(Rerank rerank) {
+        SearchProperties.Rerank props = searchProps.getRerank();
+        Integer candidates = rerank == null ? null : rerank.candidates();
+        if (!props.isEnabled()) {
+            if (candidates != null && candidates > 0) {
+                throw new UnsupportedSearchException("Reranking is not enabled on this server");
+            }
+            return new Rerank(0, 0L);
+        }
+        Long budgetMs = rerank == null ? null : rerank.budgetMs();
+        return new Rerank(
+                Math.clamp(candidates == null ? props.getCandidates() : candidates, 0, props.getMaxCandidates()),
+                Math.clamp(budgetMs == null ? props.getBudget().toMillis() : budgetMs,
+                        0, props.getMaxBudget().toMillis()));
+    }
+
+    // results ranked for a page: through one past its end, to tell whether another follows,
+    // or the rerank candidates when there are more
+    static int depth(Pageable pageable, Rerank rerank) {
+        return Math.max((int) pageable.getOffset() + pageable.getPageSize() + 1, rerank.candidates());
+    }
+
+    // hits fetched from each leg of a hybrid search, never fewer than the fused ranking keeps
+    static int legCandidates(int depth, SearchProperties.Hybrid hybrid) {
+        return Math.max(depth, hybrid.getCandidates());
+    }
+
+    /**
+     * Serves one page of the cached ranking, ranking on a miss. A precomputed
+     * {@code embedding} of the query saves the model call of the vector leg.
+     * Reranking reorders the cached ranking per request and is not cached itself.
+     */
+    private Page<SearchResultDto> rankedPage(String query, Long docId, SearchMode mode, ResultShape shape,
+                                             Rerank rerank, Pageable pageable, float[] embedding, Executor legs) {
+        SearchResultCache.Ranking ranking = ranking(query, docId, mode, rerank, pageable, embedding, legs, null);
+        List<SearchResultDto> list = ranking.results();
+        if (rerank.candidates() > 0 && !list.isEmpty()) {
+            list = reranked(query, list, rerank);
+        }
+        RankedPage ranked = slice(ranking, list, pageable);
+        List<SearchResultDto> page = shape.fields().contains(ResultField.FRAGMENT)
+                ? withFragments(ranked.results()) : ranked.results();
+        return new PageImpl<>(stages.search("mapping").record(() -> shape.apply(page, query)), pageable,
+                ranked.total());
+    }
+
+    // fresh, when given, sees a ranking computed on a cache miss before it is stored
+    private SearchResultCache.Ranking ranking(String query, Long docId, SearchMode mode, Rerank rerank,
+                                              Pageable pageable, float[] embedding, Executor legs,
+                                              Consumer<List<SearchResultDto>> fresh) {
+        double threshold = searchProps.getSimilarityThreshold();
+        return searchCache.get(query, docId, mode, threshold, depth(pageable, rerank), depth -> {
+            List<SearchResultDto> results = mode == SearchMode.HYBRID
+                    ? hybridSearch(query, embedding, docId, threshold, depth, legs)
+                    : vectorSearch(query, embedding, docId, threshold, depth);
+            if (fresh != null) {
+                fresh.accept(results);
+            }
+            return results;
+        });
+    }
+
+    private List<SearchResultDto> reranked(String query, List<SearchResultDto> ranked, Rerank rerank) {
+        return stages.search("rerank").record(() -> rerank(query, ranked, rerank));
+    }
+
+    // the page of the (reranked) ranking, and the total reported with it
+    private static RankedPage slice(SearchResultCache.Ranking ranking, List<SearchResultDto> list,
+                                    Pageable pageable) {
+        int from = (int) pageable.getOffset();
+        int to = from + pageable.getPageSize();
+        boolean hasNext = list.size() > to;
+
+        List<SearchResultDto> res = list.subList(
+                Math.min(from, list.size()),
+                Math.min(list.size(), to)
+        );
+
+        long total;
+        if (ranking.exhausted()) {
+            total = list.size();
+        } else {
+            total = hasNext
+                    ? (long) (pageable.getPageNumber() + 2) * pageable.getPageSize()
+                    : (long) from + res.size();
+        }
+        return new RankedPage(res, total, hasNext);
+    }
+
+    @Override
+    public SearchSliceDto searchAfter(String query, Long docId, String cursor, int size, ResultShape shape) {
+        checkSearch(query, docId, SearchMode.VECTOR);
+        requirePgvector("Cursor pagination");
+        int limit = Math.max(1, size);
+        SearchCursor after = StringUtils.hasText(cursor) ? SearchCursor.decode(cursor) : null;
+
+        float[] embedding = embed(query);
+        List<VectorHit> hits = stages.search("vector").record(() -> vectorSearchRepo.findNearest(
+                embedding,
+                docId,
+                searchProps.getSimilarityThreshold(),
+                after == null ? null : after.distance(),
+                after == null ? null : after.vectorId(),
+                limit + 1));
+
+        boolean hasMore = hits.size() > limit;
+        List<VectorHit> page = hasMore ? hits.subList(0, limit) : hits;
+        String nextCursor = null;
+        if (hasMore) {
+            VectorHit last = page.getLast();
+            nextCursor = new SearchCursor(last.distance(), last.vectorId()).encode();
+        }
+        List<SearchResultDto> results = page.stream()
+                .map(DocServiceImpl::toResult)
+                .toList();
+        List<SearchResultDto> shown = shape.fields().contains(ResultField.FRAGMENT)
+                ? withFragments(results) : results;
+        List<SearchResultDto> content = stages.search("mapping").record(() -> shape.apply(shown, query));
+        return new SearchSliceDto(content, nextCursor, hasMore);
+    }
+
+    // both legs run on the given pool, the fused ranking waits for the slower one
+    private List<SearchResultDto> hybridSearch(String query, float[] embedding, Long docId, double threshold,
+                                               int depth, Executor legs) {
+        int candidates = legCandidates(depth, searchProps.getHybrid());
+        CompletableFuture<List<VectorHit>> vector = CompletableFuture.supplyAsync(() -> {
+            float[] vectorQuery = embedding != null ? embedding : embed(query);
+            return stages.search("vector").record(() -> vectorSearchRepo.findNearest(vectorQuery,
+                    docId, threshold, null, null, candidates));
+        }, legs);
+        CompletableFuture<List<VectorHit>> lexical = CompletableFuture.supplyAsync(
+                () -> stages.search("lexical").record(() -> vectorSearchRepo.findLexical(query, docId, candidates)),
+                legs);
+        List<List<VectorHit>> rankings = List.of(join(vector), join(lexical));
+        return stages.search("fusion").record(() -> RankFusion.fuse(rankings, searchProps.getHybrid().getRrfK())
+                .stream()
+                .limit(depth)
+                .map(DocServiceImpl::toResult)
+                .toList());
+    }
+
+    private List<SearchResultDto> vectorSearch(String query, float[] embedding, Long docId, double threshold,
+                                               int topK) {
+        if (vectorStoreProps.getBackend() != VectorStoreProperties.Backend.PGVECTOR) {
+            // the hnsw store embeds the query itself, so its vector stage includes the model call;
+            // the embedding cache answers it for batches
+            return stages.search("vector").record(() -> similaritySearch(query, docId, threshold, topK));
+        }
+        // embedded here rather than in PgVectorStore, so the two stages are timed apart
+        float[] vectorQuery = embedding != null ? embedding : embed(query);
+        return stages.search("vector").record(() -> vectorSearchRepo.findNearest(vectorQuery,
+                        docId, threshold, null, null, topK)
+                .stream()
+                .map(DocServiceImpl::toResult)
+                .toList());
+    }
+
+    private float[] embed(String query) {
+        return stages.search("embed").record(() -> embeddingModel.embed(query));
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // scored candidates lead in cross-encoder order, the rest keep the vector order; a candidate
+    // without text, its document deleted since it was ranked, is not scored
+    private List<SearchResultDto> rerank(String query, List<SearchResultDto> ranked, Rerank rerank) {
+        CrossEncoderReranker encoder = reranker.getObject();
+        List<SearchResultDto> head = withFragments(ranked.subList(0, Math.min(rerank.candidates(), ranked.size())));
+        float[] scores = encoder.score(query,
+                head.stream().map(SearchResultDto::getFragment).filter(StringUtils::hasLength).toList(),
+                Duration.ofMillis(rerank.budgetMs()));
+        List<SearchResultDto> scored = new ArrayList<>(scores.length);
+        List<SearchResultDto> unscored = new ArrayList<>();
+        for (SearchResultDto hit : head) {
+            (scored.size() < scores.length && StringUtils.hasLength(hit.getFragment()) ? scored : unscored).add(hit);
+        }
+        List<SearchResultDto> reordered = new ArrayList<>(ranked.size());
+        IntStream.range(0, scores.length)
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> scores[i]).reversed())
+                .forEach(i -> {
+                    SearchResultDto hit = scored.get(i);
+                    reordered.add(new SearchResultDto(hit.getDocId(), hit.getTitle(), hit.getAuthor(),
+                            hit.getFragment(), hit.getVectorId(), hit.getScore(), hit.getChunkIndex(),
+                            hit.getHighlights(), (double) scores[i]));
+                });
+        reordered.addAll(unscored);
+        reordered.addAll(ranked.subList(head.size(), ranked.size()));
+        return reordered;
+    }
 
-        int topK = (pageable.getPageNumber() + 1) * pageable.getPageSize() + 1;
+    // pgvector rows of chunks that reference the stored body carry no text, it is cut out of the body
+    // for the hits that are shown or reranked; cached rankings keep the empty fragments
+    private List<SearchResultDto> withFragments(List<SearchResultDto> hits) {
+        List<String> missing = hits.stream()
+                .filter(hit -> !StringUtils.hasLength(hit.getFragment()))
+                .map(SearchResultDto::getVectorId)
+                .toList();
+        if (missing.isEmpty()) {
+            return hits;
+        }
+        Map<String, String> texts = stages.search("fragment").record(() -> docContentRepo.readChunks(missing));
+        return hits.stream()
+                .map(hit -> StringUtils.hasLength(hit.getFragment()) ? hit : new SearchResultDto(hit.getDocId(),
+                        hit.getTitle(), hit.getAuthor(), texts.get(hit.getVectorId()), hit.getVectorId(),
+                        hit.getScore(), hit.getChunkIndex(), hit.getHighlights(), hit.getRerankScore()))
+                .toList();
+    }
 
+    // cursor and hybrid queries read the pgvector table directly
+    private void requirePgvector(String feature) {
+        if (vectorStoreProps.getBackend() != VectorStoreProperties.Backend.PGVECTOR) {
+            throw new UnsupportedSearchException(
+                    feature + " is not supported by the " + vectorStoreProps.getBackend() + " vector store");
+        }
+    }
+
+    private static SearchResultDto toResult(VectorHit hit) {
+        // lexical-only hits of a hybrid search have no vector score
+        Double score = Double.isNaN(hit.distance()) ? null : hit.score();
+        return new SearchResultDto(hit.docId(), hit.title(), hit.author(), hit.content(),
+                hit.vectorId(), score, hit.chunkIndex(), null, null);
+    }
+
+    private List<SearchResultDto> similaritySearch(String query, Long docId, double threshold, int topK) {
         SearchRequest.Builder builder = SearchRequest.builder()
                 .query(query)
                 .topK(topK)
-                .similarityThreshold(0.002);
+                .similarityThreshold(threshold);
 
         if (docId != null) {
-            builder.filterExpression("docId == " + docId);
+            // built as an expression, the id is a typed value rather than parsed out of filter text
+            builder.filterExpression(new FilterExpressionBuilder().eq("docId", docId).build());
         }
 
-        List<SearchResultDto> list = Objects.requireNonNull(
+        return Objects.requireNonNull(
                         vectorStore.similaritySearch(builder.build()))
                 .stream()
                 .map(doc -> {
                     Long foundDocId = ((Number) doc.getMetadata().get("docId")).longValue();
                     String title = (String) doc.getMetadata().get("title");
                     String author = (String) doc.getMetadata().get("author");
-                    return new SearchResultDto(foundDocId, title, author, doc.getText());
+                    Number chunkIndex = (Number) doc.getMetadata().get("chunkIndex");
+                    Number distance = (Number) doc.getMetadata().get("distance");
+                    return new SearchResultDto(foundDocId, title, author, doc.getText(), doc.getId(),
+                            distance == null ? null : 1 - distance.doubleValue(),
+                            chunkIndex == null ? null : chunkIndex.intValue(), null, null);
                 })
                 .toList();
-
-        boolean hasNext = list.size() > (pageable.getPageNumber() + 1) * pageable.getPageSize();
-
-        List<SearchResultDto> res = list.subList(
-                pageable.getPageNumber() * pageable.getPageSize(),
-                Math.min(list.size(), (pageable.getPageNumber() + 1) * pageable.getPageSize())
-        );
-
-        long total = hasNext
-                ? (long) (pageable.getPageNumber() + 2) * pageable.getPageSize()
-                : (long) pageable.getPageNumber() * pageable.getPageSize() + res.size();
-
-        return new PageImpl<>(res, pageable, total);
     }
 
     @Transactional
@@ -144,13 +525,26 @@ public class DocServiceImpl implements DocService {
         Doc doc = repo.findById(docId).orElseThrow(() -> new UnknownDocumentException(
                 "Document with id " + docId + " not found")
         );
-        List<DocChunk> chunks = chunkRepo.findByDoc(doc);
-        List<String> vectorIds = chunks.stream()
-                .map(DocChunk::getVectorId)
-                .toList();
-
-        vectorStore.delete(vectorIds);
-        chunkRepo.deleteAll(chunks);
+        deleteVectors(chunkRepo.findVectorIdsByDocId(docId));
+        chunkRepo.deleteByDocId(docId);
         repo.delete(doc);
+        searchCache.invalidate();
+    }
+
+    @Override
+    public void deleteChunks(Collection<String> vectorIds) {
+        deleteVectors(vectorIds);
+        docBatchRepo.deleteChunks(vectorIds);
+    }
+
+    private void deleteVectors(Collection<String> vectorIds) {
+        if (vectorStoreProps.getBackend() == VectorStoreProperties.Backend.PGVECTOR) {
+            vectorSearchRepo.deleteAll(vectorIds);
+        } else {
+            vectorStore.delete(List.copyOf(vectorIds));
+        }
+    }
+
+    private record RankedPage(List<SearchResultDto> results, long total, boolean hasNext) {
     }
 }
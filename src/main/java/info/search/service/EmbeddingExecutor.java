@@ -0,0 +1,163 @@
+package info.search.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import info.search.config.EmbeddingProperties;
+import info.search.config.VectorStoreProperties;
+import info.search.repository.VectorSearchRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Embeds chunk lists in micro-batches across the embedding worker pool.
+ * Each batch is embedded and written by one {@link VectorStore#add} call,
+ * which upserts by id, so a failed batch can simply be retried. On pgvector
+ * the batch is embedded here and upserted by {@link VectorSearchRepository},
+ * which leaves the text of body-referencing chunks out of the vector row.
+ */
+@Slf4j
+@Component
+public class EmbeddingExecutor {
+    private final VectorStore vectorStore;
+    private final VectorSearchRepository vectorSearchRepo;
+    private final EmbeddingModel embeddingModel;
+    private final boolean pgvector;
+    private final EmbeddingProperties props;
+    private final ThreadPoolTaskExecutor executor;
+    private final Timer batchLatency;
+    private final DistributionSummary batchThroughput;
+    private final Counter chunks;
+    private final Counter retries;
+    private final Counter failures;
+
+    public EmbeddingExecutor(VectorStore vectorStore,
+                             VectorSearchRepository vectorSearchRepo,
+                             EmbeddingModel embeddingModel,
+                             VectorStoreProperties vectorStoreProps,
+                             EmbeddingProperties props,
+                             @Qualifier("embedExecutor") ThreadPoolTaskExecutor executor,
+                             MeterRegistry registry) {
+        this.vectorStore = vectorStore;
+        this.vectorSearchRepo = vectorSearchRepo;
+        this.embeddingModel = embeddingModel;
+        this.pgvector = vectorStoreProps.getBackend() == VectorStoreProperties.Backend.PGVECTOR;
+        this.props = props;
+        this.executor = executor;
+        this.batchLatency = Timer.builder("embedding.batch.latency")
+                .description("Time to embed and store one micro-batch")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.batchThroughput = DistributionSummary.builder("embedding.batch.throughput")
+                .description("Chunks per second achieved by one micro-batch")
+                .baseUnit("chunks/s")
+                .register(registry);
+        this.chunks = Counter.builder("embedding.chunks")
+                .description("Chunks embedded and stored")
+                .register(registry);
+        this.retries = Counter.builder("embedding.batch.retries")
+                .register(registry);
+        this.failures = Counter.builder("embedding.batch.failures")
+                .register(registry);
+    }
+
+    /**
+     * Submits all batches of {@code documents}, blocking while the worker
+     * queue is full. {@code onStored} sees the stored batches in input order.
+     * The returned future completes once every batch has settled, exceptionally
+     * with the first failure; batches not yet started when a batch fails
+     * for good are skipped.
+     */
+    public CompletableFuture<Void> embed(List<Document> documents, Consumer<List<Document>> onStored) {
+        int batchSize = Math.max(1, props.getBatchSize());
+        AtomicBoolean failed = new AtomicBoolean();
+        List<CompletableFuture<?>> all = new ArrayList<>();
+        CompletableFuture<Void> ordered = CompletableFuture.completedFuture(null);
+        for (int from = 0; from < documents.size(); from += batchSize) {
+            List<Document> batch = documents.subList(from, Math.min(documents.size(), from + batchSize));
+            CompletableFuture<List<Document>> stored =
+                    CompletableFuture.supplyAsync(() -> store(batch, failed), executor);
+            all.add(stored);
+            ordered = ordered.thenCombine(stored, (ignored, b) -> {
+                onStored.accept(b);
+                return null;
+            });
+        }
+        all.add(ordered);
+        return CompletableFuture.allOf(all.toArray(CompletableFuture[]::new))
+                .exceptionallyCompose(ex -> CompletableFuture.failedFuture(firstFailure(all, ex)));
+    }
+
+    private List<Document> store(List<Document> batch, AtomicBoolean failed) {
+        Duration backoff = props.getRetryBackoff();
+        for (int attempt = 1; ; attempt++) {
+            if (failed.get()) {
+                throw new CancellationException("Skipped after an earlier batch failed");
+            }
+            long start = System.nanoTime();
+            try {
+                if (pgvector) {
+                    List<String> texts = batch.stream().map(Document::getText).toList();
+                    vectorSearchRepo.upsert(batch, embeddingModel.embed(texts));
+                } else {
+                    vectorStore.add(batch);
+                }
+                long elapsed = System.nanoTime() - start;
+                batchLatency.record(Duration.ofNanos(elapsed));
+                batchThroughput.record(batch.size() * 1e9 / Math.max(1, elapsed));
+                chunks.increment(batch.size());
+                return batch;
+            } catch (RuntimeException e) {
+                if (attempt >= props.getMaxAttempts()) {
+                    failures.increment();
+                    failed.set(true);
+                    throw e;
+                }
+                retries.increment();
+                log.warn("Embedding batch failed (attempt {}/{}), retrying in {}",
+                        attempt, props.getMaxAttempts(), backoff, e);
+                sleep(backoff);
+                backoff = backoff.multipliedBy(2);
+            }
+        }
+    }
+
+    // prefer the real cause over the cancellations it triggered
+    private static Throwable firstFailure(List<CompletableFuture<?>> futures, Throwable fallback) {
+        for (CompletableFuture<?> future : futures) {
+            if (future.isCompletedExceptionally()) {
+                Throwable cause = future.handle((v, ex) -> ex).join();
+                if (cause instanceof CompletionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                if (!(cause instanceof CancellationException)) {
+                    return cause;
+                }
+            }
+        }
+        return fallback;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting to retry");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package info.search.service;
+
+import java.util.UUID;
+import info.search.dto.IngestionJobDto;
+import org.springframework.web.multipart.MultipartFile;
+
+public interface IngestionService {
+
+    IngestionJobDto submit(MultipartFile file);
+
+    /**
+     * Queues a new version of an existing document. Its id stays the same,
+     * chunks whose text is unchanged keep their embeddings.
+     */
+    IngestionJobDto update(Long docId, MultipartFile file);
+
+    IngestionJobDto getJob(UUID id);
+}
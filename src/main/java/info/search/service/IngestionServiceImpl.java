@@ -0,0 +1,482 @@
+package info.search.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import info.search.config.EmbeddingProperties;
+import info.search.config.IngestionProperties;
+import info.search.dto.IngestionJobDto;
+import info.search.exception.DocumentBusyException;
+import info.search.exception.IngestionRejectedException;
+import info.search.exception.UnknownDocumentException;
+import info.search.exception.UnknownJobException;
+import info.search.exception.UploadingDocumentException;
+import info.search.mapper.IngestionJobMapper;
+import info.search.model.Doc;
+import info.search.model.IngestionJob;
+import info.search.model.Paragraph;
+import info.search.parser.DocumentHandler;
+import info.search.parser.DocumentParser;
+import info.search.parser.DocumentParsers;
+import info.search.repository.ChunkRepository;
+import info.search.repository.DocBatchRepository;
+import info.search.repository.DocContentRepository;
+import info.search.repository.DocRepository;
+import info.search.repository.VectorSearchRepository;
+import info.search.vectorstore.HnswVectorStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Staged upload pipeline: parse and split on the parse pool, then embed
+ * chunk batches through {@link EmbeddingExecutor} and persist them in order.
+ * The HTTP thread only spools the upload to a temp file and registers the job.
+ * A re-upload of an existing document goes through {@link ChunkDiff}, so only
+ * chunks with new text are embedded.
+ */
+@Slf4j
+@Service
+public class IngestionServiceImpl implements IngestionService {
+    private final Map<UUID, IngestionJob> jobs = new ConcurrentHashMap<>();
+    private final Set<Long> updating = ConcurrentHashMap.newKeySet();
+
+    private final DocRepository repo;
+    private final ChunkRepository chunkRepo;
+    private final DocBatchRepository docBatchRepo;
+    private final DocContentRepository docContentRepo;
+    private final DocService docService;
+    private final SectionChunker chunker;
+    private final VectorStore vectorStore;
+    private final VectorSearchRepository vectorSearchRepo;
+    private final IngestionJobMapper jobMapper;
+    private final IngestionProperties props;
+    private final EmbeddingProperties embeddingProps;
+    private final DocumentParsers parsers;
+    private final EmbeddingExecutor embeddingExecutor;
+    private final SearchResultCache searchCache;
+    private final StageTimers stages;
+    private final ThreadPoolTaskExecutor parseExecutor;
+    private final TransactionTemplate transactions;
+
+    public IngestionServiceImpl(DocRepository repo,
+                                ChunkRepository chunkRepo,
+                                DocBatchRepository docBatchRepo,
+                                DocContentRepository docContentRepo,
+                                DocService docService,
+                                SectionChunker chunker,
+                                VectorStore vectorStore,
+                                VectorSearchRepository vectorSearchRepo,
+                                IngestionJobMapper jobMapper,
+                                IngestionProperties props,
+                                EmbeddingProperties embeddingProps,
+                                DocumentParsers parsers,
+                                EmbeddingExecutor embeddingExecutor,
+                                SearchResultCache searchCache,
+                                StageTimers stages,
+                                MeterRegistry registry,
+                                PlatformTransactionManager transactionManager,
+                                @Qualifier("parseExecutor") ThreadPoolTaskExecutor parseExecutor) {
+        this.repo = repo;
+        this.chunkRepo = chunkRepo;
+        this.docBatchRepo = docBatchRepo;
+        this.docContentRepo = docContentRepo;
+        this.docService = docService;
+        this.chunker = chunker;
+        this.vectorStore = vectorStore;
+        this.vectorSearchRepo = vectorSearchRepo;
+        this.jobMapper = jobMapper;
+        this.props = props;
+        this.embeddingProps = embeddingProps;
+        this.parsers = parsers;
+        this.embeddingExecutor = embeddingExecutor;
+        this.searchCache = searchCache;
+        this.stages = stages;
+        this.parseExecutor = parseExecutor;
+        this.transactions = new TransactionTemplate(transactionManager);
+        Gauge.builder("ingestion.jobs.active", jobs, js -> activeJobs(js).count())
+                .description("Uploads queued, parsing or embedding")
+                .register(registry);
+        Gauge.builder("ingestion.chunks.pending", jobs, js -> activeJobs(js)
+                        .mapToInt(j -> j.getChunksTotal() - j.getChunksEmbedded())
+                        .sum())
+                .description("Chunks of running uploads not embedded yet")
+                .register(registry);
+    }
+
+    @Override
+    public IngestionJobDto submit(MultipartFile file) {
+        return enqueue(file, null, this::parse);
+    }
+
+    @Override
+    public IngestionJobDto update(Long docId, MultipartFile file) {
+        if (!repo.existsById(docId)) {
+            throw new UnknownDocumentException("Document with id " + docId + " not found");
+        }
+        if (!updating.add(docId)) {
+            throw new DocumentBusyException("Document with id " + docId + " is already being updated");
+        }
+        try {
+            return enqueue(file, docId, this::reindex);
+        } catch (RuntimeException e) {
+            updating.remove(docId);
+            throw e;
+        }
+    }
+
+    // the format is detected here, so an unsupported file is refused before it is queued
+    private IngestionJobDto enqueue(MultipartFile file, Long docId, Stage stage) {
+        pruneFinishedJobs();
+        IngestionJob job = new IngestionJob(file.getOriginalFilename());
+        job.setDocId(docId);
+        Path spooled;
+        byte[] head;
+        try {
+            spooled = Files.createTempFile("upload-", ".upload");
+            file.transferTo(spooled);
+            try (InputStream in = Files.newInputStream(spooled)) {
+                head = in.readNBytes(DocumentParsers.HEAD_SIZE);
+            }
+        } catch (IOException e) {
+            throw new UploadingDocumentException(
+                    "Error while uploading document: " + file.getOriginalFilename(), e);
+        }
+        DocumentParser parser;
+        try {
+            parser = parsers.detect(file.getContentType(), file.getOriginalFilename(), head);
+        } catch (RuntimeException e) {
+            deleteQuietly(spooled);
+            throw e;
+        }
+        jobs.put(job.getId(), job);
+        try {
+            parseExecutor.execute(() -> stage.run(job, spooled, parser));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            deleteQuietly(spooled);
+            throw new IngestionRejectedException(
+                    "Ingestion queue is full, retry later: " + file.getOriginalFilename(), e);
+        }
+        return jobMapper.toDto(job);
+    }
+
+    @Override
+    public IngestionJobDto getJob(UUID id) {
+        IngestionJob job = jobs.get(id);
+        if (job == null) {
+            throw new UnknownJobException("Ingestion job with id " + id + " not found");
+        }
+        return jobMapper.toDto(job);
+    }
+
+    // parsing, splitting and embedding overlap, only the chunk being filled and the queued batches are held
+    private void parse(IngestionJob job, Path spooled, DocumentParser parser) {
+        job.setStatus(IngestionJob.Status.PARSING);
+        Upload upload = new Upload(job);
+        try {
+            upload.read(parser, spooled);
+        } catch (Exception e) {
+            log.warn("Parsing {} failed", job.getFileName(), e);
+            job.fail("Error while parsing document: " + e.getMessage());
+            upload.discard();
+            return;
+        } finally {
+            deleteQuietly(spooled);
+        }
+
+        job.setStatus(IngestionJob.Status.EMBEDDING);
+        CompletableFuture.allOf(upload.embedded.toArray(CompletableFuture[]::new))
+                .whenComplete((ignored, ex) -> finish(job, upload.vectorIds, ex));
+    }
+
+    private void persist(IngestionJob job, List<Document> batch) {
+        stages.ingestion("persist").record(() -> docBatchRepo.insertChunks(batch));
+        job.getEmbedded().addAndGet(batch.size());
+    }
+
+    // a failed job rolls back the batches that were already stored
+    private void finish(IngestionJob job, List<String> vectorIds, Throwable ex) {
+        if (ex == null) {
+            searchCache.invalidate();
+            job.complete();
+            return;
+        }
+        log.warn("Embedding {} failed", job.getFileName(), ex);
+        job.fail("Vector store failed: " + ex.getMessage());
+        try {
+            // stored batches that never reached the chunk table
+            docService.deleteChunks(vectorIds);
+            docService.deleteById(job.getDocId());
+        } catch (Exception e) {
+            log.warn("Cleanup of document {} failed", job.getDocId(), e);
+        }
+    }
+
+    private void reindex(IngestionJob job, Path spooled, DocumentParser parser) {
+        job.setStatus(IngestionJob.Status.PARSING);
+        Doc doc;
+        ChunkDiff diff;
+        try {
+            doc = stages.ingestion("parse").recordCallable(() -> DocumentParsers.collect(parser, spooled));
+            doc.setId(job.getDocId());
+            doc.setTitle(DocumentParsers.titleOf(doc.getTitle(), job.getFileName()));
+            doc.setFileName(job.getFileName());
+            doc.setContentHash(ContentHash.ofBody(doc.getContent()));
+            Doc current = repo.findById(doc.getId()).orElseThrow(() -> new UnknownDocumentException(
+                    "Document with id " + doc.getId() + " not found"));
+            boolean retitled = !Objects.equals(current.getTitle(), doc.getTitle())
+                    || !Objects.equals(current.getAuthor(), doc.getAuthor());
+            List<Document> chunks = stages.ingestion("split").record(() -> Chunks.of(doc, Chunks.split(chunker, doc)));
+            diff = ChunkDiff.of(chunkRepo.findByDocId(doc.getId()), chunks, retitled);
+        } catch (Exception e) {
+            log.warn("Parsing {} failed", job.getFileName(), e);
+            job.fail("Error while parsing document: " + e.getMessage());
+            updating.remove(job.getDocId());
+            return;
+        } finally {
+            deleteQuietly(spooled);
+        }
+        log.debug("Document {}: {} chunks unchanged, {} moved, {} shifted, {} new, {} orphaned", doc.getId(),
+                diff.unchanged(), diff.moved().size(), diff.shifted().size(), diff.added().size(),
+                diff.orphaned().size());
+
+        job.setChunksTotal(diff.added().size());
+        job.setChunksReused(diff.unchanged() + diff.moved().size() + diff.shifted().size());
+        job.setStatus(IngestionJob.Status.EMBEDDING);
+        try {
+            // the chunk rows of new chunks are written with the rest of the new version
+            embeddingExecutor.embed(diff.added(), batch -> job.getEmbedded().addAndGet(batch.size()))
+                    .whenComplete((ignored, ex) -> finishUpdate(job, doc, diff, ex));
+        } catch (RuntimeException e) {
+            finishUpdate(job, doc, diff, e);
+        }
+    }
+
+    /**
+     * New vectors are in place, swap the new version in. Metadata, body and
+     * chunk rows change in one transaction, so searches see chunk offsets
+     * that match the body they are cut from, old or new; the vectors of
+     * orphaned chunks go after the commit. On failure only the new vectors
+     * are removed and the previous version stays as it was.
+     */
+    private void finishUpdate(IngestionJob job, Doc doc, ChunkDiff diff, Throwable ex) {
+        try {
+            if (ex == null) {
+                try {
+                    Timer.Sample persisting = Timer.start();
+                    transactions.executeWithoutResult(status -> {
+                        if (repo.updateMetadata(doc) == 0) {
+                            throw new UnknownDocumentException("Document with id " + doc.getId() + " was deleted");
+                        }
+                        docContentRepo.update(doc.getId(), doc.getContent());
+                        docBatchRepo.insertChunks(diff.added());
+                        if (!diff.moved().isEmpty()) {
+                            if (!(vectorStore instanceof HnswVectorStore)) {
+                                vectorSearchRepo.updateMetadata(diff.moved());
+                            }
+                            docBatchRepo.updateChunks(diff.moved());
+                        }
+                        // the vector rows carry no offsets, only the chunk rows follow the edit
+                        docBatchRepo.updateChunks(diff.shifted());
+                        docBatchRepo.deleteChunks(diff.orphaned());
+                    });
+                    // a conflict on the unique hash would abort the swap, it is claimed after
+                    claimContentHash(doc);
+                    // the in-process index is not part of the transaction
+                    if (vectorStore instanceof HnswVectorStore hnsw && !diff.moved().isEmpty()) {
+                        hnsw.updateMetadata(diff.moved());
+                    }
+                    try {
+                        docService.deleteChunks(diff.orphaned());
+                    } catch (RuntimeException e) {
+                        log.warn("Removing {} orphaned vectors of document {} failed", diff.orphaned().size(),
+                                doc.getId(), e);
+                    }
+                    persisting.stop(stages.ingestion("persist"));
+                    searchCache.invalidate();
+                    job.complete();
+                    return;
+                } catch (RuntimeException e) {
+                    ex = e;
+                }
+            }
+            log.warn("Updating document {} from {} failed", doc.getId(), job.getFileName(), ex);
+            job.fail("Vector store failed: " + ex.getMessage());
+            try {
+                docService.deleteChunks(diff.added().stream().map(Document::getId).toList());
+                searchCache.invalidate();
+            } catch (Exception e) {
+                log.warn("Cleanup of document {} update failed", doc.getId(), e);
+            }
+        } finally {
+            updating.remove(doc.getId());
+        }
+    }
+
+    private void claimContentHash(Doc doc) {
+        if (!docBatchRepo.claimContentHash(doc.getId(), doc.getContentHash())) {
+            log.info("Document {} has the same content as another one, it is left out of deduplication",
+                    doc.getId());
+        }
+    }
+
+    /**
+     * One upload streamed from its parser: the document row is written once
+     * the metadata is known, body text is stored block by block while its
+     * hash is computed, and chunks are handed to the embedding pool a batch
+     * at a time, blocking the parser while the pool is busy. The body written
+     * so far is flushed before each batch, so no chunk is searchable before
+     * the text it is cut from.
+     */
+    private final class Upload implements DocumentHandler {
+        private final IngestionJob job;
+        private final SectionChunker.Splitter splitter = chunker.splitter(this::chunk);
+        private final ContentHash.Body hash = ContentHash.body();
+        private final List<Document> pending = new ArrayList<>();
+        private final List<String> vectorIds = new ArrayList<>();
+        private final List<CompletableFuture<Void>> embedded = new ArrayList<>();
+        private DocContentRepository.BodyWriter body;
+        private Doc doc;
+        private boolean written;
+        private int chunkIndex;
+        private long splitNanos;
+        private long submitNanos;
+
+        Upload(IngestionJob job) {
+            this.job = job;
+        }
+
+        void read(DocumentParser parser, Path file) throws Exception {
+            long start = System.nanoTime();
+            parser.parse(file, this);
+            if (doc == null) {
+                metadata(null, null);
+            }
+            splitNanos += time(splitter::finish);
+            submit();
+            // submits happen inside the splitter's callback and count as neither stage
+            stages.ingestion("parse").record(System.nanoTime() - start - splitNanos, TimeUnit.NANOSECONDS);
+            stages.ingestion("split").record(splitNanos - submitNanos, TimeUnit.NANOSECONDS);
+
+            doc.setContentHash(hash.hex());
+            Timer.Sample persisting = Timer.start();
+            body.close();
+            repo.updateMetadata(doc);
+            claimContentHash(doc);
+            persisting.stop(stages.ingestion("persist"));
+        }
+
+        @Override
+        public void metadata(String title, String author) {
+            Doc created = new Doc();
+            created.setFileName(job.getFileName());
+            created.setTitle(DocumentParsers.titleOf(title, job.getFileName()));
+            created.setAuthor(author == null ? "" : author);
+            doc = stages.ingestion("persist").record(() -> repo.save(created));
+            job.setDocId(doc.getId());
+            body = docContentRepo.writer(doc.getId());
+        }
+
+        @Override
+        public void paragraph(Paragraph paragraph) {
+            try {
+                if (written) {
+                    body.write(SectionChunker.PARAGRAPH_SEPARATOR);
+                    hash.write(SectionChunker.PARAGRAPH_SEPARATOR);
+                }
+                body.write(paragraph.text());
+                hash.write(paragraph.text());
+                written = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            splitNanos += time(() -> splitter.add(paragraph));
+        }
+
+        private void chunk(SectionChunker.Chunk chunk) {
+            Document document = Chunks.of(doc, chunk, chunkIndex++);
+            pending.add(document);
+            vectorIds.add(document.getId());
+            job.setChunksTotal(chunkIndex);
+            if (pending.size() >= Math.max(1, embeddingProps.getBatchSize())) {
+                submitNanos += time(this::submit);
+            }
+        }
+
+        private void submit() {
+            // stop reading once a batch failed for good, the job fails anyway
+            embedded.stream().filter(CompletableFuture::isCompletedExceptionally).findFirst().ifPresent(f -> {
+                throw new IllegalStateException("Embedding failed", f.handle((v, ex) -> ex).join());
+            });
+            if (!pending.isEmpty()) {
+                body.flush();
+                embedded.add(embeddingExecutor.embed(List.copyOf(pending), batch -> persist(job, batch)));
+                pending.clear();
+            }
+        }
+
+        // waits for submitted batches, then removes whatever they stored
+        void discard() {
+            CompletableFuture.allOf(embedded.toArray(CompletableFuture[]::new))
+                    .handle((ignored, ex) -> null)
+                    .join();
+            if (job.getDocId() != null) {
+                docService.deleteChunks(vectorIds);
+                docService.deleteById(job.getDocId());
+            }
+        }
+    }
+
+    private static long time(Runnable work) {
+        long start = System.nanoTime();
+        work.run();
+        return System.nanoTime() - start;
+    }
+
+    private interface Stage {
+        void run(IngestionJob job, Path spooled, DocumentParser parser);
+    }
+
+    private static Stream<IngestionJob> activeJobs(Map<UUID, IngestionJob> jobs) {
+        return jobs.values().stream().filter(job -> !job.isFinished());
+    }
+
+    private void pruneFinishedJobs() {
+        Instant cutoff = Instant.now().minus(props.getJobRetention());
+        jobs.values().removeIf(job -> job.isFinished()
+                && job.getFinishedAt() != null
+                && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // temp dir cleanup will take it
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package info.search.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import info.search.model.VectorHit;
+
+/**
+ * Reciprocal-rank fusion: every ranking adds {@code 1 / (k + rank)} to the
+ * score of each chunk it contains, so chunks ranked well by several
+ * retrievers float to the top without comparing their raw scores.
+ */
+public final class RankFusion {
+
+    private RankFusion() {
+    }
+
+    /**
+     * Fuses the rankings, best first. When a chunk occurs in several
+     * rankings the hit from the earliest ranking is kept.
+     */
+    public static List<VectorHit> fuse(List<List<VectorHit>> rankings, int k) {
+        Map<String, VectorHit> hits = new LinkedHashMap<>();
+        Map<String, Double> scores = new HashMap<>();
+        for (List<VectorHit> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                VectorHit hit = ranking.get(rank);
+                hits.putIfAbsent(hit.vectorId(), hit);
+                scores.merge(hit.vectorId(), 1.0 / (k + rank + 1), Double::sum);
+            }
+        }
+        List<VectorHit> fused = new ArrayList<>(hits.values());
+        // stable sort, ties keep first-seen order
+        fused.sort(Comparator.comparingDouble((VectorHit hit) -> scores.get(hit.vectorId())).reversed());
+        return fused;
+    }
+}
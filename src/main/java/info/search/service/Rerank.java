@@ -0,0 +1,9 @@
+package info.search.service;
+
+/**
+ * Reranking asked for by one search; unset values fall back to
+ * {@code search.rerank.*}, and {@code candidates} of 0 skips the rerank.
+ */
+public record Rerank(Integer candidates, Long budgetMs) {
+    public static final Rerank DEFAULT = new Rerank(null, null);
+}
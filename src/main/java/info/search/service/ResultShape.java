@@ -0,0 +1,64 @@
+package info.search.service;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import info.search.dto.ResultField;
+import info.search.dto.SearchResultDto;
+
+/**
+ * What a search response carries per hit: the selected fields, and a
+ * snippet window with highlights instead of the whole chunk when
+ * {@code snippetLength} is set. Applied to copies, cached rankings stay whole.
+ */
+public record ResultShape(Integer snippetLength, Set<ResultField> fields) {
+    private static final Set<ResultField> DEFAULT_FIELDS = EnumSet.of(
+            ResultField.DOC_ID, ResultField.TITLE, ResultField.AUTHOR, ResultField.FRAGMENT);
+
+    // after DEFAULT_FIELDS, as static fields are initialised in declaration order
+    public static final ResultShape DEFAULT = new ResultShape(null, null);
+
+    public ResultShape {
+        fields = fields == null || fields.isEmpty() ? DEFAULT_FIELDS : EnumSet.copyOf(fields);
+        snippetLength = snippetLength == null || snippetLength <= 0 ? null : snippetLength;
+    }
+
+    public List<SearchResultDto> apply(List<SearchResultDto> results, String query) {
+        return results.stream().map(r -> apply(r, query)).toList();
+    }
+
+    private SearchResultDto apply(SearchResultDto full, String query) {
+        SearchResultDto shaped = new SearchResultDto();
+        if (fields.contains(ResultField.DOC_ID)) {
+            shaped.setDocId(full.getDocId());
+        }
+        if (fields.contains(ResultField.TITLE)) {
+            shaped.setTitle(full.getTitle());
+        }
+        if (fields.contains(ResultField.AUTHOR)) {
+            shaped.setAuthor(full.getAuthor());
+        }
+        if (fields.contains(ResultField.SCORE)) {
+            shaped.setScore(full.getScore());
+        }
+        if (fields.contains(ResultField.VECTOR_ID)) {
+            shaped.setVectorId(full.getVectorId());
+        }
+        if (fields.contains(ResultField.CHUNK_INDEX)) {
+            shaped.setChunkIndex(full.getChunkIndex());
+        }
+        if (fields.contains(ResultField.RERANK_SCORE)) {
+            shaped.setRerankScore(full.getRerankScore());
+        }
+        if (fields.contains(ResultField.FRAGMENT) && full.getFragment() != null) {
+            if (snippetLength == null) {
+                shaped.setFragment(full.getFragment());
+            } else {
+                Snippets.Snippet snippet = Snippets.of(full.getFragment(), query, snippetLength);
+                shaped.setFragment(snippet.text());
+                shaped.setHighlights(snippet.highlights());
+            }
+        }
+        return shaped;
+    }
+}
@@ -0,0 +1,31 @@
+package info.search.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import info.search.exception.InvalidCursorException;
+
+/**
+ * Keyset position of a cursor search: distance and vector id of the last
+ * returned hit, encoded as an opaque URL-safe token.
+ */
+public record SearchCursor(double distance, String vectorId) {
+
+    public String encode() {
+        String raw = distance + ":" + vectorId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int colon = raw.indexOf(':');
+            double distance = Double.parseDouble(raw.substring(0, colon));
+            String vectorId = UUID.fromString(raw.substring(colon + 1)).toString();
+            return new SearchCursor(distance, vectorId);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Malformed search cursor: " + token);
+        }
+    }
+}
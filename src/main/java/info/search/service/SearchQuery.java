@@ -0,0 +1,11 @@
+package info.search.service;
+
+import info.search.dto.SearchMode;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * One search of a batch, the arguments of {@link DocService#search}.
+ */
+public record SearchQuery(String query, Long docId, SearchMode mode, ResultShape shape, Rerank rerank,
+                          Pageable pageable) {
+}
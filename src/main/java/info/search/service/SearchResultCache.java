@@ -0,0 +1,123 @@
+package info.search.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+import info.search.config.SearchProperties;
+import info.search.dto.SearchMode;
+import info.search.dto.SearchResultDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Caches ranked search results per (normalized query, docId, mode, threshold), so
+ * later pages are slices of one similarity search. Every corpus change bumps
+ * a generation counter; rankings computed under an older generation are
+ * neither served nor stored.
+ */
+@Component
+public class SearchResultCache {
+    private final SearchProperties.Cache props;
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<Key, Entry> entries;
+    private final Counter hits;
+    private final Counter misses;
+
+    public SearchResultCache(SearchProperties props, MeterRegistry registry) {
+        this.props = props.getCache();
+        int maxEntries = this.props.getMaxEntries();
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        this.hits = Counter.builder("search.cache.requests").tag("result", "hit").register(registry);
+        this.misses = Counter.builder("search.cache.requests").tag("result", "miss").register(registry);
+    }
+
+    /**
+     * Returns at least {@code needed} ranked results when that many exist.
+     * {@code search} is called with the depth to fetch on a miss.
+     */
+    public Ranking get(String query, Long docId, SearchMode mode, double threshold, int needed,
+                       IntFunction<List<SearchResultDto>> search) {
+        if (!props.isEnabled()) {
+            List<SearchResultDto> results = search.apply(needed);
+            return new Ranking(results, results.size() < needed);
+        }
+        Key key = new Key(normalize(query), docId, mode, threshold);
+        long current = generation.get();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.generation() == current
+                && (entry.ranking().exhausted() || entry.ranking().results().size() >= needed)) {
+            hits.increment();
+            return entry.ranking();
+        }
+        misses.increment();
+        int depth = Math.max(props.getDepth(), needed);
+        List<SearchResultDto> results = search.apply(depth);
+        Ranking ranking = new Ranking(results, results.size() < depth);
+        if (generation.get() == current) {
+            entries.put(key, new Entry(current, ranking));
+        }
+        return ranking;
+    }
+
+    /**
+     * Whether {@link #get} would answer from the cache without searching.
+     */
+    public boolean covers(String query, Long docId, SearchMode mode, double threshold, int needed) {
+        if (!props.isEnabled()) {
+            return false;
+        }
+        Entry entry = entries.get(new Key(normalize(query), docId, mode, threshold));
+        return entry != null && entry.generation() == generation.get()
+                && (entry.ranking().exhausted() || entry.ranking().results().size() >= needed);
+    }
+
+    /**
+     * Drops every cached ranking once the current transaction commits,
+     * or right away when there is none.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bump();
+                }
+            });
+        } else {
+            bump();
+        }
+    }
+
+    private void bump() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    private static String normalize(String query) {
+        return query.strip().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Ranked results of one query; {@code exhausted} means no further
+     * result passes the threshold.
+     */
+    public record Ranking(List<SearchResultDto> results, boolean exhausted) {
+    }
+
+    private record Key(String query, Long docId, SearchMode mode, double threshold) {
+    }
+
+    private record Entry(long generation, Ranking ranking) {
+    }
+}
@@ -0,0 +1,30 @@
+package info.search.service;
+
+import java.io.IOException;
+import info.search.dto.SearchResultDto;
+
+/**
+ * A checked search that has not run yet. Written to a {@link Sink}, it hands
+ * over the results of its page one at a time, in rank order, as each is
+ * final; a sink that fails to write ends the search there, and a search
+ * that fails itself ends with an error event.
+ */
+@FunctionalInterface
+public interface SearchStream {
+
+    void writeTo(Sink sink) throws IOException;
+
+    interface Sink {
+
+        /** Sent before a slow stage, so a client that has gone away is noticed before the work is done. */
+        void keepAlive() throws IOException;
+
+        void result(SearchResultDto result) throws IOException;
+
+        /** Sent last, with the same paging totals as a buffered search. */
+        void end(long totalElements, boolean hasNext) throws IOException;
+
+        /** Sent last instead of {@link #end} when the search fails after the response has started. */
+        void error(String message) throws IOException;
+    }
+}
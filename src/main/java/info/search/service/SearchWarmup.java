@@ -0,0 +1,104 @@
+package info.search.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import info.search.config.EmbeddingProperties;
+import info.search.config.SearchProperties;
+import info.search.config.VectorStoreProperties;
+import info.search.model.VectorHit;
+import info.search.repository.DocContentRepository;
+import info.search.repository.VectorSearchRepository;
+import info.search.vectorstore.HnswVectorStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformers.TransformersEmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the embedding model, the retrievers and the cross-encoder a few
+ * times before the first request, so that request does not pay for the
+ * first onnxruntime runs, JIT compilation and cold index pages. Goes below
+ * the embedding and result caches and the stage timers: nothing the
+ * warm-up computes is cached, and its latencies stay out of the histograms.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SearchWarmup {
+    private static final int TOP_K = 10;
+
+    private final TransformersEmbeddingModel model;
+    private final VectorSearchRepository vectorSearchRepo;
+    private final DocContentRepository docContentRepo;
+    private final VectorStore vectorStore;
+    private final SearchProperties searchProps;
+    private final EmbeddingProperties embeddingProps;
+    private final VectorStoreProperties vectorStoreProps;
+    private final ObjectProvider<CrossEncoderReranker> reranker;
+
+    public void run() {
+        SearchProperties.Warmup props = searchProps.getWarmup();
+        List<String> queries = props.getQueries();
+        if (queries.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        // ingestion embeds batches of this size, a search embeds one query
+        List<String> batch = IntStream.range(0, Math.max(1, embeddingProps.getBatchSize()))
+                .mapToObj(i -> queries.get(i % queries.size()))
+                .toList();
+        try {
+            for (int round = 0; round < props.getRounds(); round++) {
+                model.embed(batch);
+                for (String query : queries) {
+                    search(query, queries);
+                }
+            }
+            log.info("Warm-up of {} queries, {} rounds, took {} ms", queries.size(), props.getRounds(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            // an empty or unreachable store must not keep the application from starting
+            log.warn("Warm-up stopped early", e);
+        }
+    }
+
+    private void search(String query, List<String> queries) {
+        double threshold = searchProps.getSimilarityThreshold();
+        List<String> texts;
+        if (vectorStoreProps.getBackend() == VectorStoreProperties.Backend.PGVECTOR) {
+            float[] embedding = model.embed(query);
+            List<VectorHit> hits = vectorSearchRepo.findNearest(embedding, null, threshold, null, null, TOP_K);
+            vectorSearchRepo.findLexical(query, null, TOP_K);
+            Map<String, String> fragments = docContentRepo.readChunks(hits.stream()
+                    .map(VectorHit::vectorId)
+                    .toList());
+            texts = hits.stream()
+                    .map(hit -> fragments.getOrDefault(hit.vectorId(), hit.content()))
+                    .filter(Objects::nonNull)
+                    .toList();
+        } else if (vectorStore instanceof HnswVectorStore hnsw) {
+            // embedded here, the store itself would go through the cached model
+            texts = hnsw.similaritySearch(model.embed(query), SearchRequest.builder()
+                            .query(query)
+                            .topK(TOP_K)
+                            .similarityThreshold(threshold)
+                            .build())
+                    .stream()
+                    .map(Document::getText)
+                    .toList();
+        } else {
+            texts = List.of();
+        }
+        CrossEncoderReranker encoder = reranker.getIfAvailable();
+        if (encoder != null) {
+            encoder.score(query, texts.isEmpty() ? queries : texts, searchProps.getRerank().getMaxBudget());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package info.search.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.knuddels.jtokkit.api.IntArrayList;
+import info.search.config.IngestionProperties;
+import info.search.model.Paragraph;
+
+/**
+ * Packs parsed paragraphs into chunks of up to {@code maxTokens}, counted
+ * with the same cl100k encoding as {@code TokenTextSplitter}. A chunk ends
+ * at a section boundary once it holds {@code minTokens}, so chapters are not
+ * mixed while runs of tiny sections still share a chunk. Paragraphs longer
+ * than the budget are cut into token windows.
+ * <p>
+ * Offsets are counted in the body the paragraphs make when joined by
+ * {@link #PARAGRAPH_SEPARATOR}: a chunk of whole consecutive paragraphs, or
+ * of one window, is a slice of that body and records where it starts.
+ */
+public class SectionChunker {
+    /** Separator of paragraphs in a stored body, the one chunks join them with. */
+    public static final String PARAGRAPH_SEPARATOR = "\n";
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final int minTokens;
+
+    public SectionChunker(IngestionProperties.Chunking props) {
+        this.maxTokens = Math.max(1, props.getMaxTokens());
+        this.overlapTokens = Math.clamp(props.getOverlapTokens(), 0, maxTokens - 1);
+        this.minTokens = Math.clamp(props.getMinTokens(), 0, maxTokens);
+    }
+
+    public List<Chunk> split(List<Paragraph> paragraphs) {
+        List<Chunk> chunks = new ArrayList<>();
+        Splitter splitter = splitter(chunks::add);
+        paragraphs.forEach(splitter::add);
+        splitter.finish();
+        return chunks;
+    }
+
+    /**
+     * Incremental form of {@link #split}: paragraphs are added one at a time
+     * and each chunk goes to {@code sink} as soon as it is complete, so only
+     * the chunk being filled is held.
+     */
+    public Splitter splitter(Consumer<Chunk> sink) {
+        return new Splitter(sink);
+    }
+
+    /** Chunking state of one document, not thread-safe. */
+    public final class Splitter {
+        private final Consumer<Chunk> sink;
+        private List<Piece> current = new ArrayList<>();
+        private int tokens;
+        private int bodyOffset;
+
+        private Splitter(Consumer<Chunk> sink) {
+            this.sink = sink;
+        }
+
+        public void add(Paragraph paragraph) {
+            int offset = bodyOffset;
+            bodyOffset += paragraph.text().length() + PARAGRAPH_SEPARATOR.length();
+            for (Piece piece : pieces(paragraph, offset)) {
+                if (!current.isEmpty()) {
+                    boolean newSection = current.getLast().paragraph().sectionOrdinal()
+                            != paragraph.sectionOrdinal();
+                    if (tokens + piece.tokens() > maxTokens || newSection && tokens >= minTokens) {
+                        sink.accept(toChunk(current));
+                        current = newSection ? new ArrayList<>() : overlap(current);
+                        tokens = current.stream().mapToInt(Piece::tokens).sum();
+                        while (!current.isEmpty() && tokens + piece.tokens() > maxTokens) {
+                            tokens -= current.removeFirst().tokens();
+                        }
+                    }
+                }
+                current.add(piece);
+                tokens += piece.tokens();
+            }
+        }
+
+        /** Emits the last, partly filled chunk. */
+        public void finish() {
+            if (!current.isEmpty()) {
+                sink.accept(toChunk(current));
+                current = new ArrayList<>();
+                tokens = 0;
+            }
+        }
+    }
+
+    private List<Piece> pieces(Paragraph paragraph, int offset) {
+        String text = paragraph.text();
+        IntArrayList encoded = encoding.encode(text);
+        if (encoded.size() <= maxTokens) {
+            return List.of(new Piece(paragraph, text, encoded.size(), offset));
+        }
+        int[] ends = tokenEnds(text, encoded);
+        List<Piece> pieces = new ArrayList<>();
+        int step = maxTokens - overlapTokens;
+        for (int from = 0; from < encoded.size(); from += step) {
+            int to = Math.min(encoded.size(), from + maxTokens);
+            int start = from == 0 ? 0 : ends[from - 1];
+            int end = ends[to - 1];
+            while (start < end && Character.isWhitespace(text.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+                end--;
+            }
+            pieces.add(new Piece(paragraph, text.substring(start, end), to - from, offset + start));
+            if (to == encoded.size()) {
+                break;
+            }
+        }
+        return pieces;
+    }
+
+    // character position after each token; a token ending inside a multi-byte character ends after it
+    private int[] tokenEnds(String text, IntArrayList encoded) {
+        int[] ends = new int[encoded.size()];
+        int bytes = 0;
+        int chars = 0;
+        int charBytes = 0;
+        for (int i = 0; i < encoded.size(); i++) {
+            IntArrayList token = new IntArrayList(1);
+            token.add(encoded.get(i));
+            bytes += encoding.decodeBytes(token).length;
+            while (charBytes < bytes && chars < text.length()) {
+                int codePoint = text.codePointAt(chars);
+                charBytes += utf8Length(codePoint);
+                chars += Character.charCount(codePoint);
+            }
+            ends[i] = chars;
+        }
+        return ends;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+        if (codePoint < 0x800) {
+            return 2;
+        }
+        return codePoint < 0x10000 ? 3 : 4;
+    }
+
+    // trailing pieces of the finished chunk that fit the overlap, never all of them
+    private List<Piece> overlap(List<Piece> finished) {
+        List<Piece> tail = new ArrayList<>();
+        int tokens = 0;
+        for (int i = finished.size() - 1; i > 0; i--) {
+            Piece piece = finished.get(i);
+            if (tokens + piece.tokens() > overlapTokens) {
+                break;
+            }
+            tail.addFirst(piece);
+            tokens += piece.tokens();
+        }
+        return tail;
+    }
+
+    private static Chunk toChunk(List<Piece> pieces) {
+        Paragraph first = pieces.getFirst().paragraph();
+        List<String> texts = pieces.stream().map(Piece::text).toList();
+        // pieces are consecutive in the body unless a window was trimmed at the paragraph end
+        boolean slice = true;
+        for (int i = 1; i < pieces.size(); i++) {
+            Piece previous = pieces.get(i - 1);
+            slice &= pieces.get(i).offset()
+                    == previous.offset() + previous.text().length() + PARAGRAPH_SEPARATOR.length();
+        }
+        return new Chunk(String.join(PARAGRAPH_SEPARATOR, texts), first.sectionTitle(), first.sectionOrdinal(),
+                slice ? pieces.getFirst().offset() : -1);
+    }
+
+    /**
+     * Text of one chunk and the section it starts in.
+     *
+     * @param offset where the text starts in the body, -1 when it is not a slice of it
+     */
+    public record Chunk(String text, String sectionTitle, int sectionOrdinal, int offset) {
+    }
+
+    private record Piece(Paragraph paragraph, String text, int tokens, int offset) {
+    }
+}
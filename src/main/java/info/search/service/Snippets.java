@@ -0,0 +1,101 @@
+package info.search.service;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cuts a window of a chunk around the sentence sharing the most words with
+ * the query, and marks the query words inside it. Offsets are in UTF-16
+ * units, as JavaScript strings count them.
+ */
+public final class Snippets {
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+
+    private Snippets() {
+    }
+
+    public static Snippet of(String text, String query, int length) {
+        Set<String> terms = terms(query);
+        int start = 0;
+        int end = text.length();
+        if (text.length() > length) {
+            int[] best = bestSentence(text, terms);
+            int centre = (best[0] + best[1]) / 2;
+            start = Math.max(0, Math.min(centre - length / 2, text.length() - length));
+            end = start + length;
+            // whole words only, unless a single word fills the window
+            int wordStart = start;
+            int wordEnd = end;
+            while (wordStart > 0 && wordStart < wordEnd && !Character.isWhitespace(text.charAt(wordStart - 1))) {
+                wordStart++;
+            }
+            while (wordEnd < text.length() && wordEnd > wordStart && !Character.isWhitespace(text.charAt(wordEnd))) {
+                wordEnd--;
+            }
+            if (wordStart < wordEnd) {
+                start = wordStart;
+                end = wordEnd;
+            }
+            // a cut inside a word leaves no half of a surrogate pair
+            if (Character.isLowSurrogate(text.charAt(start))) {
+                start++;
+            }
+            if (end < text.length() && Character.isLowSurrogate(text.charAt(end))) {
+                end--;
+            }
+        }
+        String window = text.substring(start, end).strip();
+        List<int[]> highlights = new ArrayList<>();
+        Matcher m = WORD.matcher(window);
+        while (m.find()) {
+            if (terms.contains(m.group().toLowerCase(Locale.ROOT))) {
+                highlights.add(new int[]{m.start(), m.end()});
+            }
+        }
+        return new Snippet(window, highlights);
+    }
+
+    // most distinct query words first, then most occurrences; the first sentence on a tie
+    private static int[] bestSentence(String text, Set<String> terms) {
+        BreakIterator sentences = BreakIterator.getSentenceInstance(Locale.ROOT);
+        sentences.setText(text);
+        int[] best = {0, Math.min(text.length(), 1)};
+        long bestScore = -1;
+        for (int s = sentences.first(), e = sentences.next(); e != BreakIterator.DONE; s = e, e = sentences.next()) {
+            Set<String> distinct = new HashSet<>();
+            int total = 0;
+            Matcher m = WORD.matcher(text).region(s, e);
+            while (m.find()) {
+                String word = m.group().toLowerCase(Locale.ROOT);
+                if (terms.contains(word)) {
+                    distinct.add(word);
+                    total++;
+                }
+            }
+            long score = (long) distinct.size() << 32 | total;
+            if (score > bestScore) {
+                bestScore = score;
+                best = new int[]{s, e};
+            }
+        }
+        return best;
+    }
+
+    private static Set<String> terms(String query) {
+        Set<String> terms = new HashSet<>();
+        Matcher m = WORD.matcher(query);
+        while (m.find()) {
+            terms.add(m.group().toLowerCase(Locale.ROOT));
+        }
+        return terms;
+    }
+
+    public record Snippet(String text, List<int[]> highlights) {
+    }
+}
@@ -0,0 +1,43 @@
+package info.search.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency of the stages of search and ingestion, as {@code search.stage} and
+ * {@code ingestion.stage} timers tagged with the stage name. Timers publish
+ * percentile histograms, so SLOs can be set per stage on the Prometheus side.
+ */
+@Component
+public class StageTimers {
+    private final MeterRegistry registry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public StageTimers(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * {@code embed}, {@code vector}, {@code lexical}, {@code fusion}, {@code rerank}, {@code fragment}
+     * or {@code mapping}.
+     */
+    public Timer search(String stage) {
+        return timer("search.stage", "Time spent in one stage of a search", stage);
+    }
+
+    /** {@code parse}, {@code split} or {@code persist}; embedding is {@code embedding.batch.latency}. */
+    public Timer ingestion(String stage) {
+        return timer("ingestion.stage", "Time spent in one stage of document ingestion", stage);
+    }
+
+    private Timer timer(String name, String description, String stage) {
+        return timers.computeIfAbsent(name + ":" + stage, k -> Timer.builder(name)
+                .description(description)
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+}
@@ -0,0 +1,54 @@
+package info.search.service;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import info.search.exception.ServerBusyException;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * Bounds the calls running inside the embedding model. The ONNX runtime
+ * is CPU bound, so more concurrent calls than cores only add latency.
+ * A call that gets no permit within {@code timeout} fails.
+ */
+public class ThrottledEmbeddingModel implements EmbeddingModel {
+    private final EmbeddingModel delegate;
+    private final Semaphore permits;
+    private final Duration timeout;
+
+    public ThrottledEmbeddingModel(EmbeddingModel delegate, int permits, Duration timeout) {
+        this.delegate = delegate;
+        this.permits = new Semaphore(permits, true);
+        this.timeout = timeout;
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        try {
+            if (!permits.tryAcquire(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new ServerBusyException("No embedding permit available within " + timeout.toMillis() + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an embedding permit", e);
+        }
+        try {
+            return delegate.call(request);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return embed(document.getText());
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+}
@@ -0,0 +1,505 @@
+package info.search.vectorstore;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph over unit-length vectors with
+ * cosine distance. Vectors live in flat primitive arrays, either as float32
+ * or as int8 codes with one scale per vector, and neighbour lists are flat
+ * int arrays whose first slot holds the count.
+ * Not thread-safe; {@link HnswVectorStore} guards it with a read-write lock.
+ */
+final class HnswIndex {
+    final int dims;
+    final int m;
+    final int m0;
+    final int efConstruction;
+    final Quantization quantization;
+    private final double levelFactor;
+    private final Random random = new Random(42);
+
+    int size;
+    float[] vectors = new float[0];
+    byte[] codes = new byte[0];
+    float[] scales = new float[0];
+    int[] levels = new int[0];
+    int[] links0 = new int[0];
+    int[][] upperLinks = new int[0][];
+    BitSet deleted = new BitSet();
+    int entryPoint = -1;
+    int maxLevel = -1;
+
+    HnswIndex(int dims, int m, int efConstruction, Quantization quantization) {
+        this.dims = dims;
+        this.m = m;
+        this.m0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.quantization = quantization;
+        this.levelFactor = 1 / Math.log(m);
+    }
+
+    /**
+     * Inserts a vector and returns its node number, nodes are numbered in
+     * insertion order.
+     */
+    int add(float[] vector) {
+        float[] unit = normalize(vector);
+        int node = size;
+        ensureCapacity(node + 1);
+        store(node, unit);
+        int level = (int) Math.floor(-Math.log(1 - random.nextDouble()) * levelFactor);
+        levels[node] = level;
+        upperLinks[node] = level == 0 ? null : new int[level * (m + 1)];
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = greedy(unit, ep, l);
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap candidates = searchLayer(unit, ep, efConstruction, l);
+            int[] sorted = candidates.drainAscending();
+            int[] neighbours = selectNeighbours(unit, sorted, maxConnections(l));
+            setLinks(node, l, neighbours);
+            for (int neighbour : neighbours) {
+                link(neighbour, node, l);
+            }
+            ep = sorted[0];
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    void delete(int node) {
+        deleted.set(node);
+    }
+
+    boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    int liveCount() {
+        return size - deleted.cardinality();
+    }
+
+    /**
+     * Approximate k nearest live nodes accepted by {@code filter}, closest
+     * first. Rejected and deleted nodes are still traversed.
+     */
+    Result search(float[] query, int k, int ef, IntPredicate filter) {
+        if (entryPoint < 0 || k <= 0) {
+            return new Result(new int[0], new float[0]);
+        }
+        float[] unit = normalize(query);
+        int ep = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            ep = greedy(unit, ep, l);
+        }
+        NodeHeap found = searchLayer(unit, ep, Math.max(ef, k), 0);
+        int[] sorted = found.drainAscending();
+        return collect(unit, sorted, k, node -> !deleted.get(node) && filter.test(node));
+    }
+
+    /**
+     * Exact k nearest among the given nodes, for filters selective enough
+     * that a scan beats the graph.
+     */
+    Result exact(float[] query, int k, int[] nodes, int count) {
+        float[] unit = normalize(query);
+        NodeHeap best = new NodeHeap(k + 1, true);
+        for (int i = 0; i < count; i++) {
+            int node = nodes[i];
+            if (deleted.get(node)) {
+                continue;
+            }
+            best.push(node, distance(unit, node));
+            if (best.size() > k) {
+                best.pop();
+            }
+        }
+        return collect(unit, best.drainAscending(), k, node -> true);
+    }
+
+    private Result collect(float[] unit, int[] sorted, int k, IntPredicate accept) {
+        int[] nodes = new int[Math.min(k, sorted.length)];
+        float[] distances = new float[nodes.length];
+        int n = 0;
+        for (int node : sorted) {
+            if (n == nodes.length) {
+                break;
+            }
+            if (accept.test(node)) {
+                nodes[n] = node;
+                distances[n] = distance(unit, node);
+                n++;
+            }
+        }
+        return new Result(Arrays.copyOf(nodes, n), Arrays.copyOf(distances, n));
+    }
+
+    private int greedy(float[] query, int ep, int level) {
+        int current = ep;
+        float best = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] links = linksOf(current, level);
+            int base = offsetOf(current, level);
+            for (int i = 1; i <= links[base]; i++) {
+                int candidate = links[base + i];
+                float d = distance(query, candidate);
+                if (d < best) {
+                    best = d;
+                    current = candidate;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private NodeHeap searchLayer(float[] query, int ep, int ef, int level) {
+        BitSet visited = new BitSet(size);
+        visited.set(ep);
+        float d = distance(query, ep);
+        NodeHeap candidates = new NodeHeap(ef * 2, false);
+        NodeHeap found = new NodeHeap(ef + 1, true);
+        candidates.push(ep, d);
+        found.push(ep, d);
+        while (candidates.size() > 0) {
+            float closest = candidates.peekDistance();
+            if (closest > found.peekDistance() && found.size() >= ef) {
+                break;
+            }
+            int current = candidates.pop();
+            int[] links = linksOf(current, level);
+            int base = offsetOf(current, level);
+            for (int i = 1; i <= links[base]; i++) {
+                int next = links[base + i];
+                if (visited.get(next)) {
+                    continue;
+                }
+                visited.set(next);
+                float dn = distance(query, next);
+                if (found.size() < ef || dn < found.peekDistance()) {
+                    candidates.push(next, dn);
+                    found.push(next, dn);
+                    if (found.size() > ef) {
+                        found.pop();
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    // HNSW heuristic: keep a candidate only if it is closer to the base than to every kept one
+    private int[] selectNeighbours(float[] base, int[] ascending, int max) {
+        int[] selected = new int[Math.min(max, ascending.length)];
+        int n = 0;
+        float[] buffer = new float[dims];
+        boolean[] pruned = new boolean[ascending.length];
+        for (int i = 0; i < ascending.length && n < selected.length; i++) {
+            int candidate = ascending[i];
+            float toBase = distance(base, candidate);
+            float[] candidateVector = decode(candidate, buffer);
+            boolean keep = true;
+            for (int j = 0; j < n; j++) {
+                if (distance(candidateVector, selected[j]) < toBase) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[n++] = candidate;
+            } else {
+                pruned[i] = true;
+            }
+        }
+        // fill up with the closest pruned ones so sparse regions stay connected
+        for (int i = 0; i < ascending.length && n < selected.length; i++) {
+            if (pruned[i]) {
+                selected[n++] = ascending[i];
+            }
+        }
+        return Arrays.copyOf(selected, n);
+    }
+
+    /**
+     * Adds {@code to} to the neighbours of {@code from}. A full list is
+     * re-pruned with the diversity heuristic, but since the existing
+     * neighbours already passed it, only pairs involving the new node are
+     * checked; the farthest one goes when nothing is pruned.
+     */
+    private void link(int from, int to, int level) {
+        int[] links = linksOf(from, level);
+        int base = offsetOf(from, level);
+        int count = links[base];
+        int max = maxConnections(level);
+        if (count < max) {
+            links[base + count + 1] = to;
+            links[base]++;
+            return;
+        }
+        float[] origin = decode(from, new float[dims]);
+        float[] added = decode(to, new float[dims]);
+        float toNew = distance(origin, to);
+        NodeHeap heap = new NodeHeap(count + 1, false);
+        for (int i = 1; i <= count; i++) {
+            heap.push(links[base + i], distance(origin, links[base + i]));
+        }
+        heap.push(to, toNew);
+
+        int[] kept = new int[count + 1];
+        int n = 0;
+        boolean newKept = false;
+        int firstPruned = -1;
+        while (heap.size() > 0) {
+            float d = heap.peekDistance();
+            int candidate = heap.pop();
+            boolean keep;
+            if (candidate == to) {
+                keep = true;
+                for (int j = 0; j < n && keep; j++) {
+                    keep = distance(added, kept[j]) >= toNew;
+                }
+                newKept = keep;
+            } else {
+                keep = !newKept || distance(added, candidate) >= d;
+            }
+            if (keep) {
+                kept[n++] = candidate;
+            } else if (firstPruned < 0) {
+                firstPruned = candidate;
+            }
+        }
+        if (n < max && firstPruned >= 0) {
+            kept[n++] = firstPruned;
+        }
+        setLinks(from, level, Arrays.copyOf(kept, Math.min(n, max)));
+    }
+
+    private void setLinks(int node, int level, int[] neighbours) {
+        int[] links = linksOf(node, level);
+        int base = offsetOf(node, level);
+        links[base] = neighbours.length;
+        System.arraycopy(neighbours, 0, links, base + 1, neighbours.length);
+    }
+
+    private int[] linksOf(int node, int level) {
+        return level == 0 ? links0 : upperLinks[node];
+    }
+
+    private int offsetOf(int node, int level) {
+        return level == 0 ? node * (m0 + 1) : (level - 1) * (m + 1);
+    }
+
+    private int maxConnections(int level) {
+        return level == 0 ? m0 : m;
+    }
+
+    float distance(float[] query, int node) {
+        int offset = node * dims;
+        // four independent sums let the JIT pipeline the multiply-adds
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        if (quantization == Quantization.FLOAT32) {
+            float[] v = vectors;
+            for (; i + 3 < dims; i += 4) {
+                s0 += query[i] * v[offset + i];
+                s1 += query[i + 1] * v[offset + i + 1];
+                s2 += query[i + 2] * v[offset + i + 2];
+                s3 += query[i + 3] * v[offset + i + 3];
+            }
+            for (; i < dims; i++) {
+                s0 += query[i] * v[offset + i];
+            }
+            return 1 - (s0 + s1 + s2 + s3);
+        }
+        byte[] c = codes;
+        for (; i + 3 < dims; i += 4) {
+            s0 += query[i] * c[offset + i];
+            s1 += query[i + 1] * c[offset + i + 1];
+            s2 += query[i + 2] * c[offset + i + 2];
+            s3 += query[i + 3] * c[offset + i + 3];
+        }
+        for (; i < dims; i++) {
+            s0 += query[i] * c[offset + i];
+        }
+        return 1 - (s0 + s1 + s2 + s3) * scales[node] / 127f;
+    }
+
+    float[] decode(int node, float[] buffer) {
+        int offset = node * dims;
+        if (quantization == Quantization.FLOAT32) {
+            System.arraycopy(vectors, offset, buffer, 0, dims);
+        } else {
+            float scale = scales[node] / 127f;
+            for (int i = 0; i < dims; i++) {
+                buffer[i] = codes[offset + i] * scale;
+            }
+        }
+        return buffer;
+    }
+
+    private void store(int node, float[] unit) {
+        int offset = node * dims;
+        if (quantization == Quantization.FLOAT32) {
+            System.arraycopy(unit, 0, vectors, offset, dims);
+            return;
+        }
+        float max = 0;
+        for (float v : unit) {
+            max = Math.max(max, Math.abs(v));
+        }
+        scales[node] = max;
+        for (int i = 0; i < dims; i++) {
+            codes[offset + i] = max == 0 ? 0 : (byte) Math.round(unit[i] / max * 127);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        int capacity = levels.length;
+        if (required <= capacity) {
+            return;
+        }
+        int grown = Math.max(required, Math.max(16, capacity + (capacity >> 1)));
+        if (quantization == Quantization.FLOAT32) {
+            vectors = Arrays.copyOf(vectors, grown * dims);
+        } else {
+            codes = Arrays.copyOf(codes, grown * dims);
+            scales = Arrays.copyOf(scales, grown);
+        }
+        levels = Arrays.copyOf(levels, grown);
+        links0 = Arrays.copyOf(links0, grown * (m0 + 1));
+        upperLinks = Arrays.copyOf(upperLinks, grown);
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dims) {
+            throw new IllegalArgumentException(
+                    "Expected " + dims + " dimensions, got " + vector.length);
+        }
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        float[] unit = new float[dims];
+        float inverse = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dims; i++) {
+            unit[i] = vector[i] * inverse;
+        }
+        return unit;
+    }
+
+    enum Quantization {
+        FLOAT32,
+        INT8
+    }
+
+    record Result(int[] nodes, float[] distances) {
+    }
+
+    /**
+     * Binary heap of (node, distance) pairs over primitive arrays,
+     * a max-heap when {@code farthestFirst} is set and a min-heap otherwise.
+     */
+    static final class NodeHeap {
+        private final boolean farthestFirst;
+        private int[] nodes;
+        private float[] distances;
+        private int size;
+
+        NodeHeap(int capacity, boolean farthestFirst) {
+            this.farthestFirst = farthestFirst;
+            this.nodes = new int[Math.max(1, capacity)];
+            this.distances = new float[nodes.length];
+        }
+
+        int size() {
+            return size;
+        }
+
+        float peekDistance() {
+            return distances[0];
+        }
+
+        void push(int node, float distance) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(distance, distances[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                distances[i] = distances[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            distances[i] = distance;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            size--;
+            int lastNode = nodes[size];
+            float lastDistance = distances[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && before(distances[child + 1], distances[child])) {
+                    child++;
+                }
+                if (!before(distances[child], lastDistance)) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            distances[i] = lastDistance;
+            return top;
+        }
+
+        /** Empties the heap, returning its nodes closest first. */
+        int[] drainAscending() {
+            int[] result = new int[size];
+            if (farthestFirst) {
+                for (int i = result.length - 1; i >= 0; i--) {
+                    result[i] = pop();
+                }
+            } else {
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = pop();
+                }
+            }
+            return result;
+        }
+
+        private boolean before(float a, float b) {
+            return farthestFirst ? a > b : a < b;
+        }
+    }
+}
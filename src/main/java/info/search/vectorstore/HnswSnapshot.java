@@ -0,0 +1,146 @@
+package info.search.vectorstore;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/**
+ * Memory-mapped snapshot of an {@link HnswIndex}: a fixed header followed by
+ * the vector, level, link and tombstone arrays, copied in bulk between the
+ * mapping and the heap arrays. The document payload is an opaque byte block
+ * at the end.
+ */
+final class HnswSnapshot {
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED;
+    private static final ValueLayout.OfLong LONG = ValueLayout.JAVA_LONG_UNALIGNED;
+    private static final ValueLayout.OfFloat FLOAT = ValueLayout.JAVA_FLOAT_UNALIGNED;
+
+    private HnswSnapshot() {
+    }
+
+    /** Writes to a temp file first and moves it over {@code path}, so a crash never leaves half a snapshot. */
+    static void write(Path path, HnswIndex index, byte[] documents) throws IOException {
+        int n = index.size;
+        int dims = index.dims;
+        boolean int8 = index.quantization == HnswIndex.Quantization.INT8;
+        long[] tombstones = index.deleted.toLongArray();
+        long upperSize = 0;
+        for (int node = 0; node < n; node++) {
+            upperSize += index.levels[node] * (index.m + 1L);
+        }
+        long vectorBytes = int8 ? (long) n * dims + (long) n * Float.BYTES : (long) n * dims * Float.BYTES;
+        long total = 11L * Integer.BYTES
+                + vectorBytes
+                + (long) n * Integer.BYTES
+                + (long) n * (index.m0 + 1) * Integer.BYTES
+                + upperSize * Integer.BYTES
+                + (long) tombstones.length * Long.BYTES
+                + documents.length;
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             Arena arena = Arena.ofConfined()) {
+            MemorySegment out = channel.map(FileChannel.MapMode.READ_WRITE, 0, total, arena);
+            long pos = 0;
+            for (int value : new int[]{MAGIC, VERSION, dims, index.m, index.efConstruction,
+                    index.quantization.ordinal(), n, index.entryPoint, index.maxLevel,
+                    tombstones.length, documents.length}) {
+                out.set(INT, pos, value);
+                pos += Integer.BYTES;
+            }
+            if (int8) {
+                MemorySegment.copy(index.codes, 0, out, ValueLayout.JAVA_BYTE, pos, n * dims);
+                pos += (long) n * dims;
+                MemorySegment.copy(index.scales, 0, out, FLOAT, pos, n);
+                pos += (long) n * Float.BYTES;
+            } else {
+                MemorySegment.copy(index.vectors, 0, out, FLOAT, pos, n * dims);
+                pos += (long) n * dims * Float.BYTES;
+            }
+            MemorySegment.copy(index.levels, 0, out, INT, pos, n);
+            pos += (long) n * Integer.BYTES;
+            MemorySegment.copy(index.links0, 0, out, INT, pos, n * (index.m0 + 1));
+            pos += (long) n * (index.m0 + 1) * Integer.BYTES;
+            for (int node = 0; node < n; node++) {
+                int[] upper = index.upperLinks[node];
+                if (upper != null) {
+                    MemorySegment.copy(upper, 0, out, INT, pos, upper.length);
+                    pos += (long) upper.length * Integer.BYTES;
+                }
+            }
+            MemorySegment.copy(tombstones, 0, out, LONG, pos, tombstones.length);
+            pos += (long) tombstones.length * Long.BYTES;
+            MemorySegment.copy(documents, 0, out, ValueLayout.JAVA_BYTE, pos, documents.length);
+            out.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Restores the index in place and returns the document payload. */
+    static byte[] read(Path path, HnswIndex index) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             Arena arena = Arena.ofConfined()) {
+            MemorySegment in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena);
+            int[] header = new int[11];
+            MemorySegment.copy(in, INT, 0, header, 0, header.length);
+            long pos = (long) header.length * Integer.BYTES;
+            if (header[0] != MAGIC || header[1] != VERSION) {
+                throw new IOException("Not an HNSW snapshot: " + path);
+            }
+            if (header[2] != index.dims || header[3] != index.m
+                    || header[5] != index.quantization.ordinal()) {
+                throw new IOException("Snapshot " + path + " was written with other index settings");
+            }
+            int n = header[6];
+            int dims = index.dims;
+            index.size = n;
+            index.entryPoint = header[7];
+            index.maxLevel = header[8];
+            if (index.quantization == HnswIndex.Quantization.INT8) {
+                index.codes = new byte[n * dims];
+                MemorySegment.copy(in, ValueLayout.JAVA_BYTE, pos, index.codes, 0, n * dims);
+                pos += (long) n * dims;
+                index.scales = new float[n];
+                MemorySegment.copy(in, FLOAT, pos, index.scales, 0, n);
+                pos += (long) n * Float.BYTES;
+            } else {
+                index.vectors = new float[n * dims];
+                MemorySegment.copy(in, FLOAT, pos, index.vectors, 0, n * dims);
+                pos += (long) n * dims * Float.BYTES;
+            }
+            index.levels = new int[n];
+            MemorySegment.copy(in, INT, pos, index.levels, 0, n);
+            pos += (long) n * Integer.BYTES;
+            index.links0 = new int[n * (index.m0 + 1)];
+            MemorySegment.copy(in, INT, pos, index.links0, 0, index.links0.length);
+            pos += (long) index.links0.length * Integer.BYTES;
+            index.upperLinks = new int[n][];
+            for (int node = 0; node < n; node++) {
+                int level = index.levels[node];
+                if (level > 0) {
+                    int[] upper = new int[level * (index.m + 1)];
+                    MemorySegment.copy(in, INT, pos, upper, 0, upper.length);
+                    pos += (long) upper.length * Integer.BYTES;
+                    index.upperLinks[node] = upper;
+                }
+            }
+            long[] tombstones = new long[header[9]];
+            MemorySegment.copy(in, LONG, pos, tombstones, 0, tombstones.length);
+            pos += (long) tombstones.length * Long.BYTES;
+            index.deleted = BitSet.valueOf(tombstones);
+            byte[] documents = new byte[header[10]];
+            MemorySegment.copy(in, ValueLayout.JAVA_BYTE, pos, documents, 0, documents.length);
+            return documents;
+        }
+    }
+}
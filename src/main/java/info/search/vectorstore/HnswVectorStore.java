@@ -0,0 +1,439 @@
+package info.search.vectorstore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.search.config.VectorStoreProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link VectorStore} backed by an in-process {@link HnswIndex}, for
+ * collections small enough to search in the application's own memory.
+ * {@code docId == X} filters over a small enough document are answered by an
+ * exact scan of that document's chunks, other filters are applied while
+ * collecting graph results with a widened candidate list. Deleted and
+ * replaced chunks stay in the graph as tombstones until they make up more
+ * than {@code compaction-ratio} of it; the graph is then rebuilt from its
+ * live nodes.
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore, InitializingBean, DisposableBean {
+    private final EmbeddingModel embeddingModel;
+    private final VectorStoreProperties.Hnsw props;
+    private final ObjectMapper objectMapper;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private HnswIndex index;
+    // per node, in insertion order
+    private final List<StoredDocument> documents = new ArrayList<>();
+    private final Map<String, Integer> nodesById = new HashMap<>();
+    private final Map<Long, NodeList> nodesByDocId = new HashMap<>();
+    // bumped by every write, a compacted copy is only swapped in over the state it was taken from
+    private long version;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private ScheduledExecutorService snapshots;
+
+    public HnswVectorStore(EmbeddingModel embeddingModel,
+                           VectorStoreProperties.Hnsw props,
+                           ObjectMapper objectMapper) {
+        this.embeddingModel = embeddingModel;
+        this.props = props;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        index = newIndex();
+        Path path = snapshotPath();
+        if (path != null && Files.exists(path)) {
+            restore(path);
+        }
+        if (path != null && !props.getSnapshotInterval().isZero()) {
+            snapshots = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "hnsw-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = props.getSnapshotInterval().toMillis();
+            snapshots.scheduleWithFixedDelay(this::snapshotQuietly, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (snapshots != null) {
+            snapshots.shutdownNow();
+        }
+        snapshotQuietly();
+    }
+
+    @Override
+    public void add(List<Document> docs) {
+        if (docs.isEmpty()) {
+            return;
+        }
+        // embed outside the lock, searches keep running meanwhile
+        List<float[]> embeddings = embeddingModel.embed(docs.stream().map(Document::getText).toList());
+        lock.writeLock().lock();
+        try {
+            version++;
+            for (int i = 0; i < docs.size(); i++) {
+                Document doc = docs.get(i);
+                Integer previous = nodesById.get(doc.getId());
+                if (previous != null) {
+                    remove(previous);
+                }
+                int node = index.add(embeddings.get(i));
+                register(node, new StoredDocument(doc.getId(), doc.getText(), doc.getMetadata()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactIfNeeded();
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> ids) {
+        lock.writeLock().lock();
+        try {
+            version++;
+            for (String id : ids) {
+                Integer node = nodesById.remove(id);
+                if (node != null) {
+                    remove(node);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactIfNeeded();
+        return Optional.of(true);
+    }
+
+    /**
+     * Brings the index in line with the chunks stored in the database, keyed
+     * by vector id: chunks the database no longer has are deleted, the
+     * others get the stored metadata over their own, which keeps what the
+     * database does not record. Covers whatever a snapshot older than the
+     * data, or no snapshot at all, left out.
+     *
+     * @return ids of stored chunks the index does not hold, to be added
+     */
+    public Set<String> reconcile(Map<String, Map<String, Object>> stored) {
+        Set<String> missing = new HashSet<>();
+        lock.writeLock().lock();
+        try {
+            version++;
+            int deleted = 0;
+            for (String id : List.copyOf(nodesById.keySet())) {
+                if (!stored.containsKey(id)) {
+                    remove(nodesById.remove(id));
+                    deleted++;
+                }
+            }
+            stored.forEach((id, metadata) -> {
+                Integer node = nodesById.get(id);
+                if (node == null) {
+                    missing.add(id);
+                } else {
+                    StoredDocument document = documents.get(node);
+                    Map<String, Object> merged = new HashMap<>(document.metadata());
+                    merged.putAll(metadata);
+                    documents.set(node, new StoredDocument(id, document.text(), merged));
+                }
+            });
+            log.info("HNSW index holds {} of {} stored chunks, {} deleted ones dropped",
+                    stored.size() - missing.size(), stored.size(), deleted);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        compactIfNeeded();
+        return missing;
+    }
+
+    /**
+     * Replaces the metadata of stored chunks and keeps their vectors, for
+     * chunks whose text did not change. Unknown ids are skipped.
+     */
+    public void updateMetadata(List<Document> docs) {
+        lock.writeLock().lock();
+        try {
+            version++;
+            for (Document doc : docs) {
+                Integer node = nodesById.get(doc.getId());
+                if (node != null) {
+                    StoredDocument stored = documents.get(node);
+                    documents.set(node, new StoredDocument(stored.id(), stored.text(), doc.getMetadata()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        return similaritySearch(embeddingModel.embed(request.getQuery()), request);
+    }
+
+    /** Searches with a query embedded by the caller; the query text of {@code request} is not used. */
+    public List<Document> similaritySearch(float[] query, SearchRequest request) {
+        Filter.Expression filter = request.getFilterExpression();
+        Long docId = MetadataFilter.docIdOf(filter);
+        int topK = request.getTopK();
+
+        lock.readLock().lock();
+        try {
+            HnswIndex.Result result;
+            NodeList docNodes = docId == null ? null : nodesByDocId.get(docId);
+            if (docId != null && (docNodes == null || docNodes.size <= props.getExactScanThreshold())) {
+                result = docNodes == null
+                        ? new HnswIndex.Result(new int[0], new float[0])
+                        : index.exact(query, topK, docNodes.nodes, docNodes.size);
+            } else if (filter != null) {
+                // wider candidate list, rejected nodes use up part of it
+                result = index.search(query, topK, Math.max(props.getEfSearch(), topK) * 4,
+                        node -> MetadataFilter.matches(filter, documents.get(node).metadata()));
+            } else {
+                result = index.search(query, topK, props.getEfSearch(), node -> true);
+            }
+
+            List<Document> found = new ArrayList<>(result.nodes().length);
+            for (int i = 0; i < result.nodes().length; i++) {
+                float distance = result.distances()[i];
+                if (1 - distance < request.getSimilarityThreshold()) {
+                    continue;
+                }
+                StoredDocument stored = documents.get(result.nodes()[i]);
+                Map<String, Object> metadata = new HashMap<>(stored.metadata());
+                metadata.put("distance", distance);
+                found.add(new Document(stored.id(), stored.text(), metadata));
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the index and documents to the configured snapshot file. With
+     * tombstones in the graph, a compacted copy is written instead, which
+     * then replaces the live graph unless a write came in meanwhile.
+     */
+    public void snapshot() throws IOException {
+        Path path = snapshotPath();
+        if (path == null) {
+            return;
+        }
+        Compacted compacted = null;
+        long seen;
+        lock.readLock().lock();
+        try {
+            seen = version;
+            HnswIndex written = index;
+            List<StoredDocument> writtenDocuments = documents;
+            if (index.liveCount() < index.size) {
+                compacted = compact();
+                written = compacted.index();
+                writtenDocuments = compacted.documents();
+            }
+            HnswSnapshot.write(path, written, objectMapper.writeValueAsBytes(writtenDocuments));
+            log.info("HNSW snapshot of {} chunks written to {}", written.liveCount(), path);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (compacted != null) {
+            swap(compacted, seen);
+        }
+    }
+
+    /** Nodes in the graph, tombstones included. */
+    int nodeCount() {
+        lock.readLock().lock();
+        try {
+            return index.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Nodes listed for exact scans of one document. */
+    int documentNodeCount(long docId) {
+        lock.readLock().lock();
+        try {
+            NodeList nodes = nodesByDocId.get(docId);
+            return nodes == null ? 0 : nodes.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void restore(Path path) throws IOException {
+        HnswIndex restored = newIndex();
+        byte[] payload = HnswSnapshot.read(path, restored);
+        List<StoredDocument> stored = objectMapper.readValue(payload, new TypeReference<>() {
+        });
+        index = restored;
+        for (int node = 0; node < stored.size(); node++) {
+            documents.add(stored.get(node));
+            if (!index.isDeleted(node)) {
+                register(node, stored.get(node));
+            }
+        }
+        log.info("HNSW index of {} chunks restored from {}", index.liveCount(), path);
+    }
+
+    private void register(int node, StoredDocument doc) {
+        if (node == documents.size()) {
+            documents.add(doc);
+        }
+        nodesById.put(doc.id(), node);
+        Object docId = doc.metadata().get("docId");
+        if (docId instanceof Number number) {
+            nodesByDocId.computeIfAbsent(number.longValue(), k -> new NodeList()).add(node);
+        }
+    }
+
+    // the node leaves its document's list too, exact scans of the document only see live nodes
+    private void remove(int node) {
+        index.delete(node);
+        Object docId = documents.get(node).metadata().get("docId");
+        if (docId instanceof Number number) {
+            NodeList nodes = nodesByDocId.get(number.longValue());
+            if (nodes != null && nodes.remove(node) && nodes.size == 0) {
+                nodesByDocId.remove(number.longValue());
+            }
+        }
+    }
+
+    // the copy is built under the read lock, so searches go on and writers wait
+    private void compactIfNeeded() {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Compacted compacted;
+            long seen;
+            lock.readLock().lock();
+            try {
+                int tombstones = index.size - index.liveCount();
+                if (tombstones == 0 || tombstones <= index.size * props.getCompactionRatio()) {
+                    return;
+                }
+                seen = version;
+                compacted = compact();
+            } finally {
+                lock.readLock().unlock();
+            }
+            swap(compacted, seen);
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    // a new graph of the live nodes in node order, with their documents
+    private Compacted compact() {
+        HnswIndex rebuilt = newIndex();
+        List<StoredDocument> live = new ArrayList<>(index.liveCount());
+        float[] vector = new float[index.dims];
+        for (int node = 0; node < index.size; node++) {
+            if (!index.isDeleted(node)) {
+                rebuilt.add(index.decode(node, vector));
+                live.add(documents.get(node));
+            }
+        }
+        return new Compacted(rebuilt, live);
+    }
+
+    private void swap(Compacted compacted, long seen) {
+        lock.writeLock().lock();
+        try {
+            if (version != seen) {
+                // written to since the copy was taken; the next write or snapshot compacts again
+                return;
+            }
+            version++;
+            int dropped = index.size - compacted.index().size;
+            index = compacted.index();
+            documents.clear();
+            nodesById.clear();
+            nodesByDocId.clear();
+            for (int node = 0; node < compacted.documents().size(); node++) {
+                register(node, compacted.documents().get(node));
+            }
+            log.info("HNSW index compacted, {} tombstoned nodes dropped", dropped);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("HNSW snapshot failed", e);
+        }
+    }
+
+    private HnswIndex newIndex() {
+        return new HnswIndex(embeddingModel.dimensions(), props.getM(), props.getEfConstruction(),
+                HnswIndex.Quantization.valueOf(props.getQuantization().toUpperCase()));
+    }
+
+    private Path snapshotPath() {
+        return StringUtils.hasText(props.getSnapshotPath()) ? Path.of(props.getSnapshotPath()) : null;
+    }
+
+    record StoredDocument(String id, String text, Map<String, Object> metadata) {
+    }
+
+    private record Compacted(HnswIndex index, List<StoredDocument> documents) {
+    }
+
+    /** Growable, unordered list of the live node numbers of one document. */
+    private static final class NodeList {
+        private int[] nodes = new int[16];
+        private int size;
+
+        void add(int node) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            nodes[size++] = node;
+        }
+
+        boolean remove(int node) {
+            for (int i = 0; i < size; i++) {
+                if (nodes[i] == node) {
+                    nodes[i] = nodes[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
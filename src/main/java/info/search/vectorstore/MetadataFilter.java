@@ -0,0 +1,91 @@
+package info.search.vectorstore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+/**
+ * Evaluates Spring AI filter expressions against document metadata.
+ */
+final class MetadataFilter {
+
+    private MetadataFilter() {
+    }
+
+    static boolean matches(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand instanceof Filter.Group group) {
+            return matches(group.content(), metadata);
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new UnsupportedOperationException("Unsupported filter operand: " + operand);
+        }
+        return switch (expression.type()) {
+            case AND -> matches(expression.left(), metadata) && matches(expression.right(), metadata);
+            case OR -> matches(expression.left(), metadata) || matches(expression.right(), metadata);
+            case NOT -> !matches(expression.left(), metadata);
+            case EQ -> equal(valueOf(expression, metadata), literal(expression));
+            case NE -> !equal(valueOf(expression, metadata), literal(expression));
+            case IN -> contains(literal(expression), valueOf(expression, metadata));
+            case NIN -> !contains(literal(expression), valueOf(expression, metadata));
+            case GT -> compare(expression, metadata) > 0;
+            case GTE -> compare(expression, metadata) >= 0;
+            case LT -> compare(expression, metadata) < 0;
+            case LTE -> compare(expression, metadata) <= 0;
+            default -> throw new UnsupportedOperationException(
+                    "Unsupported filter expression: " + expression.type());
+        };
+    }
+
+    /** The document id of a plain {@code docId == X} filter, or null for any other filter. */
+    static Long docIdOf(Filter.Expression expression) {
+        if (expression != null
+                && expression.type() == Filter.ExpressionType.EQ
+                && expression.left() instanceof Filter.Key key
+                && "docId".equals(key.key())
+                && expression.right() instanceof Filter.Value value
+                && value.value() instanceof Number number) {
+            return number.longValue();
+        }
+        return null;
+    }
+
+    private static Object valueOf(Filter.Expression expression, Map<String, Object> metadata) {
+        String key = ((Filter.Key) expression.left()).key();
+        // the text parser keeps quotes around keys with special characters
+        if (key.length() > 1 && (key.startsWith("\"") || key.startsWith("'"))) {
+            key = key.substring(1, key.length() - 1);
+        }
+        return metadata.get(key);
+    }
+
+    private static Object literal(Filter.Expression expression) {
+        return ((Filter.Value) expression.right()).value();
+    }
+
+    private static boolean equal(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number e) {
+            return Double.compare(a.doubleValue(), e.doubleValue()) == 0;
+        }
+        return Objects.equals(actual, expected);
+    }
+
+    private static boolean contains(Object list, Object actual) {
+        return list instanceof List<?> values && values.stream().anyMatch(v -> equal(actual, v));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Filter.Expression expression, Map<String, Object> metadata) {
+        Object actual = valueOf(expression, metadata);
+        Object expected = literal(expression);
+        if (actual instanceof Number a && expected instanceof Number e) {
+            return Double.compare(a.doubleValue(), e.doubleValue());
+        }
+        if (actual instanceof Comparable a && expected != null && a.getClass().isInstance(expected)) {
+            return a.compareTo(expected);
+        }
+        // missing or incomparable values never satisfy a range
+        return expression.type() == Filter.ExpressionType.GT
+                || expression.type() == Filter.ExpressionType.GTE ? -1 : 1;
+    }
+}
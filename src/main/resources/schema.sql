@@ -0,0 +1,69 @@
+CREATE TABLE IF NOT EXISTS doc (
+    id        BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    file_name VARCHAR(255),
+    title     VARCHAR(255),
+    author    VARCHAR(255)
+);
+
+ALTER TABLE doc ADD COLUMN IF NOT EXISTS content_hash VARCHAR(64);
+CREATE UNIQUE INDEX IF NOT EXISTS doc_content_hash_key ON doc (content_hash) WHERE content_hash IS NOT NULL;
+
+-- book bodies live apart from doc, so listing never reads them; rows left here are moved
+-- to doc_block at startup
+CREATE TABLE IF NOT EXISTS doc_content (
+    doc_id  BIGINT PRIMARY KEY REFERENCES doc (id) ON DELETE CASCADE,
+    content TEXT COMPRESSION lz4 NOT NULL
+);
+
+-- moves bodies out of doc.content once; single-quoted so the script splitter keeps it whole
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = ''doc'' AND column_name = ''content'') THEN
+        INSERT INTO doc_content (doc_id, content)
+        SELECT id, content FROM doc WHERE content IS NOT NULL;
+        ALTER TABLE doc DROP COLUMN content;
+    END IF;
+END';
+
+-- hashes of rows that predate the column, or were taken over the raw body before whitespace
+-- was normalized, are computed again at startup; rows inserted from now on have current ones
+ALTER TABLE doc ADD COLUMN IF NOT EXISTS content_hash_current BOOLEAN NOT NULL DEFAULT false;
+ALTER TABLE doc ALTER COLUMN content_hash_current SET DEFAULT true;
+
+CREATE TABLE IF NOT EXISTS doc_chunk (
+    vector_id VARCHAR(255) PRIMARY KEY,
+    doc_id    BIGINT REFERENCES doc (id)
+);
+
+-- lets a re-upload keep the vectors of chunks whose text did not change
+ALTER TABLE doc_chunk ADD COLUMN IF NOT EXISTS content_hash    VARCHAR(64);
+ALTER TABLE doc_chunk ADD COLUMN IF NOT EXISTS chunk_index     INTEGER;
+ALTER TABLE doc_chunk ADD COLUMN IF NOT EXISTS section_ordinal INTEGER;
+ALTER TABLE doc_chunk ADD COLUMN IF NOT EXISTS section_title   TEXT;
+CREATE INDEX IF NOT EXISTS doc_chunk_doc_id_idx ON doc_chunk (doc_id);
+
+-- chunk text is a slice of the stored body; the lexical index keeps only its lexemes
+ALTER TABLE doc_chunk ADD COLUMN IF NOT EXISTS char_offset INTEGER;
+ALTER TABLE doc_chunk ADD COLUMN IF NOT EXISTS char_length INTEGER;
+ALTER TABLE doc_chunk ADD COLUMN IF NOT EXISTS tsv         TSVECTOR;
+CREATE INDEX IF NOT EXISTS doc_chunk_tsv_idx ON doc_chunk USING gin (tsv);
+
+-- bodies as deflate blocks of a fixed number of characters, so one chunk inflates one or two blocks;
+-- already compressed, so TOAST stores them out of line without trying again
+CREATE TABLE IF NOT EXISTS doc_block (
+    doc_id      BIGINT  NOT NULL REFERENCES doc (id) ON DELETE CASCADE,
+    block_no    INTEGER NOT NULL,
+    char_offset INTEGER NOT NULL,
+    char_length INTEGER NOT NULL,
+    data        BYTEA   NOT NULL,
+    PRIMARY KEY (doc_id, block_no)
+);
+ALTER TABLE doc_block ALTER COLUMN data SET STORAGE EXTERNAL;
+
+CREATE TABLE IF NOT EXISTS embedding_cache (
+    cache_key  CHAR(64) PRIMARY KEY,
+    model_id   VARCHAR(255) NOT NULL,
+    embedding  BYTEA        NOT NULL,
+    created_at TIMESTAMPTZ  NOT NULL DEFAULT now()
+);
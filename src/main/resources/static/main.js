@@ -1,10 +1,12 @@
 const API = 'http://localhost:8088/api';
 const PAGE_SIZE = 10;
+const SNIPPET_LENGTH = 400;
 
 let docs = [];
 let activeDocId = null;
 let currentPage = 0;
 let lastQuery = '';
+let searchAbort = null;
 
 const dropZone = document.getElementById('dropZone');
 const fileInput = document.getElementById('fileInput');
@@ -149,6 +151,10 @@ uploadBtn.addEventListener('click', async () => {
             if (!res.ok) {
                 throw new Error(await res.text());
             }
+            const job = await waitForJob(await res.json(), file.name);
+            if (job.status === 'FAILED') {
+                throw new Error(job.error ?? 'ingestion failed');
+            }
             success++;
         } catch (e) {
             failed++;
@@ -166,6 +172,21 @@ uploadBtn.addEventListener('click', async () => {
     uploadBtn.disabled = true;
 });
 
+async function waitForJob(job, name) {
+    while (job.status !== 'COMPLETED' && job.status !== 'FAILED') {
+        uploadBtn.innerHTML = job.chunksTotal
+            ? `<span class="spin"></span> ${esc(name)}: ${job.chunksEmbedded}/${job.chunksTotal}`
+            : `<span class="spin"></span> ${esc(name)}: ${job.status.toLowerCase()}…`;
+        await new Promise(r => setTimeout(r, 1000));
+        const res = await fetch(`${API}/docs/jobs/${job.id}`);
+        if (!res.ok) {
+            throw new Error(await res.text());
+        }
+        job = await res.json();
+    }
+    return job;
+}
+
 // search
 searchBtn.addEventListener('click', () => doSearch(0));
 searchInput.addEventListener('keydown', e => {
@@ -176,6 +197,7 @@ searchInput.addEventListener('keydown', e => {
 prevBtn.addEventListener('click', () => doSearch(currentPage - 1));
 nextBtn.addEventListener('click', () => doSearch(currentPage + 1));
 
+// results are shown as the server streams them; a newer search aborts the older one's request
 async function doSearch(page) {
     const query = searchInput.value.trim();
     if (!query) {
@@ -184,61 +206,131 @@ async function doSearch(page) {
     lastQuery = query;
     currentPage = page;
 
+    searchAbort?.abort();
+    const abort = new AbortController();
+    searchAbort = abort;
+
     searchBtn.disabled = true;
     searchBtn.innerHTML = '<span class="spin"></span>';
     results.innerHTML = '';
 
     try {
-        const body = { query, page, size: PAGE_SIZE };
+        const body = { query, page, size: PAGE_SIZE, snippetLength: SNIPPET_LENGTH };
         if (activeDocId !== null) {
             body.docId = activeDocId;
         }
-        const res = await fetch(`${API}/docs/search`, {
+        const res = await fetch(`${API}/docs/search/stream`, {
             method: 'POST',
-            headers: { 'Content-Type': 'application/json' },
-            body: JSON.stringify(body)
+            headers: { 'Content-Type': 'application/json', 'Accept': 'text/event-stream' },
+            body: JSON.stringify(body),
+            signal: abort.signal
         });
         if (!res.ok) {
             throw new Error(await res.text());
         }
-        const data = await res.json();
-        renderResults(data.content ?? data, page, data.last ?? true);
+        const view = startResults(page);
+        let end = null;
+        for await (const event of readEvents(res.body)) {
+            if (event.name === 'result') {
+                view.add(JSON.parse(event.data));
+            } else if (event.name === 'end') {
+                end = JSON.parse(event.data);
+            } else if (event.name === 'error') {
+                throw new Error(JSON.parse(event.data).message);
+            }
+        }
+        if (!end) {
+            throw new Error('Search was interrupted');
+        }
+        view.finish(end.last);
     } catch (e) {
+        if (e.name === 'AbortError') {
+            return;
+        }
         results.innerHTML = `<div class="empty"><div class="empty-icon">⚠️</div><p>${esc(e.message)}</p></div>`;
     }
-    searchBtn.innerHTML = 'Search';
-    searchBtn.disabled = false;
+    if (searchAbort === abort) {
+        searchBtn.innerHTML = 'Search';
+        searchBtn.disabled = false;
+    }
+}
+
+// splits a text/event-stream body into { name, data } events
+async function* readEvents(body) {
+    const reader = body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = '';
+    for (;;) {
+        const { value, done } = await reader.read();
+        if (done) {
+            return;
+        }
+        buffer += value;
+        let end;
+        while ((end = buffer.indexOf('\n\n')) >= 0) {
+            const frame = buffer.slice(0, end);
+            buffer = buffer.slice(end + 2);
+            let name = 'message';
+            const data = [];
+            for (const line of frame.split('\n')) {
+                if (line.startsWith('event:')) {
+                    name = line.slice(6).trim();
+                } else if (line.startsWith('data:')) {
+                    data.push(line.slice(5).trimStart());
+                }
+            }
+            if (data.length) {
+                yield { name, data: data.join('\n') };
+            }
+        }
+    }
 }
 
-function renderResults(items, page, isLast) {
+function startResults(page) {
     pageNum.textContent = page + 1;
     prevBtn.disabled = page === 0;
-    nextBtn.disabled = isLast;
-
-    if (!items.length) {
-        results.innerHTML = `<div class="empty"><p>Nothing found</p></div>`;
-        return;
-    }
+    nextBtn.disabled = true;
 
     const meta = document.createElement('div');
     meta.className = 'results-meta';
-    meta.innerHTML = `<span>${items.length} fragment${items.length !== 1 ? 's' : ''}</span><span class="query-echo">${esc(lastQuery)}</span>`;
-    results.appendChild(meta);
+    let count = 0;
 
-    items.forEach((item, i) => {
-        const card = document.createElement('div');
-        card.className = 'card';
-        card.style.animationDelay = `${i * 0.04}s`;
+    return {
+        add(item) {
+            if (count === 0) {
+                results.appendChild(meta);
+            }
+            const card = document.createElement('div');
+            card.className = 'card';
 
-        const author = item.author ? ` · ${esc(item.author)}` : '';
+            const author = item.author ? ` · ${esc(item.author)}` : '';
 
-        card.innerHTML = `
-            <div class="card-num">Fragment ${page * PAGE_SIZE + i + 1}</div>
-            <div class="card-source">${esc(item.title ?? '')}${author}</div>
-            <div class="card-text">${esc(item.fragment)}</div>
-        `;
-        results.appendChild(card);
-    });
+            card.innerHTML = `
+                <div class="card-num">Fragment ${page * PAGE_SIZE + count + 1}</div>
+                <div class="card-source">${esc(item.title ?? '')}${author}</div>
+                <div class="card-text">${highlight(item.fragment, item.highlights)}</div>
+            `;
+            results.appendChild(card);
+            count++;
+            meta.innerHTML = `<span>${count} fragment${count !== 1 ? 's' : ''}</span><span class="query-echo">${esc(lastQuery)}</span>`;
+        },
+        finish(isLast) {
+            nextBtn.disabled = isLast;
+            if (count === 0) {
+                results.innerHTML = `<div class="empty"><p>Nothing found</p></div>`;
+            }
+        }
+    };
+}
+
+// wraps the [start, end) ranges returned with a snippet in <mark>
+function highlight(text, ranges = []) {
+    let html = '';
+    let pos = 0;
+    for (const [start, end] of ranges) {
+        html += esc(text.slice(pos, start)) + '<mark>' + esc(text.slice(start, end)) + '</mark>';
+        pos = end;
+    }
+    return html + esc(text.slice(pos));
 }
 
 function esc(s) {
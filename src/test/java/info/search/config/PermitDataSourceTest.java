@@ -0,0 +1,143 @@
+package info.search.config;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PermitDataSourceTest {
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+    private final CountingDataSource target = new CountingDataSource();
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void checkoutWithoutAPermitInTimeFails() throws Exception {
+        PermitDataSource dataSource = new PermitDataSource(target, 1, 50);
+        Connection held = dataSource.getConnection();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isGreaterThanOrEqualTo(50);
+        assertThat(target.opened).hasValue(1);
+        held.close();
+    }
+
+    @Test
+    void checkoutParksUntilAConnectionIsClosed() throws Exception {
+        PermitDataSource dataSource = new PermitDataSource(target, 1, 5000);
+        Connection held = dataSource.getConnection();
+        Future<Connection> waiting = callers.submit(() -> dataSource.getConnection());
+
+        Thread.sleep(50);
+        assertThat(waiting).isNotDone();
+        held.close();
+
+        waiting.get(5, TimeUnit.SECONDS).close();
+        assertThat(target.opened).hasValue(2);
+        assertThat(target.closed).hasValue(2);
+    }
+
+    @Test
+    void secondCloseDoesNotReturnAnotherPermit() throws Exception {
+        PermitDataSource dataSource = new PermitDataSource(target, 1, 50);
+        Connection first = dataSource.getConnection();
+        first.close();
+        first.close();
+
+        Connection second = dataSource.getConnection();
+
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLTransientConnectionException.class);
+        second.close();
+    }
+
+    @Test
+    void failedCheckoutReturnsItsPermit() throws Exception {
+        PermitDataSource dataSource = new PermitDataSource(target, 1, 50);
+        target.failures.set(1);
+
+        assertThatThrownBy(dataSource::getConnection).isInstanceOf(SQLException.class)
+                .isNotInstanceOf(SQLTransientConnectionException.class);
+
+        dataSource.getConnection().close();
+        assertThat(target.opened).hasValue(1);
+    }
+
+    // hands out connection stand-ins that only count their closes
+    private static final class CountingDataSource implements DataSource {
+        private final AtomicInteger opened = new AtomicInteger();
+        private final AtomicInteger closed = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new SQLException("Connection refused");
+            }
+            opened.incrementAndGet();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        if ("close".equals(method.getName())) {
+                            closed.incrementAndGet();
+                        }
+                        return null;
+                    });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() {
+            return Logger.getGlobal();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) {
+            return null;
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package info.search.parser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import info.search.exception.UnsupportedFormatException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocumentParsersTest {
+    // in the order the @Order annotations give them
+    private final DocumentParsers parsers = new DocumentParsers(List.of(
+            new PdfDocumentParser(), new EpubDocumentParser(), new Fb2DocumentParser(), new TextDocumentParser()));
+
+    @Test
+    void detectsFormatsByTheirLeadingBytes() throws Exception {
+        byte[] pdf = "%PDF-1.7\n".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertThat(parsers.detect(null, "upload", pdf)).isInstanceOf(PdfDocumentParser.class);
+        assertThat(parsers.detect(null, "upload", Fixtures.epub())).isInstanceOf(EpubDocumentParser.class);
+        assertThat(parsers.detect(null, "upload", Fixtures.bytes("sample.fb2"))).isInstanceOf(Fb2DocumentParser.class);
+    }
+
+    @Test
+    void leadingBytesWinOverAMisleadingName() throws Exception {
+        assertThat(parsers.detect("text/plain", "book.txt", Fixtures.epub()))
+                .isInstanceOf(EpubDocumentParser.class);
+    }
+
+    @Test
+    void detectsFormatsByNameAndContentType() {
+        byte[] none = new byte[0];
+
+        assertThat(parsers.detect(null, "Book.EPUB", none)).isInstanceOf(EpubDocumentParser.class);
+        assertThat(parsers.detect(null, "book.fb2", none)).isInstanceOf(Fb2DocumentParser.class);
+        assertThat(parsers.detect(null, "notes.txt", none)).isInstanceOf(TextDocumentParser.class);
+        assertThat(parsers.detect("application/epub+zip", null, none)).isInstanceOf(EpubDocumentParser.class);
+        assertThat(parsers.detect("Application/X-FictionBook+XML", null, none))
+                .isInstanceOf(Fb2DocumentParser.class);
+        assertThat(parsers.detect("text/plain; charset=UTF-8", "upload", none))
+                .isInstanceOf(TextDocumentParser.class);
+    }
+
+    @Test
+    void zipThatIsNotAnEpubIsRejected() {
+        // a zip whose first entry is not the EPUB mimetype
+        byte[] zip = {'P', 'K', 3, 4, 20, 0, 0, 0, 8, 0};
+
+        assertThatThrownBy(() -> parsers.detect("application/zip", "archive.zip", zip))
+                .isInstanceOf(UnsupportedFormatException.class)
+                .hasMessageContaining("archive.zip")
+                .hasMessageContaining("[pdf, epub, fb2, txt]");
+    }
+
+    @Test
+    void streamDetectionLeavesTheStreamAtTheStart() throws Exception {
+        byte[] fb2 = Fixtures.bytes("sample.fb2");
+        BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(fb2));
+
+        assertThat(parsers.detect(null, null, in)).isInstanceOf(Fb2DocumentParser.class);
+        assertThat(in.readAllBytes()).isEqualTo(fb2);
+    }
+
+    @Test
+    void supportedNamesFollowTheParsers() {
+        assertThat(parsers.isSupportedName("a/b/Book.Fb2")).isTrue();
+        assertThat(parsers.isSupportedName("book.epub")).isTrue();
+        assertThat(parsers.isSupportedName("book.pdf")).isTrue();
+        assertThat(parsers.isSupportedName("book.docx")).isFalse();
+        assertThat(parsers.isSupportedName("fb2")).isFalse();
+        assertThat(parsers.isSupportedName(null)).isFalse();
+    }
+
+    @Test
+    void titleFallsBackToTheFileName() {
+        assertThat(DocumentParsers.titleOf("Moby-Dick", "whale.fb2")).isEqualTo("Moby-Dick");
+        assertThat(DocumentParsers.titleOf("  ", "books/whale.fb2")).isEqualTo("whale");
+        assertThat(DocumentParsers.titleOf(null, "C:\\books\\the.whale.txt")).isEqualTo("the.whale");
+        assertThat(DocumentParsers.titleOf(null, ".profile")).isEqualTo(".profile");
+        assertThat(DocumentParsers.titleOf(null, null)).isEmpty();
+    }
+}
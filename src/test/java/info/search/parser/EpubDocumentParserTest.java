@@ -0,0 +1,61 @@
+package info.search.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import info.search.model.Doc;
+import info.search.model.Paragraph;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EpubDocumentParserTest {
+    private final EpubDocumentParser parser = new EpubDocumentParser();
+
+    @Test
+    void readsTitleAndCreatorsFromThePackage() throws Exception {
+        Doc doc = Fixtures.parse(parser, Fixtures.epub());
+
+        assertThat(doc.getTitle()).isEqualTo("Harbour Lights");
+        assertThat(doc.getAuthor()).isEqualTo("Clara Wynn, Dev Rao");
+    }
+
+    @Test
+    void spineFilesAndHeadingsStartSections() throws Exception {
+        Doc doc = Fixtures.parse(parser, Fixtures.epub());
+
+        // the head, its title and the script are skipped; &nbsp; reads as a space
+        assertThat(doc.getParagraphs()).containsExactly(
+                new Paragraph("The lamps were lit at dusk.", "", null, 1),
+                new Paragraph("The Keeper", "The Keeper", "The Keeper", 2),
+                new Paragraph("He climbed the stairs slowly.", "The Keeper", "The Keeper", 2),
+                new Paragraph("Ships came home.", "", null, 3),
+                new Paragraph("One", "", null, 3),
+                new Paragraph("Two", "", null, 3));
+    }
+
+    @Test
+    void fileOnDiskReadsLikeAStream(@TempDir Path dir) throws Exception {
+        Path file = Files.write(dir.resolve("book.epub"), Fixtures.epub());
+
+        Doc doc = DocumentParsers.collect(parser, file);
+
+        assertThat(doc.getParagraphs()).isEqualTo(Fixtures.parse(parser, Fixtures.epub()).getParagraphs());
+        assertThat(doc.getTitle()).isEqualTo("Harbour Lights");
+    }
+
+    @Test
+    void externalEntitiesAreNotExpanded(@TempDir Path dir) throws Exception {
+        Path secret = Files.writeString(dir.resolve("secret.txt"), "launch codes");
+        String chapter = new String(Fixtures.bytes("epub/OEBPS/text/xxe.xhtml"), StandardCharsets.UTF_8)
+                .replace("SECRET_URI", secret.toUri().toString());
+        byte[] epub = Fixtures.epub(Map.of("OEBPS/text/chapter2.xhtml", chapter.getBytes(StandardCharsets.UTF_8)));
+
+        Doc doc = Fixtures.parse(parser, epub);
+
+        assertThat(doc.getContent()).doesNotContain("launch codes");
+        assertThat(doc.getParagraphs()).extracting(Paragraph::text).contains("Before after.");
+    }
+}
@@ -0,0 +1,44 @@
+package info.search.parser;
+
+import javax.xml.stream.XMLStreamException;
+import info.search.model.Doc;
+import info.search.model.Paragraph;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Fb2DocumentParserTest {
+    private final Fb2DocumentParser parser = new Fb2DocumentParser();
+
+    @Test
+    void readsTitleAndEveryAuthorFromTitleInfo() throws Exception {
+        Doc doc = Fixtures.parse(parser, Fixtures.bytes("sample.fb2"));
+
+        assertThat(doc.getTitle()).isEqualTo("The Tide Book");
+        // the document-info author is the file's editor, not the book's
+        assertThat(doc.getAuthor()).isEqualTo("Anna M. Reed, Boris Stone");
+    }
+
+    @Test
+    void paragraphsCarryTheirSectionPath() throws Exception {
+        Doc doc = Fixtures.parse(parser, Fixtures.bytes("sample.fb2"));
+
+        assertThat(doc.getParagraphs()).containsExactly(
+                new Paragraph("Chapter One", "Chapter One", "Chapter One", 1),
+                new Paragraph("The tide came in at dawn today.", "Chapter One", "Chapter One", 1),
+                new Paragraph("Gulls followed the boats.", "Chapter One", "Chapter One", 1),
+                new Paragraph("A Storm", "Chapter One / A Storm", "A Storm", 2),
+                new Paragraph("Rain fell hard all night.", "Chapter One / A Storm", "A Storm", 2),
+                new Paragraph("Chapter Two", "Chapter Two", "Chapter Two", 3),
+                new Paragraph("Morning was quiet.", "Chapter Two", "Chapter Two", 3));
+        assertThat(doc.getContent()).startsWith("Chapter One\nThe tide came in at dawn today.\n");
+    }
+
+    @Test
+    void doctypeIsRejectedBeforeAnyEntityIsRead() {
+        assertThatThrownBy(() -> Fixtures.parse(parser, Fixtures.bytes("xxe.fb2")))
+                .isInstanceOf(XMLStreamException.class)
+                .hasMessageContaining("DOCTYPE is disallowed");
+    }
+}
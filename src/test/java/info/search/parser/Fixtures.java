@@ -0,0 +1,65 @@
+package info.search.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import info.search.model.Doc;
+
+/** The files under {@code parser/} in the test resources, and the EPUB zipped from them. */
+final class Fixtures {
+    private static final List<String> EPUB_ENTRIES = List.of(
+            "META-INF/container.xml", "OEBPS/content.opf", "OEBPS/text/chapter 1.xhtml", "OEBPS/text/chapter2.xhtml");
+
+    private Fixtures() {
+    }
+
+    static byte[] bytes(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/parser/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No fixture " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static Doc parse(DocumentParser parser, byte[] file) throws Exception {
+        return DocumentParsers.collect(parser, new ByteArrayInputStream(file));
+    }
+
+    /** The sample EPUB, with the entries in {@code replaced} swapped for other content. */
+    static byte[] epub(Map<String, byte[]> replaced) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            // the mimetype goes first and uncompressed, so its name sits at offset 30
+            byte[] mimetype = bytes("epub/mimetype");
+            ZipEntry entry = new ZipEntry("mimetype");
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(mimetype.length);
+            entry.setCrc(crc.getValue());
+            zip.putNextEntry(entry);
+            zip.write(mimetype);
+            zip.closeEntry();
+            for (String name : EPUB_ENTRIES) {
+                zip.putNextEntry(new ZipEntry(name));
+                zip.write(replaced.containsKey(name) ? replaced.get(name) : bytes("epub/" + name));
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] epub() throws IOException {
+        return epub(Map.of());
+    }
+}
@@ -0,0 +1,44 @@
+package info.search.parser;
+
+import java.nio.charset.StandardCharsets;
+import info.search.model.Doc;
+import info.search.model.Paragraph;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextDocumentParserTest {
+    private final TextDocumentParser parser = new TextDocumentParser();
+
+    @Test
+    void blankLinesSplitParagraphs() throws Exception {
+        Doc doc = Fixtures.parse(parser, Fixtures.bytes("sample.txt"));
+
+        // the byte order mark is dropped, a line of spaces counts as blank
+        assertThat(doc.getParagraphs()).extracting(Paragraph::text)
+                .containsExactly("First paragraph, still the first.", "Second paragraph.", "Third.");
+        assertThat(doc.getParagraphs()).extracting(Paragraph::sectionOrdinal).containsOnly(0);
+    }
+
+    @Test
+    void plainTextHasNoMetadata() throws Exception {
+        Doc doc = Fixtures.parse(parser, Fixtures.bytes("sample.txt"));
+
+        assertThat(doc.getTitle()).isEmpty();
+        assertThat(doc.getAuthor()).isEmpty();
+    }
+
+    @Test
+    void longParagraphIsCutAtALineEnd() throws Exception {
+        String line = "x".repeat(1000);
+        String text = (line + "\n").repeat(40);
+
+        Doc doc = Fixtures.parse(parser, text.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(doc.getParagraphs()).hasSizeGreaterThan(1);
+        assertThat(doc.getParagraphs()).allSatisfy(p -> {
+            assertThat(p.text().length()).isLessThanOrEqualTo(TextDocumentParser.MAX_PARAGRAPH + line.length() + 1);
+            assertThat(p.text()).matches("x{1000}( x{1000})*");
+        });
+    }
+}
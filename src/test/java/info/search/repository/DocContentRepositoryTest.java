@@ -0,0 +1,171 @@
+package info.search.repository;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import info.search.config.IngestionProperties;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class DocContentRepositoryTest {
+    // the smallest block the repository allows, so a short body spans several
+    private static final int BLOCK_CHARS = 1024;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private static JdbcTemplate jdbc;
+
+    private DocContentRepository repository;
+
+    @BeforeAll
+    static void createSchema() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+    }
+
+    @BeforeEach
+    void setUp() {
+        IngestionProperties props = new IngestionProperties();
+        props.getBody().setBlockChars(BLOCK_CHARS);
+        repository = new DocContentRepository(jdbc, props);
+    }
+
+    @Test
+    void bodyLongerThanABlockReadsBackWhole() {
+        Long docId = newDoc();
+        String body = sentences(400);
+
+        repository.save(docId, body);
+
+        assertThat(read(docId)).isEqualTo(body);
+        List<Integer> lengths = blockLengths(docId);
+        assertThat(lengths).hasSizeGreaterThan(5);
+        // a block one char short left a surrogate pair to the next
+        assertThat(lengths.subList(0, lengths.size() - 1))
+                .allSatisfy(length -> assertThat(length).isBetween(BLOCK_CHARS - 1, BLOCK_CHARS));
+        assertThat(lengths.stream().mapToInt(Integer::intValue).sum()).isEqualTo(body.length());
+    }
+
+    @Test
+    void surrogatePairAtABlockEndMovesToTheNextBlock() {
+        Long docId = newDoc();
+        // the whale's high surrogate is the last char of the first block
+        String body = "a".repeat(BLOCK_CHARS - 1) + "🐋" + "b".repeat(BLOCK_CHARS) + "🐋";
+
+        repository.save(docId, body);
+
+        assertThat(read(docId)).isEqualTo(body);
+        assertThat(blockLengths(docId)).containsExactly(BLOCK_CHARS - 1, BLOCK_CHARS, 4);
+        assertThat(jdbc.queryForList("SELECT char_offset FROM doc_block WHERE doc_id = ? ORDER BY block_no",
+                Integer.class, docId)).containsExactly(0, BLOCK_CHARS - 1, 2 * BLOCK_CHARS - 1);
+    }
+
+    @Test
+    void chunksAreCutOutOfTheBlocksTheySpan() {
+        Long docId = newDoc();
+        String body = sentences(200);
+        repository.save(docId, body);
+        chunk("inside", docId, 10, 300);
+        chunk("across", docId, BLOCK_CHARS - 100, 250);
+        chunk("three-blocks", docId, BLOCK_CHARS - 10, BLOCK_CHARS + 20);
+        chunk("tail", docId, body.length() - 40, 40);
+        chunk("stored-text", docId, null, null);
+
+        Map<String, String> texts = repository.readChunks(
+                List.of("inside", "across", "three-blocks", "tail", "stored-text", "missing"));
+
+        assertThat(texts).containsOnlyKeys("inside", "across", "three-blocks", "tail");
+        assertThat(texts.get("inside")).isEqualTo(body.substring(10, 310));
+        assertThat(texts.get("across")).isEqualTo(body.substring(BLOCK_CHARS - 100, BLOCK_CHARS + 150));
+        assertThat(texts.get("three-blocks")).isEqualTo(body.substring(BLOCK_CHARS - 10, 2 * BLOCK_CHARS + 10));
+        assertThat(texts.get("tail")).isEqualTo(body.substring(body.length() - 40));
+    }
+
+    @Test
+    void flushedWriterMakesTheTextSoFarReadable() {
+        Long docId = newDoc();
+        String body = sentences(100);
+        int half = body.length() / 2;
+        chunk("first-half", docId, half - 200, 200);
+
+        DocContentRepository.BodyWriter writer = repository.writer(docId);
+        writer.write(body.toCharArray(), 0, half);
+        writer.flush();
+
+        assertThat(repository.readChunks(List.of("first-half")))
+                .containsEntry("first-half", body.substring(half - 200, half));
+
+        writer.write(body.toCharArray(), half, body.length() - half);
+        writer.close();
+
+        assertThat(read(docId)).isEqualTo(body);
+        assertThat(blockLengths(docId).stream().mapToInt(Integer::intValue).sum()).isEqualTo(body.length());
+    }
+
+    @Test
+    void updateReplacesTheBlocks() {
+        Long docId = newDoc();
+        repository.save(docId, sentences(300));
+
+        repository.update(docId, "Short now.");
+
+        assertThat(read(docId)).isEqualTo("Short now.");
+        assertThat(blockLengths(docId)).containsExactly(10);
+    }
+
+    @Test
+    void emptyBodyHasNoBlocksButExists() {
+        Long docId = newDoc();
+
+        repository.save(docId, "");
+
+        assertThat(blockLengths(docId)).isEmpty();
+        assertThat(repository.writeTo(docId, new StringWriter())).isTrue();
+        assertThat(repository.writeTo(-1L, new StringWriter())).isFalse();
+    }
+
+    private static Long newDoc() {
+        return jdbc.queryForObject("INSERT INTO doc (title) VALUES ('Title') RETURNING id", Long.class);
+    }
+
+    private static void chunk(String vectorId, Long docId, Integer offset, Integer length) {
+        jdbc.update("INSERT INTO doc_chunk (vector_id, doc_id, char_offset, char_length) VALUES (?, ?, ?, ?)",
+                vectorId, docId, offset, length);
+    }
+
+    private String read(Long docId) {
+        StringWriter out = new StringWriter();
+        assertThat(repository.writeTo(docId, out)).isTrue();
+        return out.toString();
+    }
+
+    private static List<Integer> blockLengths(Long docId) {
+        return jdbc.queryForList("SELECT char_length FROM doc_block WHERE doc_id = ? ORDER BY block_no",
+                Integer.class, docId);
+    }
+
+    // mixed one-, two- and four-byte text, so offsets in chars and bytes differ
+    private static String sentences(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> "Sentence " + i + " о ките 🐋 swims on.")
+                .collect(Collectors.joining("\n"));
+    }
+}
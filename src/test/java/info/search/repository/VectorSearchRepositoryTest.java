@@ -0,0 +1,163 @@
+package info.search.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import javax.sql.DataSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import info.search.config.SearchProperties;
+import info.search.config.VectorStoreProperties;
+import info.search.model.VectorHit;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class VectorSearchRepositoryTest {
+    private static final int DIMENSIONS = 8;
+    private static final int ROWS = 300;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    // one connection, so session settings of a test reach the statements it explains
+    private static RecordingJdbcTemplate jdbc;
+
+    private VectorSearchRepository repository;
+
+    @BeforeAll
+    static void createTable() {
+        jdbc = new RecordingJdbcTemplate(new SingleConnectionDataSource(
+                POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword(), true));
+        jdbc.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbc.execute("CREATE TABLE public.vector_store (id uuid PRIMARY KEY, content text, metadata json, "
+                + "embedding vector(" + DIMENSIONS + "), doc_id bigint)");
+        jdbc.execute("CREATE INDEX vector_store_embedding_idx ON public.vector_store "
+                + "USING hnsw (embedding vector_cosine_ops)");
+        jdbc.execute("CREATE INDEX vector_store_doc_id_idx ON public.vector_store (doc_id)");
+        Random random = new Random(7);
+        List<Object[]> rows = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            rows.add(new Object[]{UUID.randomUUID(), "chunk " + i,
+                    "{\"title\": \"Title\", \"chunkIndex\": " + i + "}", new PGvector(vector(random)),
+                    (long) (i % 3)});
+        }
+        jdbc.batchUpdate("INSERT INTO public.vector_store (id, content, metadata, embedding, doc_id) "
+                + "VALUES (?, ?, ?::json, ?, ?)", rows);
+        jdbc.execute("ANALYZE public.vector_store");
+    }
+
+    @BeforeEach
+    void setUp() {
+        repository = new VectorSearchRepository(jdbc, new ObjectMapper(), "public", "vector_store",
+                "COSINE_DISTANCE", "HNSW", new SearchProperties(), new VectorStoreProperties());
+    }
+
+    @Test
+    void corpusSearchReadsItsCandidatesFromTheHnswIndex() {
+        repository.findNearest(vector(new Random(1)), null, -1, null, null, 10);
+
+        assertThat(explain()).contains("Index Scan using vector_store_embedding_idx");
+    }
+
+    @Test
+    void keysetPageReadsItsCandidatesFromTheHnswIndex() {
+        float[] query = vector(new Random(2));
+        VectorHit last = repository.findNearest(query, null, -1, null, null, 5).getLast();
+
+        repository.findNearest(query, null, -1, last.distance(), last.vectorId(), 5);
+
+        assertThat(explain()).contains("Index Scan using vector_store_embedding_idx");
+    }
+
+    @Test
+    void corpusSearchReturnsTheExactNearestInDistanceAndIdOrder() {
+        float[] query = vector(new Random(3));
+
+        List<VectorHit> hits = repository.findNearest(query, null, -1, null, null, 10);
+
+        assertThat(hits).extracting(VectorHit::vectorId).containsExactlyElementsOf(exact(query, null, 10));
+    }
+
+    @Test
+    void documentSearchRanksEveryRowOfTheDocumentWithoutTheHnswIndex() {
+        float[] query = vector(new Random(4));
+
+        List<VectorHit> hits = repository.findNearest(query, 1L, -1, null, null, 10);
+
+        assertThat(hits).extracting(VectorHit::vectorId).containsExactlyElementsOf(exact(query, 1L, 10));
+        assertThat(explain()).doesNotContain("vector_store_embedding_idx");
+    }
+
+    @Test
+    void thresholdIsASimilarityForEveryDistanceType() {
+        assertThresholdBoundsSimilarity("COSINE_DISTANCE", 0.3);
+        assertThresholdBoundsSimilarity("NEGATIVE_INNER_PRODUCT", 0.5);
+        assertThresholdBoundsSimilarity("EUCLIDEAN_DISTANCE", 0.25);
+    }
+
+    // exactly the rows of a document scoring above the threshold pass, whatever the operator
+    private static void assertThresholdBoundsSimilarity(String distanceType, double threshold) {
+        VectorSearchRepository repository = new VectorSearchRepository(jdbc, new ObjectMapper(), "public",
+                "vector_store", distanceType, "HNSW", new SearchProperties(), new VectorStoreProperties());
+        float[] query = vector(new Random(5));
+
+        List<VectorHit> all = repository.findNearest(query, 1L, Double.NEGATIVE_INFINITY, null, null, ROWS);
+        List<VectorHit> hits = repository.findNearest(query, 1L, threshold, null, null, ROWS);
+
+        assertThat(hits).as(distanceType).isNotEmpty().hasSizeLessThan(all.size())
+                .containsExactlyElementsOf(all.stream().filter(hit -> hit.score() > threshold).toList());
+    }
+
+    // the plan of the statement findNearest ran last, with the sequential scan priced out
+    private static String explain() {
+        jdbc.execute("SET enable_seqscan = off");
+        try {
+            return String.join("\n", jdbc.queryForList("EXPLAIN " + jdbc.sql, String.class, jdbc.args));
+        } finally {
+            jdbc.execute("RESET enable_seqscan");
+        }
+    }
+
+    private static List<String> exact(float[] query, Long docId, int limit) {
+        Long[] docIds = docId == null ? new Long[]{0L, 1L, 2L} : new Long[]{docId};
+        return jdbc.queryForList("SELECT id::text FROM public.vector_store WHERE doc_id = ANY (?) "
+                + "ORDER BY embedding <=> ?, id LIMIT ?", String.class, docIds, new PGvector(query), limit);
+    }
+
+    private static float[] vector(Random random) {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static final class RecordingJdbcTemplate extends JdbcTemplate {
+        private String sql;
+        private Object[] args;
+
+        RecordingJdbcTemplate(DataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            this.sql = sql;
+            this.args = args;
+            return super.query(sql, rowMapper, args);
+        }
+    }
+}
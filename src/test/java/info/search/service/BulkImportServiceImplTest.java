@@ -0,0 +1,238 @@
+package info.search.service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import info.search.config.EmbeddingProperties;
+import info.search.config.IngestionProperties;
+import info.search.config.SearchProperties;
+import info.search.config.VectorStoreProperties;
+import info.search.dto.ImportFileDto;
+import info.search.dto.ImportJobDto;
+import info.search.mapper.impl.ImportJobMapperImpl;
+import info.search.model.Doc;
+import info.search.parser.DocumentParsers;
+import info.search.parser.Fb2DocumentParser;
+import info.search.parser.TextDocumentParser;
+import info.search.repository.DocBatchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkImportServiceImplTest {
+    @TempDir
+    Path root;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final IngestionProperties props = new IngestionProperties();
+    private final InMemoryDocs docs = new InMemoryDocs();
+    private final FailingStore store = new FailingStore();
+    private final List<ThreadPoolTaskExecutor> executors = new ArrayList<>();
+    private BulkImportServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectory(root.resolve("library"));
+        props.getBulk().setRoot(root.toString());
+        EmbeddingProperties embeddingProps = new EmbeddingProperties();
+        embeddingProps.setMaxAttempts(1);
+        VectorStoreProperties vectorStoreProps = new VectorStoreProperties();
+        vectorStoreProps.setBackend(VectorStoreProperties.Backend.HNSW);
+        EmbeddingExecutor embeddingExecutor = new EmbeddingExecutor(store, null, null, vectorStoreProps,
+                embeddingProps, executor(2), registry);
+        service = new BulkImportServiceImpl(docs, new SectionChunker(props.getChunking()), store,
+                embeddingExecutor, new SearchResultCache(new SearchProperties(), registry),
+                new StageTimers(registry), registry, new ImportJobMapperImpl(), props, executor(1), executor(2),
+                new DocumentParsers(List.of(new Fb2DocumentParser(), new TextDocumentParser())));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executors.forEach(ThreadPoolTaskExecutor::shutdown);
+    }
+
+    @Test
+    void duplicateFilesAreImportedOnce() throws Exception {
+        write("moby.txt", "Call me Ishmael.");
+        write("copy/moby.txt", "Call me   Ishmael.\n");
+        write("walden.txt", "I went to the woods.");
+
+        ImportJobDto job = importLibrary();
+
+        assertThat(job.getFilesFound()).isEqualTo(3);
+        assertThat(job.getFilesImported()).isEqualTo(2);
+        assertThat(job.getFilesDuplicate()).isEqualTo(1);
+        assertThat(docs.titles()).containsExactlyInAnyOrder("moby", "walden");
+        assertThat(result(job, "walden.txt").getResult()).isEqualTo("IMPORTED");
+    }
+
+    @Test
+    void filesAlreadyInTheLibraryAreDuplicates() throws Exception {
+        write("moby.txt", "Call me Ishmael.");
+        importLibrary();
+        write("walden.txt", "I went to the woods.");
+
+        ImportJobDto job = importLibrary();
+
+        assertThat(result(job, "moby.txt").getResult()).isEqualTo("DUPLICATE");
+        assertThat(result(job, "walden.txt").getResult()).isEqualTo("IMPORTED");
+        assertThat(docs.titles()).containsExactlyInAnyOrder("moby", "walden");
+    }
+
+    @Test
+    void fileStoredByAConcurrentImportIsADuplicate() throws Exception {
+        write("moby.txt", "Call me Ishmael.");
+        write("walden.txt", "I went to the woods.");
+        docs.concurrentTitles.add("moby");
+
+        ImportJobDto job = importLibrary();
+
+        assertThat(result(job, "moby.txt").getResult()).isEqualTo("DUPLICATE");
+        assertThat(result(job, "walden.txt").getResult()).isEqualTo("IMPORTED");
+    }
+
+    @Test
+    void unparsableFileFailsAlone() throws Exception {
+        write("moby.txt", "Call me Ishmael.");
+        write("broken.fb2", "<FictionBook><body><p>never closed");
+
+        ImportJobDto job = importLibrary();
+
+        assertThat(job.getStatus()).isEqualTo("COMPLETED");
+        assertThat(result(job, "broken.fb2").getResult()).isEqualTo("FAILED");
+        assertThat(result(job, "broken.fb2").getError()).startsWith("Error while parsing document");
+        assertThat(result(job, "moby.txt").getResult()).isEqualTo("IMPORTED");
+    }
+
+    @Test
+    void failedEmbeddingFailsOnlyItsBatch() throws Exception {
+        props.getBulk().setBatchSize(1);
+        write("moby.txt", "Call me Ishmael.");
+        write("poison.txt", "poison in the well");
+        write("walden.txt", "I went to the woods.");
+
+        ImportJobDto job = importLibrary();
+
+        ImportFileDto poisoned = result(job, "poison.txt");
+        assertThat(poisoned.getResult()).isEqualTo("FAILED");
+        assertThat(poisoned.getError()).startsWith("Vector store failed");
+        assertThat(result(job, "moby.txt").getResult()).isEqualTo("IMPORTED");
+        assertThat(result(job, "walden.txt").getResult()).isEqualTo("IMPORTED");
+        assertThat(docs.titles()).containsExactlyInAnyOrder("moby", "walden");
+        assertThat(store.deleted).isNotEmpty();
+    }
+
+    private ImportJobDto importLibrary() throws InterruptedException {
+        ImportJobDto job = service.importDirectory("library");
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (job.getStatus().equals("RUNNING") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            job = service.getImport(job.getId());
+        }
+        assertThat(job.getStatus()).isNotEqualTo("RUNNING");
+        return job;
+    }
+
+    private void write(String name, String text) throws Exception {
+        Path file = root.resolve("library").resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, text);
+    }
+
+    private static ImportFileDto result(ImportJobDto job, String name) {
+        return job.getFiles().stream().filter(f -> f.getFileName().equals(name)).findFirst().orElseThrow();
+    }
+
+    private ThreadPoolTaskExecutor executor(int threads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.initialize();
+        executors.add(executor);
+        return executor;
+    }
+
+    // the doc table reduced to its unique content hashes
+    private static final class InMemoryDocs extends DocBatchRepository {
+        private final Map<Long, Doc> stored = new ConcurrentHashMap<>();
+        private final AtomicLong ids = new AtomicLong();
+        // titles another import stores between the hash check and the insert
+        private final Set<String> concurrentTitles = ConcurrentHashMap.newKeySet();
+
+        InMemoryDocs() {
+            super(null, null, null);
+        }
+
+        @Override
+        public Set<String> findExistingHashes(Collection<String> hashes) {
+            return stored.values().stream().map(Doc::getContentHash).filter(hashes::contains)
+                    .collect(Collectors.toSet());
+        }
+
+        @Override
+        public synchronized List<Doc> insertAll(List<Doc> batch) {
+            List<Doc> inserted = new ArrayList<>();
+            for (Doc doc : batch) {
+                if (!concurrentTitles.contains(doc.getTitle())
+                        && findExistingHashes(List.of(doc.getContentHash())).isEmpty()) {
+                    doc.setId(ids.incrementAndGet());
+                    stored.put(doc.getId(), doc);
+                    inserted.add(doc);
+                }
+            }
+            return inserted;
+        }
+
+        @Override
+        public void insertChunks(List<Document> chunks) {
+        }
+
+        @Override
+        public void deleteAll(Collection<Long> docIds) {
+            docIds.forEach(stored::remove);
+        }
+
+        List<String> titles() {
+            return stored.values().stream().map(Doc::getTitle).toList();
+        }
+    }
+
+    private static final class FailingStore implements VectorStore {
+        private final List<String> deleted = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void add(List<Document> documents) {
+            if (documents.stream().anyMatch(d -> d.getText().contains("poison"))) {
+                throw new IllegalStateException("poisoned batch");
+            }
+        }
+
+        @Override
+        public Optional<Boolean> delete(List<String> ids) {
+            deleted.addAll(ids);
+            return Optional.of(true);
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return List.of();
+        }
+    }
+}
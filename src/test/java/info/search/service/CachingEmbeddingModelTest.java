@@ -0,0 +1,155 @@
+package info.search.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import info.search.config.EmbeddingProperties;
+import info.search.repository.EmbeddingCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingEmbeddingModelTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RecordingModel model = new RecordingModel();
+    private final InMemoryRepository repository = new InMemoryRepository();
+    private final EmbeddingProperties.Cache props = new EmbeddingProperties.Cache();
+
+    @Test
+    void textsRepeatedInOneBatchAreEmbeddedOnce() {
+        List<float[]> vectors = cache().embed(List.of("the whale", "the sea", "the whale", "  the   whale "));
+
+        assertThat(model.requests).containsExactly(List.of("the whale", "the sea"));
+        assertThat(vectors).hasSize(4);
+        assertThat(vectors.get(2)).isEqualTo(vectors.get(0));
+        assertThat(vectors.get(3)).isEqualTo(vectors.get(0));
+        assertThat(vectors.get(1)).isNotEqualTo(vectors.get(0));
+        assertThat(requests("model", "miss")).isEqualTo(4);
+    }
+
+    @Test
+    void memoryTierAnswersWithoutTheModelOrTheDatabase() {
+        CachingEmbeddingModel cache = cache();
+        float[] first = cache.embed("the whale");
+        int lookups = repository.lookups;
+
+        float[] second = cache.embed("the whale");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(model.requests).hasSize(1);
+        assertThat(repository.lookups).isEqualTo(lookups);
+        assertThat(requests("memory", "hit")).isEqualTo(1);
+    }
+
+    @Test
+    void databaseTierAnswersForAFreshMemoryTier() {
+        float[] stored = cache().embed("the whale");
+
+        // a second instance shares the table but not the memory tier, like after a restart
+        CachingEmbeddingModel restarted = cache();
+        float[] found = restarted.embed(List.of("the whale", "the sea")).getFirst();
+        restarted.embed("the whale");
+
+        assertThat(found).isEqualTo(stored);
+        assertThat(model.requests).containsExactly(List.of("the whale"), List.of("the sea"));
+        assertThat(requests("database", "hit")).isEqualTo(1);
+        assertThat(requests("memory", "hit")).isEqualTo(1);
+        assertThat(repository.entries).hasSize(2);
+    }
+
+    @Test
+    void failingDatabaseFallsBackToTheModel() {
+        repository.failing = true;
+
+        float[] vector = cache().embed("the whale");
+
+        assertThat(vector).isEqualTo(RecordingModel.vector("the whale"));
+        assertThat(model.requests).containsExactly(List.of("the whale"));
+    }
+
+    @Test
+    void nonPersistentCacheLeavesTheDatabaseAlone() {
+        props.setPersistent(false);
+
+        cache().embed("the whale");
+        cache().embed("the whale");
+
+        assertThat(repository.lookups).isZero();
+        assertThat(repository.entries).isEmpty();
+        assertThat(model.requests).hasSize(2);
+    }
+
+    private CachingEmbeddingModel cache() {
+        return new CachingEmbeddingModel(model, repository, props, registry);
+    }
+
+    private double requests(String tier, String result) {
+        return registry.counter("embedding.cache.requests", "tier", tier, "result", result).count();
+    }
+
+    private static final class RecordingModel implements EmbeddingModel {
+        private final List<List<String>> requests = new ArrayList<>();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            requests.add(List.copyOf(request.getInstructions()));
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(vector(text), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 2;
+        }
+
+        static float[] vector(String text) {
+            return new float[]{text.length(), text.hashCode()};
+        }
+    }
+
+    private static final class InMemoryRepository extends EmbeddingCacheRepository {
+        private final Map<String, float[]> entries = new HashMap<>();
+        private int lookups;
+        private boolean failing;
+
+        InMemoryRepository() {
+            super(null);
+        }
+
+        @Override
+        public Map<String, float[]> findByKeys(Collection<String> keys) {
+            lookups++;
+            if (failing) {
+                throw new DataAccessResourceFailureException("database down");
+            }
+            Map<String, float[]> found = new HashMap<>();
+            keys.stream().filter(entries::containsKey).forEach(key -> found.put(key, entries.get(key)));
+            return found;
+        }
+
+        @Override
+        public void saveAll(String modelId, Map<String, float[]> computed) {
+            if (failing) {
+                throw new DataAccessResourceFailureException("database down");
+            }
+            entries.putAll(computed);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package info.search.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import info.search.model.Doc;
+import info.search.model.DocChunk;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChunkDiffTest {
+
+    @Test
+    void sameVersionIsUnchanged() {
+        List<Document> stored = version(chunk("one", 0), chunk("two", 4), chunk("three", 8));
+
+        ChunkDiff diff = ChunkDiff.of(rows(stored), version(chunk("one", 0), chunk("two", 4), chunk("three", 8)),
+                false);
+
+        assertThat(diff.unchanged()).isEqualTo(3);
+        assertThat(diff.added()).isEmpty();
+        assertThat(diff.moved()).isEmpty();
+        assertThat(diff.shifted()).isEmpty();
+        assertThat(diff.orphaned()).isEmpty();
+    }
+
+    @Test
+    void editBeforeAChunkOnlyShiftsIt() {
+        List<Document> stored = version(chunk("one", 0), chunk("two", 4));
+
+        // the first chunk grew, the second starts later in the body but keeps its index
+        ChunkDiff diff = ChunkDiff.of(rows(stored), version(chunk("one more", 0), chunk("two", 9)), false);
+
+        assertThat(diff.shifted()).singleElement().satisfies(doc -> {
+            assertThat(doc.getId()).isEqualTo(stored.get(1).getId());
+            assertThat(doc.getMetadata()).containsEntry("charOffset", 9);
+        });
+        assertThat(diff.added()).extracting(Document::getText).containsExactly("one more");
+        assertThat(diff.orphaned()).containsExactly(stored.get(0).getId());
+        assertThat(diff.moved()).isEmpty();
+        assertThat(diff.unchanged()).isZero();
+    }
+
+    @Test
+    void insertedChunkMovesTheOnesAfterIt() {
+        List<Document> stored = version(chunk("one", 0), chunk("two", 4));
+
+        ChunkDiff diff = ChunkDiff.of(rows(stored),
+                version(chunk("new", 0), chunk("one", 4), chunk("two", 8)), false);
+
+        assertThat(diff.added()).extracting(Document::getText).containsExactly("new");
+        assertThat(diff.moved()).extracting(Document::getId)
+                .containsExactly(stored.get(0).getId(), stored.get(1).getId());
+        assertThat(diff.moved()).extracting(doc -> doc.getMetadata().get("chunkIndex")).containsExactly(1, 2);
+        assertThat(diff.orphaned()).isEmpty();
+        assertThat(diff.unchanged()).isZero();
+    }
+
+    @Test
+    void chunkInAnotherSectionIsMoved() {
+        List<Document> stored = version(chunk("one", 0), chunk("two", 4));
+        List<Document> edited = version(chunk("one", 0), new SectionChunker.Chunk("two", "Epilogue", 2, 4));
+
+        ChunkDiff diff = ChunkDiff.of(rows(stored), edited, false);
+
+        assertThat(diff.unchanged()).isEqualTo(1);
+        assertThat(diff.moved()).singleElement().satisfies(doc -> {
+            assertThat(doc.getId()).isEqualTo(stored.get(1).getId());
+            assertThat(doc.getMetadata()).containsEntry("sectionTitle", "Epilogue");
+        });
+    }
+
+    @Test
+    void retitledDocumentMovesEveryMatch() {
+        List<Document> stored = version(chunk("one", 0), chunk("two", 4));
+
+        ChunkDiff diff = ChunkDiff.of(rows(stored), version(chunk("one", 0), chunk("two", 4)), true);
+
+        assertThat(diff.moved()).extracting(Document::getId)
+                .containsExactly(stored.get(0).getId(), stored.get(1).getId());
+        assertThat(diff.unchanged()).isZero();
+        assertThat(diff.shifted()).isEmpty();
+    }
+
+    @Test
+    void removedChunkIsOrphaned() {
+        List<Document> stored = version(chunk("one", 0), chunk("two", 4), chunk("three", 8));
+
+        ChunkDiff diff = ChunkDiff.of(rows(stored), version(chunk("one", 0), chunk("three", 4)), false);
+
+        assertThat(diff.orphaned()).containsExactly(stored.get(1).getId());
+        assertThat(diff.unchanged()).isEqualTo(1);
+        assertThat(diff.moved()).extracting(Document::getId).containsExactly(stored.get(2).getId());
+        assertThat(diff.added()).isEmpty();
+    }
+
+    @Test
+    void repeatedTextIsMatchedToItsCopiesInOrder() {
+        List<Document> stored = version(chunk("refrain", 0), chunk("verse", 8), chunk("refrain", 14));
+
+        // one refrain fewer: the first copy stays, the second is orphaned
+        ChunkDiff diff = ChunkDiff.of(rows(stored), version(chunk("refrain", 0), chunk("verse", 8)), false);
+
+        assertThat(diff.unchanged()).isEqualTo(2);
+        assertThat(diff.orphaned()).containsExactly(stored.get(2).getId());
+
+        // one refrain more: both stored copies are matched, the third is embedded
+        ChunkDiff grown = ChunkDiff.of(rows(stored), version(chunk("refrain", 0), chunk("verse", 8),
+                chunk("refrain", 14), chunk("refrain", 22)), false);
+
+        assertThat(grown.unchanged()).isEqualTo(3);
+        assertThat(grown.added()).extracting(Document::getText).containsExactly("refrain");
+        assertThat(grown.orphaned()).isEmpty();
+    }
+
+    @Test
+    void rowWithoutHashIsOrphanedAndItsTextEmbeddedAgain() {
+        List<Document> stored = version(chunk("one", 0));
+        List<DocChunk> rows = rows(stored);
+        rows.getFirst().setContentHash(null);
+
+        ChunkDiff diff = ChunkDiff.of(rows, version(chunk("one", 0)), false);
+
+        assertThat(diff.orphaned()).containsExactly(stored.getFirst().getId());
+        assertThat(diff.added()).extracting(Document::getText).containsExactly("one");
+        assertThat(diff.unchanged()).isZero();
+    }
+
+    private static SectionChunker.Chunk chunk(String text, int offset) {
+        return new SectionChunker.Chunk(text, "Chapter", 1, offset);
+    }
+
+    private static List<Document> version(SectionChunker.Chunk... chunks) {
+        Doc doc = new Doc();
+        doc.setId(7L);
+        doc.setTitle("Title");
+        doc.setAuthor("Author");
+        return Chunks.of(doc, List.of(chunks));
+    }
+
+    // the doc_chunk rows a version was stored with
+    private static List<DocChunk> rows(List<Document> stored) {
+        List<DocChunk> rows = new ArrayList<>();
+        for (Document doc : stored) {
+            Map<String, Object> metadata = doc.getMetadata();
+            DocChunk row = new DocChunk();
+            row.setVectorId(doc.getId());
+            row.setContentHash((String) metadata.get("contentHash"));
+            row.setChunkIndex((Integer) metadata.get("chunkIndex"));
+            row.setSectionOrdinal((Integer) metadata.get("sectionOrdinal"));
+            row.setSectionTitle((String) metadata.get("sectionTitle"));
+            row.setCharOffset((Integer) metadata.get("charOffset"));
+            row.setCharLength((Integer) metadata.get("charLength"));
+            rows.add(row);
+        }
+        return rows;
+    }
+}
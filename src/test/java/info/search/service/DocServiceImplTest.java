@@ -0,0 +1,273 @@
+package info.search.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.search.config.IngestionProperties;
+import info.search.config.SearchProperties;
+import info.search.config.VectorStoreProperties;
+import info.search.dto.SearchMode;
+import info.search.dto.SearchResultDto;
+import info.search.exception.InvalidBatchException;
+import info.search.model.VectorHit;
+import info.search.repository.DocContentRepository;
+import info.search.repository.VectorSearchRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DocServiceImplTest {
+    private static final int HITS = 30;
+
+    private final SearchProperties searchProps = new SearchProperties();
+    private final VectorStoreProperties vectorStoreProps = new VectorStoreProperties();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RecordingModel model = new RecordingModel();
+    private final SearchResultCache cache = new SearchResultCache(searchProps, registry);
+    private RankingRepository vectors;
+    private DocServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        vectors = new RankingRepository(searchProps, vectorStoreProps);
+        service = new DocServiceImpl(null, null, null, null, new UnavailableBodies(), null, cache, searchProps,
+                vectorStoreProps, vectors, model, null, new StageTimers(registry), new SimpleAsyncTaskExecutor());
+    }
+
+    @Test
+    void batchEmbedsItsQueriesInOneModelCall() {
+        List<Page<SearchResultDto>> pages = service.searchBatch(List.of(
+                query("the whale", SearchMode.VECTOR, 0),
+                query("the sea", SearchMode.HYBRID, 0),
+                query("the whale", SearchMode.VECTOR, 1)));
+
+        assertThat(model.requests).containsExactly(List.of("the whale", "the sea"));
+        // both pages of the whale may rank it, in parallel, from the one embedding
+        assertThat(vectors.queries).extracting(RecordingModel::text)
+                .containsOnly("the whale", "the sea");
+        // pages come back in request order, each a slice of its own query's ranking
+        assertThat(pages).hasSize(3);
+        assertThat(pages.get(0).getContent()).extracting(SearchResultDto::getFragment)
+                .containsExactlyElementsOf(fragments("the whale", 0, 10));
+        assertThat(pages.get(1).getContent()).extracting(SearchResultDto::getFragment)
+                .containsExactlyElementsOf(fragments("the sea", 0, 10));
+        assertThat(pages.get(2).getContent()).extracting(SearchResultDto::getFragment)
+                .containsExactlyElementsOf(fragments("the whale", 10, 20));
+    }
+
+    @Test
+    void cachedRankingsAreNotEmbeddedAgain() {
+        service.search("the whale", null, SearchMode.VECTOR, ResultShape.DEFAULT, null, PageRequest.of(0, 10));
+
+        service.searchBatch(List.of(
+                query("the whale", SearchMode.VECTOR, 0),
+                query("the sea", SearchMode.VECTOR, 0)));
+
+        assertThat(model.requests).containsExactly(List.of("the whale"), List.of("the sea"));
+        assertThat(vectors.queries).hasSize(2);
+    }
+
+    @Test
+    void batchAnsweredFromTheCacheCallsNoModel() {
+        service.searchBatch(List.of(query("the whale", SearchMode.VECTOR, 0)));
+
+        service.searchBatch(List.of(query("the whale", SearchMode.VECTOR, 1)));
+
+        assertThat(model.requests).hasSize(1);
+        assertThat(vectors.queries).hasSize(1);
+    }
+
+    @Test
+    void batchOverTheLimitIsRejectedBeforeAnyWork() {
+        searchProps.getBatch().setMaxQueries(2);
+        List<SearchQuery> queries = IntStream.range(0, 3)
+                .mapToObj(i -> query("query " + i, SearchMode.VECTOR, 0))
+                .toList();
+
+        assertThatThrownBy(() -> service.searchBatch(queries)).isInstanceOf(InvalidBatchException.class);
+        assertThatThrownBy(() -> service.searchBatch(List.of())).isInstanceOf(InvalidBatchException.class);
+        assertThat(model.requests).isEmpty();
+    }
+
+    @Test
+    void streamSendsThePageInRankOrderThenTheTotals() throws Exception {
+        RecordingSink sink = new RecordingSink();
+
+        service.searchStream("the whale", null, SearchMode.VECTOR, ResultShape.DEFAULT, null,
+                PageRequest.of(1, 10)).writeTo(sink);
+
+        List<String> expected = new ArrayList<>();
+        fragments("the whale", 10, 20).forEach(fragment -> expected.add("result " + fragment));
+        expected.add("end 30 true");
+        assertThat(sink.events).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void streamSendsTheFirstHitBeforeTheRankingIsCached() throws Exception {
+        RecordingSink sink = new RecordingSink();
+
+        service.searchStream("the whale", null, SearchMode.VECTOR, ResultShape.DEFAULT, null,
+                PageRequest.of(0, 10)).writeTo(sink);
+
+        assertThat(sink.cachedAtFirstResult).isFalse();
+        assertThat(cache.covers("the whale", null, SearchMode.VECTOR, searchProps.getSimilarityThreshold(), 11))
+                .isTrue();
+    }
+
+    @Test
+    void failedSearchEndsTheStreamWithAnErrorEvent() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        vectors.failure = new IllegalStateException("Index unavailable");
+
+        service.searchStream("the whale", null, SearchMode.VECTOR, ResultShape.DEFAULT, null,
+                PageRequest.of(0, 10)).writeTo(sink);
+
+        assertThat(sink.events).containsExactly("error Index unavailable");
+    }
+
+    @Test
+    void failureAfterTheFirstHitFollowsIt() throws Exception {
+        RecordingSink sink = new RecordingSink();
+
+        // only the first hit of an untold ranking carries its text, the rest are read from the body
+        service.searchStream("untold", null, SearchMode.VECTOR, ResultShape.DEFAULT, null,
+                PageRequest.of(0, 10)).writeTo(sink);
+
+        assertThat(sink.events).containsExactly("result untold 0", "error Body store unavailable");
+    }
+
+    private static SearchQuery query(String text, SearchMode mode, int page) {
+        return new SearchQuery(text, null, mode, ResultShape.DEFAULT, null, PageRequest.of(page, 10));
+    }
+
+    private static List<String> fragments(String query, int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> query + " " + i).toList();
+    }
+
+    // vectors carry their text, so a search can tell which query it was given
+    private static final class RecordingModel implements EmbeddingModel {
+        private final List<List<String>> requests = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            requests.add(List.copyOf(request.getInstructions()));
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(vector(text), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 0;
+        }
+
+        static float[] vector(String text) {
+            float[] vector = new float[text.length()];
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = text.charAt(i);
+            }
+            return vector;
+        }
+
+        static String text(float[] vector) {
+            StringBuilder text = new StringBuilder();
+            for (float c : vector) {
+                text.append((char) c);
+            }
+            return text.toString();
+        }
+    }
+
+    private final class RecordingSink implements SearchStream.Sink {
+        private final List<String> events = new ArrayList<>();
+        private Boolean cachedAtFirstResult;
+
+        @Override
+        public void keepAlive() {
+            events.add("keep-alive");
+        }
+
+        @Override
+        public void result(SearchResultDto result) {
+            if (cachedAtFirstResult == null) {
+                cachedAtFirstResult = cache.covers("the whale", null, SearchMode.VECTOR,
+                        searchProps.getSimilarityThreshold(), 1);
+            }
+            events.add("result " + result.getFragment());
+        }
+
+        @Override
+        public void end(long totalElements, boolean hasNext) {
+            events.add("end " + totalElements + " " + hasNext);
+        }
+
+        @Override
+        public void error(String message) {
+            events.add("error " + message);
+        }
+    }
+
+    private static final class UnavailableBodies extends DocContentRepository {
+        UnavailableBodies() {
+            super(null, new IngestionProperties());
+        }
+
+        @Override
+        public Map<String, String> readChunks(Collection<String> vectorIds) {
+            throw new IllegalStateException("Body store unavailable");
+        }
+    }
+
+    // ranks HITS chunks named after the query, the chunks of "untold" past the first without their text;
+    // the lexical leg finds nothing
+    private static final class RankingRepository extends VectorSearchRepository {
+        private final List<float[]> queries = Collections.synchronizedList(new ArrayList<>());
+        private RuntimeException failure;
+
+        RankingRepository(SearchProperties searchProps, VectorStoreProperties vectorStoreProps) {
+            super(null, new ObjectMapper(), "public", "vector_store", "COSINE_DISTANCE", "HNSW", searchProps,
+                    vectorStoreProps);
+        }
+
+        @Override
+        public List<VectorHit> findNearest(float[] embedding, Long docId, double threshold,
+                                           Double afterDistance, String afterId, int limit) {
+            queries.add(embedding);
+            if (failure != null) {
+                throw failure;
+            }
+            String text = RecordingModel.text(embedding);
+            return IntStream.range(0, Math.min(limit, HITS))
+                    .mapToObj(i -> new VectorHit(text + "#" + i, 1L, "Title", "Author",
+                            text.equals("untold") && i > 0 ? null : text + " " + i, i, i / 100.0, 1 - i / 100.0))
+                    .toList();
+        }
+
+        @Override
+        public List<VectorHit> findLexical(String query, Long docId, int limit) {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package info.search.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import info.search.config.EmbeddingProperties;
+import info.search.config.VectorStoreProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddingExecutorTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EmbeddingProperties props = new EmbeddingProperties();
+    private ThreadPoolTaskExecutor workers;
+
+    @BeforeEach
+    void setUp() {
+        props.setBatchSize(2);
+        props.setMaxAttempts(3);
+        props.setRetryBackoff(Duration.ofMillis(1));
+        workers = new ThreadPoolTaskExecutor();
+        workers.setCorePoolSize(4);
+        workers.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        workers.shutdown();
+    }
+
+    @Test
+    void storedBatchesArriveInInputOrder() throws Exception {
+        // earlier batches take longer, so they finish last
+        RecordingStore store = new RecordingStore(batch -> false,
+                batch -> sleep(50 - 5 * Integer.parseInt(batch.getFirst().getId())));
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+
+        executor(store).embed(documents(10), batch -> batch.forEach(d -> seen.add(d.getId())))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(seen).containsExactlyElementsOf(ids(10));
+        assertThat(registry.counter("embedding.chunks").count()).isEqualTo(10);
+    }
+
+    @Test
+    void failedBatchIsRetried() throws Exception {
+        AtomicInteger failures = new AtomicInteger();
+        RecordingStore store = new RecordingStore(
+                batch -> batch.getFirst().getId().equals("4") && failures.getAndIncrement() < 2, batch -> {
+                });
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+
+        executor(store).embed(documents(10), batch -> batch.forEach(d -> seen.add(d.getId())))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(seen).containsExactlyElementsOf(ids(10));
+        assertThat(store.attempts.get("4")).isEqualTo(3);
+        assertThat(registry.counter("embedding.batch.retries").count()).isEqualTo(2);
+        assertThat(registry.counter("embedding.batch.failures").count()).isZero();
+    }
+
+    @Test
+    void batchFailingForGoodFailsTheJobAndSkipsTheBatchesNotStarted() {
+        workers.setCorePoolSize(1);
+        RecordingStore store = new RecordingStore(batch -> batch.getFirst().getId().equals("0"), batch -> {
+        });
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<Void> embedded = executor(store).embed(documents(10),
+                batch -> batch.forEach(d -> seen.add(d.getId())));
+
+        assertThatThrownBy(() -> embedded.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .cause().hasMessage("store failed on 0");
+        assertThat(store.attempts).containsOnlyKeys("0").containsEntry("0", 3);
+        assertThat(seen).isEmpty();
+        assertThat(registry.counter("embedding.batch.failures").count()).isEqualTo(1);
+    }
+
+    private EmbeddingExecutor executor(VectorStore store) {
+        VectorStoreProperties vectorStoreProps = new VectorStoreProperties();
+        vectorStoreProps.setBackend(VectorStoreProperties.Backend.HNSW);
+        return new EmbeddingExecutor(store, null, null, vectorStoreProps, props, workers, registry);
+    }
+
+    private static List<Document> documents(int count) {
+        return ids(count).stream().map(id -> new Document(id, "chunk " + id, Map.of())).toList();
+    }
+
+    private static List<String> ids(int count) {
+        return IntStream.range(0, count).mapToObj(String::valueOf).toList();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(Math.max(0, millis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // counts attempts per batch, keyed by the id of its first document
+    private static final class RecordingStore implements VectorStore {
+        private final Map<String, Integer> attempts = new ConcurrentHashMap<>();
+        private final Predicate<List<Document>> fails;
+        private final Consumer<List<Document>> work;
+
+        RecordingStore(Predicate<List<Document>> fails, Consumer<List<Document>> work) {
+            this.fails = fails;
+            this.work = work;
+        }
+
+        @Override
+        public void add(List<Document> documents) {
+            String first = documents.getFirst().getId();
+            attempts.merge(first, 1, Integer::sum);
+            work.accept(documents);
+            if (fails.test(documents)) {
+                throw new IllegalStateException("store failed on " + first);
+            }
+        }
+
+        @Override
+        public Optional<Boolean> delete(List<String> ids) {
+            return Optional.of(true);
+        }
+
+        @Override
+        public List<Document> similaritySearch(SearchRequest request) {
+            return List.of();
+        }
+    }
+}
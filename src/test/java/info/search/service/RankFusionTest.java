@@ -0,0 +1,106 @@
+package info.search.service;
+
+import java.util.List;
+import info.search.config.SearchProperties;
+import info.search.model.VectorHit;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RankFusionTest {
+    private static final int K = 60;
+
+    @Test
+    void chunksRankedByBothRetrieversLead() {
+        List<VectorHit> vector = List.of(hit("a"), hit("b"), hit("c"));
+        List<VectorHit> lexical = List.of(hit("c"), hit("a"));
+
+        List<VectorHit> fused = RankFusion.fuse(List.of(vector, lexical), K);
+
+        // a: 1/61 + 1/62, c: 1/63 + 1/61, b: 1/62
+        assertThat(fused).extracting(VectorHit::vectorId).containsExactly("a", "c", "b");
+    }
+
+    @Test
+    void scoresAddReciprocalRanks() {
+        List<VectorHit> vector = List.of(hit("a"), hit("b"), hit("c"), hit("d"));
+        List<VectorHit> lexical = List.of(hit("d"));
+
+        List<VectorHit> fused = RankFusion.fuse(List.of(vector, lexical), K);
+
+        // d: 1/64 + 1/61 beats a: 1/61 alone
+        assertThat(fused).extracting(VectorHit::vectorId).containsExactly("d", "a", "b", "c");
+    }
+
+    @Test
+    void smallerKFavoursTheTopOfOneRanking() {
+        List<VectorHit> vector = List.of(hit("a"), hit("x"), hit("b"));
+        List<VectorHit> lexical = List.of(hit("c"), hit("y"), hit("b"));
+
+        // k = 0: a and c 1/1 each, b 1/3 + 1/3
+        assertThat(RankFusion.fuse(List.of(vector, lexical), 0))
+                .extracting(VectorHit::vectorId).containsExactly("a", "c", "b", "x", "y");
+        // k = 60: b 1/63 + 1/63 outweighs a and c at 1/61
+        assertThat(RankFusion.fuse(List.of(vector, lexical), K))
+                .extracting(VectorHit::vectorId).containsExactly("b", "a", "c", "x", "y");
+    }
+
+    @Test
+    void tiesKeepFirstSeenOrder() {
+        List<VectorHit> vector = List.of(hit("x"), hit("p"), hit("q"));
+        List<VectorHit> lexical = List.of(hit("y"), hit("q"), hit("p"));
+
+        List<VectorHit> fused = RankFusion.fuse(List.of(vector, lexical), K);
+
+        // x and y share 1/61, p and q share 1/62 + 1/63
+        assertThat(fused).extracting(VectorHit::vectorId).containsExactly("p", "q", "x", "y");
+    }
+
+    @Test
+    void keepsTheHitOfTheEarliestRanking() {
+        VectorHit fromVector = new VectorHit("a", 1L, "Title", "Author", "text", 0, 0.2, 0.8);
+        VectorHit fromLexical = new VectorHit("a", 1L, "Title", "Author", null, 0, 1, 0);
+
+        List<VectorHit> fused = RankFusion.fuse(List.of(List.of(fromVector), List.of(fromLexical)), K);
+
+        assertThat(fused).containsExactly(fromVector);
+    }
+
+    @Test
+    void emptyRankingsFuseToNothing() {
+        assertThat(RankFusion.fuse(List.of(List.of(), List.of()), K)).isEmpty();
+        assertThat(RankFusion.fuse(List.of(List.of(), List.of(hit("a"))), K))
+                .extracting(VectorHit::vectorId).containsExactly("a");
+    }
+
+    @Test
+    void depthReachesOnePastThePage() {
+        Rerank none = new Rerank(0, 0L);
+
+        assertThat(DocServiceImpl.depth(PageRequest.of(0, 10), none)).isEqualTo(11);
+        assertThat(DocServiceImpl.depth(PageRequest.of(3, 10), none)).isEqualTo(41);
+    }
+
+    @Test
+    void depthCoversTheRerankCandidates() {
+        Rerank rerank = new Rerank(50, 200L);
+
+        assertThat(DocServiceImpl.depth(PageRequest.of(0, 10), rerank)).isEqualTo(50);
+        // a page past the candidates is ranked through, only its head is reranked
+        assertThat(DocServiceImpl.depth(PageRequest.of(9, 10), rerank)).isEqualTo(101);
+    }
+
+    @Test
+    void legsFetchAtLeastTheConfiguredCandidates() {
+        SearchProperties.Hybrid hybrid = new SearchProperties.Hybrid();
+        hybrid.setCandidates(100);
+
+        assertThat(DocServiceImpl.legCandidates(11, hybrid)).isEqualTo(100);
+        assertThat(DocServiceImpl.legCandidates(150, hybrid)).isEqualTo(150);
+    }
+
+    private static VectorHit hit(String vectorId) {
+        return new VectorHit(vectorId, 1L, "Title", "Author", "text of " + vectorId, 0, 0.5, 0.5);
+    }
+}
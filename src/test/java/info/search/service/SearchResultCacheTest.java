@@ -0,0 +1,134 @@
+package info.search.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import info.search.config.SearchProperties;
+import info.search.dto.SearchMode;
+import info.search.dto.SearchResultDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchResultCacheTest {
+    private static final double THRESHOLD = 0.5;
+
+    private final SearchProperties props = new SearchProperties();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    // depths the ranking was computed for, one per search that reached the index
+    private final List<Integer> searches = new ArrayList<>();
+
+    @Test
+    void laterPagesAreSlicesOfOneRanking() {
+        props.getCache().setDepth(50);
+        SearchResultCache cache = new SearchResultCache(props, registry);
+
+        List<SearchResultDto> first = get(cache, "whale", 10, 120).results();
+        List<SearchResultDto> third = get(cache, "  whale ", 30, 120).results();
+
+        assertThat(searches).containsExactly(50);
+        assertThat(third).hasSize(50).startsWith(first.toArray(SearchResultDto[]::new));
+        assertThat(third.subList(20, 30)).extracting(SearchResultDto::getVectorId)
+                .containsExactlyElementsOf(ids(20, 30));
+        assertThat(registry.counter("search.cache.requests", "result", "hit").count()).isEqualTo(1);
+    }
+
+    @Test
+    void pageBeyondTheRankingSearchesDeeper() {
+        props.getCache().setDepth(20);
+        SearchResultCache cache = new SearchResultCache(props, registry);
+
+        assertThat(get(cache, "whale", 10, 120).exhausted()).isFalse();
+        assertThat(get(cache, "whale", 40, 120).results()).hasSize(40);
+
+        assertThat(searches).containsExactly(20, 40);
+    }
+
+    @Test
+    void exhaustedRankingAnswersEveryPage() {
+        props.getCache().setDepth(20);
+        SearchResultCache cache = new SearchResultCache(props, registry);
+
+        SearchResultCache.Ranking ranking = get(cache, "whale", 10, 15);
+        get(cache, "whale", 100, 15);
+
+        assertThat(ranking.exhausted()).isTrue();
+        assertThat(searches).containsExactly(20);
+        assertThat(cache.covers("whale", null, SearchMode.VECTOR, THRESHOLD, 1000)).isTrue();
+    }
+
+    @Test
+    void invalidationStartsANewGeneration() {
+        SearchResultCache cache = new SearchResultCache(props, registry);
+        get(cache, "whale", 10, 120);
+
+        cache.invalidate();
+
+        assertThat(cache.covers("whale", null, SearchMode.VECTOR, THRESHOLD, 10)).isFalse();
+        get(cache, "whale", 10, 120);
+        assertThat(searches).hasSize(2);
+    }
+
+    @Test
+    void rankingComputedAcrossAnInvalidationIsNotStored() {
+        SearchResultCache cache = new SearchResultCache(props, registry);
+
+        cache.get("whale", null, SearchMode.VECTOR, THRESHOLD, 10, depth -> {
+            cache.invalidate();
+            return results(depth, 120);
+        });
+
+        assertThat(cache.covers("whale", null, SearchMode.VECTOR, THRESHOLD, 10)).isFalse();
+    }
+
+    @Test
+    void invalidationInsideATransactionWaitsForTheCommit() {
+        SearchResultCache cache = new SearchResultCache(props, registry);
+        get(cache, "whale", 10, 120);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidate();
+            assertThat(cache.covers("whale", null, SearchMode.VECTOR, THRESHOLD, 10)).isTrue();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertThat(cache.covers("whale", null, SearchMode.VECTOR, THRESHOLD, 10)).isFalse();
+    }
+
+    @Test
+    void rankingsAreKeptApartByDocumentModeAndThreshold() {
+        SearchResultCache cache = new SearchResultCache(props, registry);
+        get(cache, "whale", 10, 120);
+
+        assertThat(cache.covers("whale", 1L, SearchMode.VECTOR, THRESHOLD, 10)).isFalse();
+        assertThat(cache.covers("whale", null, SearchMode.HYBRID, THRESHOLD, 10)).isFalse();
+        assertThat(cache.covers("whale", null, SearchMode.VECTOR, 0.7, 10)).isFalse();
+        assertThat(cache.covers("Whale", null, SearchMode.VECTOR, THRESHOLD, 10)).isFalse();
+    }
+
+    // searches a corpus with available results above the threshold
+    private SearchResultCache.Ranking get(SearchResultCache cache, String query, int needed, int available) {
+        return cache.get(query, null, SearchMode.VECTOR, THRESHOLD, needed, depth -> {
+            searches.add(depth);
+            return results(depth, available);
+        });
+    }
+
+    private static List<SearchResultDto> results(int depth, int available) {
+        return ids(0, Math.min(depth, available)).stream().map(id -> {
+            SearchResultDto result = new SearchResultDto();
+            result.setVectorId(id);
+            return result;
+        }).toList();
+    }
+
+    private static List<String> ids(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "chunk-" + i).toList();
+    }
+}
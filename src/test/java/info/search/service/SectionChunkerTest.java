@@ -0,0 +1,146 @@
+package info.search.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import info.search.config.IngestionProperties;
+import info.search.model.Paragraph;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SectionChunkerTest {
+
+    @Test
+    void packedParagraphsAreSlicesOfTheBody() {
+        List<Paragraph> paragraphs = IntStream.range(0, 30)
+                .mapToObj(i -> paragraph("Paragraph " + i + " tells a short story about the sea.", 1))
+                .toList();
+
+        List<SectionChunker.Chunk> chunks = chunker(40, 0, 10).split(paragraphs);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        assertSlices(chunks, paragraphs);
+    }
+
+    @Test
+    void overlappingChunksAreSlicesOfTheBody() {
+        List<Paragraph> paragraphs = IntStream.range(0, 30)
+                .mapToObj(i -> paragraph("Line " + i + " of the log.", 1))
+                .toList();
+
+        List<SectionChunker.Chunk> chunks = chunker(30, 12, 10).split(paragraphs);
+
+        assertThat(chunks).hasSizeGreaterThan(1);
+        // the overlap repeats the tail of a chunk at the start of the next
+        assertThat(chunks.get(1).offset()).isLessThan(chunks.get(0).offset() + chunks.get(0).text().length());
+        assertSlices(chunks, paragraphs);
+    }
+
+    @Test
+    void sectionsStartNewChunks() {
+        List<Paragraph> paragraphs = new ArrayList<>();
+        for (int section = 1; section <= 3; section++) {
+            for (int i = 0; i < 5; i++) {
+                paragraphs.add(new Paragraph("Section " + section + " paragraph " + i + " with a few more words.",
+                        "Chapter " + section, "Chapter " + section, section));
+            }
+        }
+
+        List<SectionChunker.Chunk> chunks = chunker(200, 0, 10).split(paragraphs);
+
+        assertThat(chunks).extracting(SectionChunker.Chunk::sectionOrdinal).containsExactly(1, 2, 3);
+        assertThat(chunks).extracting(SectionChunker.Chunk::sectionTitle)
+                .containsExactly("Chapter 1", "Chapter 2", "Chapter 3");
+        assertSlices(chunks, paragraphs);
+    }
+
+    @Test
+    void windowsOfALongParagraphAreSlicesOfTheBody() {
+        List<Paragraph> paragraphs = List.of(
+                paragraph("A short opening line.", 1),
+                paragraph(words(400), 1),
+                paragraph("A short closing line.", 1));
+
+        List<SectionChunker.Chunk> chunks = chunker(50, 10, 0).split(paragraphs);
+
+        assertThat(chunks).hasSizeGreaterThan(8);
+        assertSlices(chunks, paragraphs);
+    }
+
+    @Test
+    void windowsOverMultiByteTextAreSlicesOfTheBody() {
+        // two- and three-byte letters, and four-byte emoji that cl100k splits into several tokens
+        String text = IntStream.range(0, 200)
+                .mapToObj(i -> switch (i % 4) {
+                    case 0 -> "привет";
+                    case 1 -> "世界和平";
+                    case 2 -> "🐋🌊";
+                    default -> "Ελλάδα";
+                })
+                .collect(Collectors.joining(" "));
+        List<Paragraph> paragraphs = List.of(paragraph("Before.", 1), paragraph(text, 1), paragraph("After.", 1));
+
+        List<SectionChunker.Chunk> chunks = chunker(40, 8, 0).split(paragraphs);
+
+        assertThat(chunks).hasSizeGreaterThan(5);
+        assertSlices(chunks, paragraphs);
+        for (SectionChunker.Chunk chunk : chunks) {
+            String chunkText = chunk.text();
+            assertThat(Character.isLowSurrogate(chunkText.charAt(0))).isFalse();
+            assertThat(Character.isHighSurrogate(chunkText.charAt(chunkText.length() - 1))).isFalse();
+        }
+    }
+
+    @Test
+    void incrementalSplitterMatchesSplit() {
+        List<Paragraph> paragraphs = List.of(
+                paragraph(words(120), 1),
+                paragraph("Between.", 1),
+                paragraph(words(90), 2));
+        SectionChunker chunker = chunker(40, 5, 10);
+
+        List<SectionChunker.Chunk> streamed = new ArrayList<>();
+        SectionChunker.Splitter splitter = chunker.splitter(streamed::add);
+        paragraphs.forEach(splitter::add);
+        splitter.finish();
+
+        assertThat(streamed).isEqualTo(chunker.split(paragraphs));
+    }
+
+    // every chunk that records an offset is the body text at that offset, and most of them do
+    private static void assertSlices(List<SectionChunker.Chunk> chunks, List<Paragraph> paragraphs) {
+        String body = paragraphs.stream().map(Paragraph::text)
+                .collect(Collectors.joining(SectionChunker.PARAGRAPH_SEPARATOR));
+        int slices = 0;
+        for (SectionChunker.Chunk chunk : chunks) {
+            if (chunk.offset() < 0) {
+                continue;
+            }
+            slices++;
+            assertThat(body.substring(chunk.offset(), chunk.offset() + chunk.text().length()))
+                    .as("chunk at %d", chunk.offset())
+                    .isEqualTo(chunk.text());
+        }
+        assertThat(slices).isGreaterThan(chunks.size() / 2);
+    }
+
+    private static SectionChunker chunker(int maxTokens, int overlapTokens, int minTokens) {
+        IngestionProperties.Chunking props = new IngestionProperties.Chunking();
+        props.setMaxTokens(maxTokens);
+        props.setOverlapTokens(overlapTokens);
+        props.setMinTokens(minTokens);
+        return new SectionChunker(props);
+    }
+
+    private static Paragraph paragraph(String text, int section) {
+        return new Paragraph(text, "Section " + section, "Section " + section, section);
+    }
+
+    private static String words(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> i % 7 == 0 ? "whale" + i + "," : "word" + i)
+                .collect(Collectors.joining(" "));
+    }
+}
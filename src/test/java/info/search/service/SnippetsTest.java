@@ -0,0 +1,117 @@
+package info.search.service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SnippetsTest {
+
+    @Test
+    void shortTextIsKeptWhole() {
+        Snippets.Snippet snippet = Snippets.of("The whale surfaced.", "whale", 100);
+
+        assertThat(snippet.text()).isEqualTo("The whale surfaced.");
+        assertThat(marked(snippet)).containsExactly("whale");
+    }
+
+    @Test
+    void matchAtTheStartKeepsTheWindowAtTheStart() {
+        String text = "Ahab hunted the whale. " + filler(10);
+
+        Snippets.Snippet snippet = Snippets.of(text, "whale", 60);
+
+        assertThat(text).startsWith(snippet.text());
+        assertThat(snippet.text().length()).isLessThanOrEqualTo(60);
+        assertThat(marked(snippet)).containsExactly("whale");
+    }
+
+    @Test
+    void matchAtTheEndKeepsTheWindowAtTheEnd() {
+        String text = filler(10) + " At last the whale surfaced.";
+
+        Snippets.Snippet snippet = Snippets.of(text, "whale", 60);
+
+        assertThat(text).endsWith(snippet.text());
+        assertThat(snippet.text().length()).isLessThanOrEqualTo(60);
+        assertThat(marked(snippet)).containsExactly("whale");
+    }
+
+    @Test
+    void windowEndsOnWordBoundaries() {
+        String text = filler(5) + " The whale surfaced near the ship. " + filler(5);
+
+        Snippets.Snippet snippet = Snippets.of(text, "whale", 40);
+
+        assertThat(text).contains(snippet.text());
+        assertThat(List.of(text.split(" "))).contains(snippet.text().split(" ")[0]);
+        assertThat(marked(snippet)).containsExactly("whale");
+    }
+
+    @Test
+    void sentenceWithMostDistinctTermsWins() {
+        String text = "The sea was calm. " + filler(5) + " The whale sank. " + filler(5)
+                + " The white whale sank the ship. " + filler(5);
+
+        Snippets.Snippet snippet = Snippets.of(text, "white whale ship", 50);
+
+        assertThat(snippet.text()).contains("white whale sank the ship");
+    }
+
+    @Test
+    void overlappingTermsMarkWholeWordsOnly() {
+        Snippets.Snippet snippet = Snippets.of("The artist made art, art by an artisan.", "art artist", 100);
+
+        assertThat(marked(snippet)).containsExactly("artist", "art", "art");
+        assertThat(snippet.highlights()).isSortedAccordingTo((a, b) -> Integer.compare(a[0], b[0]));
+        for (int i = 1; i < snippet.highlights().size(); i++) {
+            assertThat(snippet.highlights().get(i)[0]).isGreaterThanOrEqualTo(snippet.highlights().get(i - 1)[1]);
+        }
+    }
+
+    @Test
+    void termsMatchIgnoringCase() {
+        Snippets.Snippet snippet = Snippets.of("Whale, WHALE and whale.", "wHaLe", 100);
+
+        assertThat(marked(snippet)).containsExactly("Whale", "WHALE", "whale");
+    }
+
+    @Test
+    void highlightsCountSurrogatePairsAsTwoUnits() {
+        // U+1D54E and U+1D560 are letters outside the BMP, two UTF-16 units each
+        String word = "𝕎𝕠";
+        Snippets.Snippet snippet = Snippets.of("see " + word + " here", word, 100);
+
+        assertThat(snippet.highlights()).hasSize(1);
+        assertThat(snippet.highlights().getFirst()).containsExactly(4, 8);
+        assertThat(marked(snippet)).containsExactly(word);
+    }
+
+    @Test
+    void windowNeverSplitsASurrogatePair() {
+        // one word of astral letters longer than the window, so no word boundary applies
+        String word = "𝕎".repeat(50);
+        String text = "a " + word + " b";
+
+        for (int length = 5; length < 30; length++) {
+            String window = Snippets.of(text, "x", length).text();
+            assertThat(Character.isLowSurrogate(window.charAt(0))).as("window of %d", length).isFalse();
+            assertThat(Character.isHighSurrogate(window.charAt(window.length() - 1)))
+                    .as("window of %d", length).isFalse();
+        }
+    }
+
+    private static List<String> marked(Snippets.Snippet snippet) {
+        return snippet.highlights().stream()
+                .map(h -> snippet.text().substring(h[0], h[1]))
+                .toList();
+    }
+
+    private static String filler(int sentences) {
+        return IntStream.range(0, sentences)
+                .mapToObj(i -> "Nothing happened on day " + i + ".")
+                .collect(Collectors.joining(" "));
+    }
+}
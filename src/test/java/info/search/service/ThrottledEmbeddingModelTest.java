@@ -0,0 +1,131 @@
+package info.search.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import info.search.exception.ServerBusyException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ThrottledEmbeddingModelTest {
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+    private final BlockingModel model = new BlockingModel();
+
+    @AfterEach
+    void tearDown() {
+        model.release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    void callWithoutAPermitInTimeIsRefusedAsBusy() throws Exception {
+        ThrottledEmbeddingModel throttled = new ThrottledEmbeddingModel(model, 1, Duration.ofMillis(50));
+        Future<float[]> first = callers.submit(() -> throttled.embed("the whale"));
+        assertThat(model.entered.await(5, TimeUnit.SECONDS)).isTrue();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> throttled.embed("the sea")).isInstanceOf(ServerBusyException.class);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+        model.release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isNotEmpty();
+        assertThat(model.calls).hasValue(1);
+    }
+
+    @Test
+    void callerParksUntilAPermitIsReturned() throws Exception {
+        ThrottledEmbeddingModel throttled = new ThrottledEmbeddingModel(model, 1, Duration.ofSeconds(5));
+        Future<float[]> first = callers.submit(() -> throttled.embed("the whale"));
+        assertThat(model.entered.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<float[]> second = callers.submit(() -> throttled.embed("the sea"));
+
+        Thread.sleep(50);
+        assertThat(second).isNotDone();
+        model.release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isNotEmpty();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isNotEmpty();
+        assertThat(model.peak).hasValue(1);
+    }
+
+    @Test
+    void failedCallReturnsItsPermit() {
+        model.release.countDown();
+        ThrottledEmbeddingModel throttled = new ThrottledEmbeddingModel(model, 1, Duration.ofMillis(50));
+
+        assertThatThrownBy(() -> throttled.embed("poison")).isInstanceOf(IllegalStateException.class);
+
+        assertThat(throttled.embed("the whale")).isNotEmpty();
+    }
+
+    @Test
+    void concurrentCallsStayWithinThePermits() throws Exception {
+        model.release.countDown();
+        ThrottledEmbeddingModel throttled = new ThrottledEmbeddingModel(model, 2, Duration.ofSeconds(5));
+        List<Future<float[]>> calls = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            String text = "chunk " + i;
+            calls.add(callers.submit(() -> throttled.embed(text)));
+        }
+
+        for (Future<float[]> call : calls) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+
+        assertThat(model.calls).hasValue(16);
+        assertThat(model.peak.get()).isBetween(1, 2);
+    }
+
+    // holds every call until released, counting the calls inside it at once
+    private static final class BlockingModel implements EmbeddingModel {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger peak = new AtomicInteger();
+
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                entered.countDown();
+                release.await();
+                Thread.sleep(5);
+                if (request.getInstructions().contains("poison")) {
+                    throw new IllegalStateException("Model failed on poison");
+                }
+                calls.incrementAndGet();
+                return new EmbeddingResponse(List.of(new Embedding(new float[]{1, 0}, 0)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return embed(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return 2;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package info.search.vectorstore;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswIndexTest {
+    private static final int DIMENSIONS = 32;
+    private static final int NODES = 2_000;
+    private static final int QUERIES = 50;
+    private static final int K = 10;
+
+    @Test
+    void float32RecallMatchesBruteForce() {
+        assertThat(recall(HnswIndex.Quantization.FLOAT32)).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void int8RecallMatchesBruteForce() {
+        assertThat(recall(HnswIndex.Quantization.INT8)).isGreaterThanOrEqualTo(0.9);
+    }
+
+    @Test
+    void deletedNodesAreLeftOutOfResults() {
+        float[][] vectors = vectors(new Random(3), NODES);
+        HnswIndex index = index(HnswIndex.Quantization.FLOAT32, vectors);
+        float[] query = vectors[0];
+        int[] before = index.search(query, K, 100, node -> true).nodes();
+
+        for (int node : before) {
+            index.delete(node);
+        }
+
+        assertThat(index.liveCount()).isEqualTo(NODES - K);
+        assertThat(index.search(query, K, 100, node -> true).nodes()).hasSize(K).doesNotContain(before);
+    }
+
+    // share of the exact top K the graph finds, over all queries
+    private static double recall(HnswIndex.Quantization quantization) {
+        Random random = new Random(1);
+        float[][] vectors = vectors(random, NODES);
+        HnswIndex index = index(quantization, vectors);
+        int found = 0;
+        for (float[] query : vectors(random, QUERIES)) {
+            int[] expected = bruteForce(vectors, query);
+            int[] actual = index.search(query, K, 100, node -> true).nodes();
+            found += (int) Arrays.stream(actual).filter(node -> contains(expected, node)).count();
+        }
+        return found / (double) (QUERIES * K);
+    }
+
+    private static HnswIndex index(HnswIndex.Quantization quantization, float[][] vectors) {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 64, quantization);
+        for (float[] vector : vectors) {
+            index.add(vector);
+        }
+        return index;
+    }
+
+    private static int[] bruteForce(float[][] vectors, float[] query) {
+        return IntStream.range(0, vectors.length).boxed()
+                .sorted(Comparator.comparingDouble(node -> -cosine(vectors[node], query)))
+                .limit(K).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double na = 0;
+        double nb = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            na += a[i] * a[i];
+            nb += b[i] * b[i];
+        }
+        return dot / Math.sqrt(na * nb);
+    }
+
+    private static boolean contains(int[] nodes, int node) {
+        return Arrays.stream(nodes).anyMatch(n -> n == node);
+    }
+
+    private static float[][] vectors(Random random, int count) {
+        float[][] vectors = new float[count][DIMENSIONS];
+        for (float[] vector : vectors) {
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) random.nextGaussian();
+            }
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,153 @@
+package info.search.vectorstore;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import info.search.config.VectorStoreProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HnswVectorStoreTest {
+    private static final int DIMENSIONS = 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reAddedChunkReplacesItsNodeInTheDocumentList() throws Exception {
+        HnswVectorStore store = store(new VectorStoreProperties.Hnsw());
+        store.add(chunks(1L, 0, 5));
+
+        store.add(List.of(chunk("1-0", "rewritten", 1L)));
+
+        assertThat(store.documentNodeCount(1L)).isEqualTo(5);
+        assertThat(search(store, "rewritten", 1L)).extracting(Document::getText)
+                .contains("rewritten").doesNotContain("chunk 1-0");
+    }
+
+    @Test
+    void deletedChunksLeaveTheDocumentList() throws Exception {
+        HnswVectorStore store = store(new VectorStoreProperties.Hnsw());
+        store.add(chunks(1L, 0, 5));
+        store.add(chunks(2L, 0, 5));
+
+        store.delete(List.of("1-0", "1-1", "1-2", "1-3", "1-4"));
+
+        assertThat(store.documentNodeCount(1L)).isZero();
+        assertThat(search(store, "chunk 1-0", 1L)).isEmpty();
+        assertThat(search(store, "chunk 2-0", 2L)).hasSize(5);
+    }
+
+    @Test
+    void graphIsCompactedAboveTheTombstoneRatio() throws Exception {
+        HnswVectorStore store = store(new VectorStoreProperties.Hnsw());
+        store.add(chunks(1L, 0, 10));
+
+        store.delete(List.of("1-0", "1-1"));
+        assertThat(store.nodeCount()).isEqualTo(10);
+
+        store.delete(List.of("1-2"));
+        assertThat(store.nodeCount()).isEqualTo(7);
+        assertThat(store.documentNodeCount(1L)).isEqualTo(7);
+        assertThat(search(store, "chunk 1-5", null)).extracting(Document::getId)
+                .first().isEqualTo("1-5");
+        assertThat(search(store, "chunk 1-5", 1L)).extracting(Document::getId)
+                .containsExactlyInAnyOrder("1-3", "1-4", "1-5", "1-6", "1-7", "1-8", "1-9");
+    }
+
+    @Test
+    void snapshotRoundTripLeavesTombstonesOut() throws Exception {
+        VectorStoreProperties.Hnsw props = new VectorStoreProperties.Hnsw();
+        props.setSnapshotPath(dir.resolve("hnsw.snapshot").toString());
+        HnswVectorStore store = store(props);
+        store.add(chunks(1L, 0, 20));
+        store.add(chunks(2L, 0, 20));
+        store.delete(List.of("1-3"));
+        assertThat(store.nodeCount()).isEqualTo(40);
+
+        store.snapshot();
+        HnswVectorStore restored = store(props);
+
+        assertThat(store.nodeCount()).isEqualTo(39);
+        assertThat(restored.nodeCount()).isEqualTo(39);
+        assertThat(restored.documentNodeCount(1L)).isEqualTo(19);
+        assertThat(restored.documentNodeCount(2L)).isEqualTo(20);
+        for (String query : List.of("chunk 1-3", "chunk 2-7")) {
+            assertThat(ids(search(restored, query, null))).isEqualTo(ids(search(store, query, null)));
+            assertThat(ids(search(restored, query, 1L))).isEqualTo(ids(search(store, query, 1L)))
+                    .doesNotContain("1-3");
+        }
+    }
+
+    private static HnswVectorStore store(VectorStoreProperties.Hnsw props) throws Exception {
+        HnswVectorStore store = new HnswVectorStore(new FakeEmbeddingModel(), props, new ObjectMapper());
+        store.afterPropertiesSet();
+        return store;
+    }
+
+    private static List<Document> search(HnswVectorStore store, String query, Long docId) {
+        SearchRequest.Builder builder = SearchRequest.builder().query(query).topK(10).similarityThresholdAll();
+        if (docId != null) {
+            builder.filterExpression(new FilterExpressionBuilder().eq("docId", docId).build());
+        }
+        return store.similaritySearch(builder.build());
+    }
+
+    private static List<String> ids(List<Document> documents) {
+        return documents.stream().map(Document::getId).toList();
+    }
+
+    private static List<Document> chunks(long docId, int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> chunk(docId + "-" + i, "chunk " + docId + "-" + i, docId))
+                .toList();
+    }
+
+    private static Document chunk(String id, String text, long docId) {
+        return new Document(id, text, Map.of("docId", docId));
+    }
+
+    // the same text always embeds to the same vector; no negative components, so no similarity falls below 0
+    private static final class FakeEmbeddingModel implements EmbeddingModel {
+        @Override
+        public EmbeddingResponse call(EmbeddingRequest request) {
+            List<Embedding> embeddings = new ArrayList<>();
+            for (String text : request.getInstructions()) {
+                embeddings.add(new Embedding(vector(text), embeddings.size()));
+            }
+            return new EmbeddingResponse(embeddings);
+        }
+
+        @Override
+        public float[] embed(Document document) {
+            return vector(document.getText());
+        }
+
+        @Override
+        public int dimensions() {
+            return DIMENSIONS;
+        }
+
+        private static float[] vector(String text) {
+            Random random = new Random(text.hashCode());
+            float[] vector = new float[DIMENSIONS];
+            for (int i = 0; i < DIMENSIONS; i++) {
+                vector[i] = (float) Math.abs(random.nextGaussian());
+            }
+            return vector;
+        }
+    }
+}